@@ -0,0 +1,99 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.rest.model.MileageRequest.TrackPoint;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.Float.parseFloat;
+import static java.lang.Integer.parseInt;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.LocalDateTime.parse;
+import static java.time.ZoneOffset.UTC;
+import static java.time.format.DateTimeFormatter.ofPattern;
+import static java.util.stream.Collectors.toList;
+import static java.util.regex.Pattern.compile;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Reads test data of benchmarks: tracks from csv files and cities from sql script, which inserts them, so
+ * benchmarks don't need database.
+ */
+final class BenchmarkDataReader {
+    private static final String FOLDER_PATH_WITH_TRACK_POINTS = "./src/test/resources/tracks/";
+    private static final String FILE_PATH_WITH_CITIES = "./src/test/resources/sql/insert-belarus-city.sql";
+
+    private static final int INDEX_READ_PROPERTY_DATE_TIME = 1;
+    private static final int INDEX_READ_PROPERTY_LATITUDE = 2;
+    private static final int INDEX_READ_PROPERTY_LONGITUDE = 3;
+    private static final int INDEX_READ_PROPERTY_ALTITUDE = 4;
+    private static final int INDEX_READ_PROPERTY_SPEED = 5;
+    private static final int INDEX_READ_PROPERTY_VALID = 6;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String READ_PROPERTY_VALUE_OF_VALID_TO_BE_TRUE = "VALID";
+
+    //in each insert first geometry is geometry of city and second one is its bounding box
+    private static final Pattern PATTERN_GEOMETRY_TEXT = compile("ST_GeomFromText\\('([^']+)', 4326\\)");
+
+    private final WKTReader wktReader;
+
+    public BenchmarkDataReader(GeometryFactory geometryFactory) {
+        this.wktReader = new WKTReader(geometryFactory);
+    }
+
+    public List<TrackPoint> readTrackPoints(String fileName)
+            throws IOException, CsvException {
+        try (final CSVReader csvReader = new CSVReader(new FileReader(FOLDER_PATH_WITH_TRACK_POINTS + fileName))) {
+            return csvReader.readAll()
+                    .stream()
+                    .map(BenchmarkDataReader::createTrackPoint)
+                    .collect(toList());
+        }
+    }
+
+    public Map<PreparedGeometry, PreparedGeometry> readCitiesGeometriesByBoundingBoxes()
+            throws IOException, ParseException {
+        final Map<PreparedGeometry, PreparedGeometry> geometriesByBoundingBoxes = new HashMap<>();
+        for (final String line : Files.readAllLines(Path.of(FILE_PATH_WITH_CITIES), UTF_8)) {
+            final Matcher matcher = PATTERN_GEOMETRY_TEXT.matcher(line);
+            if (matcher.find()) {
+                final PreparedGeometry geometry = prepare(this.wktReader.read(matcher.group(1)));
+                matcher.find();
+                final PreparedGeometry boundingBox = prepare(this.wktReader.read(matcher.group(1)));
+                geometriesByBoundingBoxes.put(boundingBox, geometry);
+            }
+        }
+        return geometriesByBoundingBoxes;
+    }
+
+    private static TrackPoint createTrackPoint(String[] readProperties) {
+        return TrackPoint.builder()
+                .datetime(parseDateTime(readProperties))
+                .latitude(parseFloat(readProperties[INDEX_READ_PROPERTY_LATITUDE]))
+                .longitude(parseFloat(readProperties[INDEX_READ_PROPERTY_LONGITUDE]))
+                .altitude(parseInt(readProperties[INDEX_READ_PROPERTY_ALTITUDE]))
+                .speed(parseInt(readProperties[INDEX_READ_PROPERTY_SPEED]))
+                .valid(READ_PROPERTY_VALUE_OF_VALID_TO_BE_TRUE.equals(readProperties[INDEX_READ_PROPERTY_VALID]))
+                .build();
+    }
+
+    private static Instant parseDateTime(String[] readProperties) {
+        return parse(readProperties[INDEX_READ_PROPERTY_DATE_TIME], DATE_TIME_FORMATTER).toInstant(UTC);
+    }
+}
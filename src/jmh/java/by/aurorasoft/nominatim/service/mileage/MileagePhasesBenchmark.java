@@ -0,0 +1,108 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.crud.model.dto.Track.PointView;
+import by.aurorasoft.nominatim.service.factory.TrackFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import by.aurorasoft.nominatim.service.mileage.locator.CandidatesCityPointLocator;
+import by.aurorasoft.nominatim.service.mileage.locator.CityPointLocator;
+import by.nhorushko.distancecalculator.DistanceCalculator;
+import by.nhorushko.distancecalculator.DistanceCalculatorImpl;
+import by.nhorushko.distancecalculator.DistanceCalculatorSettings;
+import by.nhorushko.distancecalculator.DistanceCalculatorSettingsImpl;
+import by.nhorushko.distancecalculator.LatLngAlt;
+import by.nhorushko.trackfilter.TrackFilter;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+import static by.aurorasoft.nominatim.service.mileage.MileageService.EPSILON_TO_FILTER_TRACK_POINTS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Benchmarks of phases of computing of mileage in {@link ClassificationMode#LINE_STRING} mode: filtering of track,
+ * creating of line string, lookup of candidates, classification of points and summation of distances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MileagePhasesBenchmark {
+    private static final int GEOMETRY_FACTORY_SRID = 4326;
+
+    private static final int MIN_DETECTION_SPEED = 0;
+    private static final int MAX_MESSAGE_TIMEOUT = 10;
+
+    @Param({"track_460_40000.csv", "unit_460_13000.csv"})
+    private String trackFileName;
+
+    private final TrackFilter trackFilter = new TrackFilter();
+    private final DistanceCalculator distanceCalculator = new DistanceCalculatorImpl();
+    private final DistanceCalculatorSettings distanceCalculatorSettings = new DistanceCalculatorSettingsImpl(
+            MIN_DETECTION_SPEED, MAX_MESSAGE_TIMEOUT);
+
+    private GeometryCreatingService geometryCreatingService;
+    private CitiesGeometriesIndex citiesGeometriesIndex;
+    private Track track;
+    private List<? extends LatLngAlt> filteredTrackPoints;
+    private LineString lineString;
+    private List<PreparedGeometry> candidatesGeometries;
+
+    @Setup
+    public void setup()
+            throws Exception {
+        final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), GEOMETRY_FACTORY_SRID);
+        final BenchmarkDataReader dataReader = new BenchmarkDataReader(geometryFactory);
+        this.geometryCreatingService = new GeometryCreatingService(geometryFactory);
+        this.citiesGeometriesIndex = new CitiesGeometriesIndex(dataReader.readCitiesGeometriesByBoundingBoxes());
+        this.track = new TrackFactory().create(dataReader.readTrackPoints(this.trackFileName));
+        this.filteredTrackPoints = this.filterTrack();
+        this.lineString = this.createLineString();
+        this.candidatesGeometries = this.findCandidates();
+    }
+
+    @Benchmark
+    public List<? extends LatLngAlt> filterTrack() {
+        return this.trackFilter.filter(this.track.asPoints(), EPSILON_TO_FILTER_TRACK_POINTS);
+    }
+
+    @Benchmark
+    public LineString createLineString() {
+        return this.geometryCreatingService.createLineString(this.filteredTrackPoints);
+    }
+
+    @Benchmark
+    public List<PreparedGeometry> findCandidates() {
+        return this.citiesGeometriesIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(this.lineString);
+    }
+
+    @Benchmark
+    public void classifyPoints(Blackhole blackhole) {
+        final CityPointLocator cityPointLocator = new CandidatesCityPointLocator(
+                this.candidatesGeometries, this.geometryCreatingService);
+        for (int i = 0; i < this.track.getSize(); i++) {
+            blackhole.consume(cityPointLocator.isLocatedInCity(this.track.getLatitude(i), this.track.getLongitude(i)));
+        }
+    }
+
+    @Benchmark
+    public double sumDistances() {
+        final PointView firstPoint = this.track.createPointView(0);
+        final PointView secondPoint = this.track.createPointView(0);
+        double distance = 0;
+        for (int i = 1; i < this.track.getSize(); i++) {
+            firstPoint.moveTo(i - 1);
+            secondPoint.moveTo(i);
+            distance += this.distanceCalculator.calculateDistance(
+                    firstPoint, secondPoint, this.distanceCalculatorSettings);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,103 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import by.aurorasoft.nominatim.service.factory.TrackFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesCellCoveringFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesRasterMaskFactory;
+import by.nhorushko.distancecalculator.DistanceCalculatorImpl;
+import by.nhorushko.distancecalculator.DistanceCalculatorSettings;
+import by.nhorushko.distancecalculator.DistanceCalculatorSettingsImpl;
+import by.nhorushko.trackfilter.TrackFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static by.aurorasoft.nominatim.service.mileage.MileageEngine.JVM;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Benchmarks of computing of mileage end to end by in-memory snapshot of belarusian cities in each classification
+ * mode. Run by 'mvn -P benchmark test-compile exec:exec', allocation rate is reported by gc profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MileageServiceBenchmark {
+    private static final int GEOMETRY_FACTORY_SRID = 4326;
+
+    private static final int MIN_DETECTION_SPEED = 0;
+    private static final int MAX_MESSAGE_TIMEOUT = 10;
+
+    private static final int POINTS_IN_QUERY_OF_POSTGIS_ENGINE = 100000;
+    private static final int MIN_POINTS_TO_FIND_MILEAGE_IN_PARALLEL = 65536;
+    private static final int POINTS_IN_CHUNK = 16384;
+    private static final int PARALLELISM = 4;
+
+    private static final double RASTER_MASK_CELL_SIZE = 0.001;
+    private static final long RASTER_MASK_MAX_MEMORY_BYTES = 67108864;
+    private static final int CELL_COVERING_MAX_LEVEL = 18;
+
+    @Param({"track_460_40000.csv", "unit_460_13000.csv"})
+    private String trackFileName;
+
+    @Param({"LINE_STRING", "POINT", "LAST_HIT", "RASTER_MASK", "CELL_COVERING"})
+    private ClassificationMode classificationMode;
+
+    private final DistanceCalculatorSettings distanceCalculatorSettings = new DistanceCalculatorSettingsImpl(
+            MIN_DETECTION_SPEED, MAX_MESSAGE_TIMEOUT);
+
+    private ForkJoinPool forkJoinPool;
+    private MileageService mileageService;
+    private Track track;
+
+    @Setup
+    public void setup()
+            throws Exception {
+        final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), GEOMETRY_FACTORY_SRID);
+        final BenchmarkDataReader dataReader = new BenchmarkDataReader(geometryFactory);
+        final TrackFactory trackFactory = new TrackFactory();
+        this.forkJoinPool = new ForkJoinPool(PARALLELISM);
+        this.mileageService = new MileageService(
+                new TrackFilter(),
+                new DistanceCalculatorImpl(),
+                new GeometryCreatingService(geometryFactory),
+                null,
+                null,
+                null,
+                trackFactory,
+                new MileageMetrics(new SimpleMeterRegistry()),
+                this.classificationMode,
+                JVM,
+                POINTS_IN_QUERY_OF_POSTGIS_ENGINE,
+                this.forkJoinPool,
+                MIN_POINTS_TO_FIND_MILEAGE_IN_PARALLEL,
+                POINTS_IN_CHUNK
+        );
+        final CitiesGeometriesSnapshotFactory snapshotFactory = new CitiesGeometriesSnapshotFactory(
+                new CitiesRasterMaskFactory(geometryFactory, RASTER_MASK_CELL_SIZE, RASTER_MASK_MAX_MEMORY_BYTES),
+                new CitiesCellCoveringFactory(geometryFactory, CELL_COVERING_MAX_LEVEL),
+                this.classificationMode
+        );
+        this.mileageService.setCitiesGeometriesSnapshot(
+                snapshotFactory.create(dataReader.readCitiesGeometriesByBoundingBoxes()));
+        this.track = trackFactory.create(dataReader.readTrackPoints(this.trackFileName));
+    }
+
+    @TearDown
+    public void shutdownPool() {
+        this.forkJoinPool.shutdown();
+    }
+
+    @Benchmark
+    public MileageResponse findMileage() {
+        return this.mileageService.findMileage(this.track, this.distanceCalculatorSettings);
+    }
+}
@@ -0,0 +1,26 @@
+package by.aurorasoft.nominatim.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+
+import static java.net.http.HttpClient.Version.HTTP_1_1;
+import static java.time.Duration.ofMillis;
+
+/**
+ * Client keeps connections alive in own pool and reuses them for following requests. Idle connections are closed
+ * after timeout given by system property 'jdk.httpclient.keepalive.timeout'.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public HttpClient httpClient(@Value("${nominatim.http-client.connect-timeout-millis}") long connectTimeoutMillis) {
+        return HttpClient.newBuilder()
+                .version(HTTP_1_1)
+                .connectTimeout(ofMillis(connectTimeoutMillis))
+                .build();
+    }
+}
@@ -3,10 +3,18 @@ package by.aurorasoft.nominatim.config;
 import by.nhorushko.distancecalculator.DistanceCalculator;
 import by.nhorushko.distancecalculator.DistanceCalculatorImpl;
 import by.nhorushko.trackfilter.TrackFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 
 @Configuration
+@EnableScheduling
 public class MileageConfig {
 
     @Bean
@@ -18,4 +26,19 @@ public class MileageConfig {
     public DistanceCalculator distanceCalculator() {
         return new DistanceCalculatorImpl();
     }
+
+    @Bean
+    public ForkJoinPool forkJoinPoolToFindMileages(@Value("${search-mileage.parallelism}") int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
+
+    @Bean
+    public ExecutorService executorServiceToReloadCitiesGeometries() {
+        return newSingleThreadExecutor();
+    }
+
+    @Bean
+    public ExecutorService executorServiceToListenCitiesChanges() {
+        return newSingleThreadExecutor();
+    }
 }
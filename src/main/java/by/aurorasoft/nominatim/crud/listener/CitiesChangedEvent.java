@@ -0,0 +1,12 @@
+package by.aurorasoft.nominatim.crud.listener;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when city is inserted, updated or deleted
+ */
+public final class CitiesChangedEvent extends ApplicationEvent {
+    public CitiesChangedEvent(Object source) {
+        super(source);
+    }
+}
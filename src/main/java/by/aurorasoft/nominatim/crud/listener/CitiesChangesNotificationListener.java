@@ -0,0 +1,116 @@
+package by.aurorasoft.nominatim.crud.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+
+import static java.lang.Thread.currentThread;
+import static java.lang.Thread.sleep;
+
+/**
+ * Listens notifications, which are sent by trigger of table 'city' after commit of any change of cities by any node,
+ * and publishes {@link CitiesChangedEvent}. Event is also published after every (re)connection, because notifications
+ * aren't delivered while there is no connection. Listening holds one connection of pool.
+ */
+@Slf4j
+@Component
+public class CitiesChangesNotificationListener {
+    private static final String CHANNEL = "city_changed";
+    private static final String QUERY_TO_LISTEN = "LISTEN " + CHANNEL;
+
+    private static final String LOG_START_LISTENING = "Listening changes of cities has been started.";
+    private static final String LOG_FAILURE_LISTENING = "Listening changes of cities has been failed.";
+    private static final String LOG_FAILURE_PUBLISHING_EVENT = "Publishing event of changed cities has been failed.";
+
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executorService;
+    private final boolean changesShouldBeListened;
+    private final int pollingTimeoutMillis;
+    private volatile boolean listening;
+
+    public CitiesChangesNotificationListener(DataSource dataSource, ApplicationEventPublisher eventPublisher,
+                                             @Qualifier("executorServiceToListenCitiesChanges")
+                                             ExecutorService executorService,
+                                             @Value("${search-mileage.cities-changes-listening.enabled}")
+                                             boolean changesShouldBeListened,
+                                             @Value("${search-mileage.cities-changes-listening.polling-timeout-millis}")
+                                             int pollingTimeoutMillis) {
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+        this.executorService = executorService;
+        this.changesShouldBeListened = changesShouldBeListened;
+        this.pollingTimeoutMillis = pollingTimeoutMillis;
+    }
+
+    @EventListener(classes = ApplicationReadyEvent.class)
+    public void startListening() {
+        if (this.changesShouldBeListened) {
+            this.listening = true;
+            this.executorService.execute(this::listen);
+        }
+    }
+
+    @PreDestroy
+    public void stopListening() {
+        this.listening = false;
+    }
+
+    void listen() {
+        while (this.listening) {
+            try (final Connection connection = this.dataSource.getConnection()) {
+                this.listen(connection);
+            } catch (final SQLException | RuntimeException exception) {
+                log.error(LOG_FAILURE_LISTENING, exception);
+                this.waitBeforeReconnection();
+            }
+        }
+    }
+
+    private void listen(Connection connection)
+            throws SQLException {
+        try (final Statement statement = connection.createStatement()) {
+            statement.execute(QUERY_TO_LISTEN);
+        }
+        log.info(LOG_START_LISTENING);
+        this.publishEvent();
+        final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (this.listening) {
+            final PGNotification[] notifications = pgConnection.getNotifications(this.pollingTimeoutMillis);
+            if (notifications != null && notifications.length != 0) {
+                this.publishEvent();
+            }
+        }
+    }
+
+    //failure of listener of event mustn't stop listening
+    private void publishEvent() {
+        try {
+            this.eventPublisher.publishEvent(new CitiesChangedEvent(this));
+        } catch (final RuntimeException exception) {
+            log.error(LOG_FAILURE_PUBLISHING_EVENT, exception);
+        }
+    }
+
+    private void waitBeforeReconnection() {
+        try {
+            sleep(this.pollingTimeoutMillis);
+        } catch (final InterruptedException exception) {
+            this.listening = false;
+            currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package by.aurorasoft.nominatim.crud.listener;
+
+import by.aurorasoft.nominatim.crud.model.entity.CityEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Created by hibernate through spring's bean container, so dependencies are injected
+ */
+@RequiredArgsConstructor
+public final class CityEntityListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(CityEntity city) {
+        this.eventPublisher.publishEvent(new CitiesChangedEvent(city));
+    }
+}
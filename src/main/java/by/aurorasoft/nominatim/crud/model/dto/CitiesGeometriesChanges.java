@@ -0,0 +1,24 @@
+package by.aurorasoft.nominatim.crud.model.dto;
+
+import lombok.Value;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cities, which have been inserted, updated or deleted since some version. City can be in both changed and deleted
+ * ones, if it has been deleted and then inserted again, so deleted ones should be applied first. Changes since
+ * {@code version} haven't been read yet. Full changes contain all cities, so previously loaded ones should be
+ * dropped: they are returned, if some deleted cities since requested version have been purged.
+ */
+@Value
+public class CitiesGeometriesChanges {
+    long version;
+    Map<Long, PreparedGeometryWithBoundingBox> changedGeometriesByCitiesIds;
+    Set<Long> deletedCitiesIds;
+    boolean full;
+
+    public boolean isEmpty() {
+        return this.changedGeometriesByCitiesIds.isEmpty() && this.deletedCitiesIds.isEmpty();
+    }
+}
@@ -0,0 +1,10 @@
+package by.aurorasoft.nominatim.crud.model.dto;
+
+import lombok.Value;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+@Value
+public class PreparedGeometryWithBoundingBox {
+    PreparedGeometry geometry;
+    PreparedGeometry boundingBox;
+}
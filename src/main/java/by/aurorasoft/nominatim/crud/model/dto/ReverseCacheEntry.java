@@ -0,0 +1,16 @@
+package by.aurorasoft.nominatim.crud.model.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Compact result of reverse request: geometry of city isn't stored, only its hash
+ */
+@Value
+@Builder
+public class ReverseCacheEntry {
+    String place;
+    String name;
+    String capital;
+    Integer geometryHash;
+}
@@ -0,0 +1,207 @@
+package by.aurorasoft.nominatim.crud.model.dto;
+
+import by.nhorushko.distancecalculator.LatLngAlt;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static java.lang.Math.max;
+import static java.time.Instant.ofEpochMilli;
+import static java.util.Arrays.copyOf;
+
+/**
+ * Track stored by columns of primitives to avoid creating object for each point.
+ */
+public final class Track {
+    private final float[] latitudes;
+    private final float[] longitudes;
+    private final int[] altitudes;
+    private final int[] speeds;
+    private final long[] epochMillis;
+    private final BitSet valid;
+
+    public Track(float[] latitudes, float[] longitudes, int[] altitudes, int[] speeds, long[] epochMillis,
+                 BitSet valid) {
+        if (latitudes.length != longitudes.length || latitudes.length != altitudes.length
+                || latitudes.length != speeds.length || latitudes.length != epochMillis.length) {
+            throw new IllegalArgumentException("Columns of track should have the same size");
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.altitudes = altitudes;
+        this.speeds = speeds;
+        this.epochMillis = epochMillis;
+        this.valid = valid;
+    }
+
+    public static TrackBuilder builder() {
+        return new TrackBuilder();
+    }
+
+    public int getSize() {
+        return this.latitudes.length;
+    }
+
+    public float getLatitude(int index) {
+        return this.latitudes[index];
+    }
+
+    public float getLongitude(int index) {
+        return this.longitudes[index];
+    }
+
+    public int getAltitude(int index) {
+        return this.altitudes[index];
+    }
+
+    public int getSpeed(int index) {
+        return this.speeds[index];
+    }
+
+    public long getEpochMillis(int index) {
+        return this.epochMillis[index];
+    }
+
+    public boolean isValid(int index) {
+        return this.valid.get(index);
+    }
+
+    /**
+     * @return not modifiable list, whose elements are created on access and don't copy data of track
+     */
+    public List<PointView> asPoints() {
+        return new PointsView();
+    }
+
+    /**
+     * @return view, which can be moved along track to pass points as {@link LatLngAlt} without creating objects
+     */
+    public PointView createPointView(int index) {
+        return new PointView(index);
+    }
+
+    public final class PointView implements LatLngAlt {
+        private int index;
+
+        private PointView(int index) {
+            this.index = index;
+        }
+
+        public void moveTo(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Instant getDatetime() {
+            return ofEpochMilli(epochMillis[this.index]);
+        }
+
+        @Override
+        public float getLatitude() {
+            return latitudes[this.index];
+        }
+
+        @Override
+        public float getLongitude() {
+            return longitudes[this.index];
+        }
+
+        @Override
+        public int getAltitude() {
+            return altitudes[this.index];
+        }
+
+        @Override
+        public int getSpeed() {
+            return speeds[this.index];
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid.get(this.index);
+        }
+    }
+
+    private final class PointsView extends AbstractList<PointView> implements RandomAccess {
+
+        @Override
+        public PointView get(int index) {
+            if (index < 0 || index >= this.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size());
+            }
+            return new PointView(index);
+        }
+
+        @Override
+        public int size() {
+            return getSize();
+        }
+    }
+
+    /**
+     * Collects points into growable columns, so amount of points may be unknown in advance
+     */
+    public static final class TrackBuilder {
+        private static final int INITIAL_CAPACITY = 256;
+        private static final int CAPACITY_INCREASING_FACTOR = 2;
+
+        private float[] latitudes;
+        private float[] longitudes;
+        private int[] altitudes;
+        private int[] speeds;
+        private long[] epochMillis;
+        private final BitSet valid;
+        private int size;
+
+        private TrackBuilder() {
+            this.latitudes = new float[INITIAL_CAPACITY];
+            this.longitudes = new float[INITIAL_CAPACITY];
+            this.altitudes = new int[INITIAL_CAPACITY];
+            this.speeds = new int[INITIAL_CAPACITY];
+            this.epochMillis = new long[INITIAL_CAPACITY];
+            this.valid = new BitSet(INITIAL_CAPACITY);
+            this.size = 0;
+        }
+
+        public TrackBuilder point(float latitude, float longitude, int altitude, int speed, long epochMillis,
+                                  boolean valid) {
+            if (this.size == this.latitudes.length) {
+                this.ensureCapacity(max(this.size * CAPACITY_INCREASING_FACTOR, INITIAL_CAPACITY));
+            }
+            this.latitudes[this.size] = latitude;
+            this.longitudes[this.size] = longitude;
+            this.altitudes[this.size] = altitude;
+            this.speeds[this.size] = speed;
+            this.epochMillis[this.size] = epochMillis;
+            this.valid.set(this.size, valid);
+            this.size++;
+            return this;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public Track build() {
+            return new Track(
+                    copyOf(this.latitudes, this.size),
+                    copyOf(this.longitudes, this.size),
+                    copyOf(this.altitudes, this.size),
+                    copyOf(this.speeds, this.size),
+                    copyOf(this.epochMillis, this.size),
+                    (BitSet) this.valid.clone()
+            );
+        }
+
+        private void ensureCapacity(int capacity) {
+            this.latitudes = copyOf(this.latitudes, capacity);
+            this.longitudes = copyOf(this.longitudes, capacity);
+            this.altitudes = copyOf(this.altitudes, capacity);
+            this.speeds = copyOf(this.speeds, capacity);
+            this.epochMillis = copyOf(this.epochMillis, capacity);
+        }
+    }
+}
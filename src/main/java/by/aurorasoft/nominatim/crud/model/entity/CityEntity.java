@@ -1,5 +1,6 @@
 package by.aurorasoft.nominatim.crud.model.entity;
 
+import by.aurorasoft.nominatim.crud.listener.CityEntityListener;
 import com.vladmihalcea.hibernate.type.basic.PostgreSQLEnumType;
 import lombok.*;
 import org.hibernate.annotations.TypeDef;
@@ -15,6 +16,7 @@ import static javax.persistence.GenerationType.SEQUENCE;
 
 @Entity
 @Table(name = "city")
+@EntityListeners(CityEntityListener.class)
 @TypeDef(
         name = "pgsql_enum",
         typeClass = PostgreSQLEnumType.class
@@ -47,6 +49,18 @@ public class CityEntity extends BaseEntity<Long> {
     @Column(name = "bounding_box")
     private Geometry boundingBox;
 
+    /**
+     * is assigned by database on insert and update
+     */
+    @Column(name = "version", insertable = false, updatable = false)
+    private Long version;
+
+    /**
+     * id of transaction, which has inserted or updated city, is assigned by database
+     */
+    @Column(name = "transaction_id", insertable = false, updatable = false)
+    private Long transactionId;
+
     public enum Type {
         CAPITAL("yes"), REGIONAL("4"), NOT_DEFINED(null);
 
@@ -0,0 +1,80 @@
+package by.aurorasoft.nominatim.crud.model.entity;
+
+import lombok.*;
+import org.hibernate.annotations.SQLInsert;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+@Entity
+@Table(name = "reverse_cache_entry")
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@ToString
+@Builder
+//parameters are ordered by hibernate: properties by names, then columns of id
+@SQLInsert(sql = "INSERT INTO reverse_cache_entry"
+        + "(capital, expiration_time, geometry_hash, name, place, decimal_places, latitude_key, longitude_key) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+        + "ON CONFLICT (decimal_places, latitude_key, longitude_key) DO UPDATE SET "
+        + "capital = EXCLUDED.capital, "
+        + "expiration_time = EXCLUDED.expiration_time, "
+        + "geometry_hash = EXCLUDED.geometry_hash, "
+        + "name = EXCLUDED.name, "
+        + "place = EXCLUDED.place")
+public class ReverseCacheEntryEntity extends BaseEntity<ReverseCacheEntryEntity.Key>
+        implements Persistable<ReverseCacheEntryEntity.Key> {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "place")
+    private String place;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "capital")
+    private String capital;
+
+    @Column(name = "geometry_hash")
+    private Integer geometryHash;
+
+    @Column(name = "expiration_time")
+    private Instant expirationTime;
+
+    /**
+     * Entity is always inserted without selecting existing one: insertion replaces entry by the same key, so saved
+     * entities are written by batches of upserts
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    /**
+     * Coordinate, quantized to given amount of decimal places: keys are latitude and longitude multiplied by
+     * 10 ^ decimal places and rounded
+     */
+    @Embeddable
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class Key implements Serializable {
+
+        @Column(name = "decimal_places")
+        private int decimalPlaces;
+
+        @Column(name = "latitude_key")
+        private int latitudeKey;
+
+        @Column(name = "longitude_key")
+        private int longitudeKey;
+    }
+}
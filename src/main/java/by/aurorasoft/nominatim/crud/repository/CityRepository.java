@@ -3,10 +3,13 @@ package by.aurorasoft.nominatim.crud.repository;
 import by.aurorasoft.nominatim.crud.model.entity.CityEntity;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPoint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import javax.persistence.Tuple;
+import java.util.Collection;
 import java.util.List;
 
 public interface CityRepository extends JpaRepository<CityEntity, Long> {
@@ -15,10 +18,74 @@ public interface CityRepository extends JpaRepository<CityEntity, Long> {
             nativeQuery = true)
     boolean isExistByGeometry(Geometry geometry);
 
+    List<CityEntity> findByNameIn(Collection<String> names);
+
     @Query("SELECT ce.boundingBox AS boundingBox, ce.geometry AS geometry FROM CityEntity ce")
     List<Tuple> findBoundingBoxesWithGeometries();
 
-    @Query(value = "SELECT id, name, geometry, type, bounding_box FROM city "
-            + "WHERE ST_Intersects(bounding_box, :lineString)", nativeQuery = true)
-    List<CityEntity> findCitiesWhoseBoundingBoxIntersectedByLineString(LineString lineString);
+    @Query("SELECT ce.id AS id, ce.boundingBox AS boundingBox, ce.geometry AS geometry "
+            + "FROM CityEntity ce WHERE ce.transactionId >= :transactionId")
+    List<Tuple> findBoundingBoxesWithGeometriesChangedSinceTransaction(long transactionId);
+
+    @Query("SELECT ce.id AS id, ce.boundingBox AS boundingBox, ce.geometry AS geometry "
+            + "FROM CityEntity ce WHERE intersects(ce.boundingBox, :geometry) = true")
+    List<Tuple> findBoundingBoxesWithGeometriesWhoseBoundingBoxIntersectedByGeometry(Geometry geometry);
+
+    @Query(value = "SELECT id FROM deleted_city WHERE transaction_id >= :transactionId", nativeQuery = true)
+    List<Tuple> findDeletedCitiesSinceTransaction(long transactionId);
+
+    /**
+     * @return the greatest id of transaction, whose deleted cities have been purged. Changes since transactions
+     * with not greater ids can't be found, because some deleted cities are lost
+     */
+    @Query(value = "SELECT transaction_id FROM purged_deleted_cities", nativeQuery = true)
+    long findGreatestTransactionIdOfPurgedDeletedCities();
+
+    @Modifying
+    @Query(value = "UPDATE purged_deleted_cities SET transaction_id = GREATEST(transaction_id, "
+            + "(SELECT MAX(transaction_id) FROM deleted_city "
+            + "WHERE deleted_time < CURRENT_TIMESTAMP - make_interval(secs => :retentionSeconds)))",
+            nativeQuery = true)
+    void markDeletedCitiesOlderThanRetentionAsPurged(long retentionSeconds);
+
+    @Modifying
+    @Query(value = "DELETE FROM deleted_city "
+            + "WHERE deleted_time < CURRENT_TIMESTAMP - make_interval(secs => :retentionSeconds)",
+            nativeQuery = true)
+    int deleteDeletedCitiesOlderThanRetention(long retentionSeconds);
+
+    /**
+     * @return id of the oldest transaction, which is still in progress. All transactions with smaller ids are
+     * completed, so their changes are visible for following queries
+     */
+    @Query(value = "SELECT txid_snapshot_xmin(txid_current_snapshot())", nativeQuery = true)
+    long findIdOfOldestTransactionInProgress();
+
+    /**
+     * @return id of transaction, which will be started next
+     */
+    @Query(value = "SELECT txid_snapshot_xmax(txid_current_snapshot())", nativeQuery = true)
+    long findIdOfNextTransaction();
+
+    /**
+     * @return id, which is generated once on creating database, so data of other database can be recognized
+     */
+    @Query(value = "SELECT id FROM database_identity", nativeQuery = true)
+    String findDatabaseId();
+
+    @Query(value = "SELECT id, version FROM city WHERE ST_Intersects(bounding_box, :lineString)",
+            nativeQuery = true)
+    List<Tuple> findIdsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(LineString lineString);
+
+    @Query("SELECT ce.id AS id, ce.version AS version, ce.geometry AS geometry "
+            + "FROM CityEntity ce WHERE ce.id IN :ids")
+    List<Tuple> findGeometriesWithVersionsByIds(Collection<Long> ids);
+
+    /**
+     * @return numbers of points, which are located in cities, starting from 1
+     */
+    @Query(value = "SELECT CAST((dumped_point.path)[1] AS INTEGER) FROM ST_Dump(:points) AS dumped_point "
+            + "WHERE EXISTS(SELECT 1 FROM city WHERE ST_Contains(city.geometry, dumped_point.geom))",
+            nativeQuery = true)
+    List<Integer> findNumbersOfPointsLocatedInCities(MultiPoint points);
 }
@@ -0,0 +1,16 @@
+package by.aurorasoft.nominatim.crud.repository;
+
+import by.aurorasoft.nominatim.crud.model.entity.ReverseCacheEntryEntity;
+import by.aurorasoft.nominatim.crud.model.entity.ReverseCacheEntryEntity.Key;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+
+public interface ReverseCacheEntryRepository extends JpaRepository<ReverseCacheEntryEntity, Key> {
+
+    @Modifying
+    @Query("DELETE FROM ReverseCacheEntryEntity e WHERE e.expirationTime <= :time")
+    int deleteExpiredAtTime(Instant time);
+}
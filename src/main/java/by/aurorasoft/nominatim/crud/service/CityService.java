@@ -1,36 +1,58 @@
 package by.aurorasoft.nominatim.crud.service;
 
 import by.aurorasoft.nominatim.crud.mapper.CityMapper;
+import by.aurorasoft.nominatim.crud.model.dto.CitiesGeometriesChanges;
 import by.aurorasoft.nominatim.crud.model.dto.City;
+import by.aurorasoft.nominatim.crud.model.dto.PreparedGeometryWithBoundingBox;
+import by.aurorasoft.nominatim.crud.model.dto.VersionedPreparedGeometry;
 import by.aurorasoft.nominatim.crud.model.entity.CityEntity;
 import by.aurorasoft.nominatim.crud.repository.CityRepository;
 import by.nhorushko.crudgeneric.v2.service.AbsServiceCRUD;
+import lombok.extern.slf4j.Slf4j;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPoint;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
-import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.Tuple;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
 
+@Slf4j
 @Service
 @Transactional
 public class CityService extends AbsServiceCRUD<Long, CityEntity, City, CityRepository> {
     private static final String TUPLE_ALIAS_OF_BOUNDING_BOX = "boundingBox";
     private static final String TUPLE_ALIAS_OF_GEOMETRY = "geometry";
+    private static final String TUPLE_ALIAS_OF_ID = "id";
+    private static final String TUPLE_ALIAS_OF_VERSION = "version";
 
-    public CityService(CityMapper mapper, CityRepository repository) {
+    private static final String LOG_TEMPLATE_PURGED_DELETED_CITIES = "{} deleted cities were purged.";
+
+    //all cities have been changed since it
+    private static final long VERSION_OF_ALL_CITIES = 0;
+
+    private final long deletedCitiesRetentionSeconds;
+
+    public CityService(CityMapper mapper,
+                       CityRepository repository,
+                       @Value("${search-mileage.deleted-cities.retention-seconds}")
+                       long deletedCitiesRetentionSeconds) {
         super(mapper, repository);
+        this.deletedCitiesRetentionSeconds = deletedCitiesRetentionSeconds;
     }
 
     @Transactional(readOnly = true)
@@ -41,6 +63,11 @@ public class CityService extends AbsServiceCRUD<Long, CityEntity, City, CityRepo
         return super.mapper.toDtos(foundEntities);
     }
 
+    @Transactional(readOnly = true)
+    public List<City> findByNames(Collection<String> names) {
+        return super.mapper.toDtos(super.repository.findByNameIn(names));
+    }
+
     @Transactional(readOnly = true)
     public boolean isExistByGeometry(Geometry geometry) {
         return super.repository.isExistByGeometry(geometry);
@@ -63,14 +90,118 @@ public class CityService extends AbsServiceCRUD<Long, CityEntity, City, CityRepo
                 );
     }
 
+    /**
+     * Version of changes is id of the oldest transaction, which was in progress before reading changes. Changes of
+     * transactions, which commit later, are found by the next call with this version even if other transactions have
+     * been committed before them, some of returned changes can be returned again.
+     *
+     * @return geometries of cities, inserted or updated by transactions with ids not less than given version, and ids
+     * of cities, deleted by them, or full changes, if deleted cities since given version have been purged
+     */
+    @Transactional(readOnly = true)
+    public CitiesGeometriesChanges findPreparedGeometriesChangedSinceVersion(long version) {
+        //is found before changes: each query sees transactions, which were completed before its start
+        final long versionOfChanges = super.repository.findIdOfOldestTransactionInProgress();
+        final Set<Long> deletedCitiesIds = super.repository.findDeletedCitiesSinceTransaction(version)
+                .stream()
+                .map(CityService::findId)
+                .collect(toSet());
+        //is found after deleted cities: purging, which hasn't been seen by them, is seen here
+        final boolean full = version <= super.repository.findGreatestTransactionIdOfPurgedDeletedCities();
+        final Map<Long, PreparedGeometryWithBoundingBox> changedGeometriesByCitiesIds
+                = mapToPreparedGeometriesByCitiesIds(
+                super.repository.findBoundingBoxesWithGeometriesChangedSinceTransaction(
+                        full ? VERSION_OF_ALL_CITIES : version));
+        return new CitiesGeometriesChanges(
+                versionOfChanges, changedGeometriesByCitiesIds, full ? Set.of() : deletedCitiesIds, full);
+    }
+
+    /**
+     * Deleted cities are kept to find changes since some version, so they are purged only after retention. Versions,
+     * which are older than purged deleted cities, get full changes.
+     */
+    @Scheduled(fixedDelayString = "${search-mileage.deleted-cities.purging-delay-millis}")
+    public void purgeDeletedCities() {
+        super.repository.markDeletedCitiesOlderThanRetentionAsPurged(this.deletedCitiesRetentionSeconds);
+        final int amountOfPurgedCities = super.repository.deleteDeletedCitiesOlderThanRetention(
+                this.deletedCitiesRetentionSeconds);
+        log.info(LOG_TEMPLATE_PURGED_DELETED_CITIES, amountOfPurgedCities);
+    }
+
+    /**
+     * @return version, which will be given to the next changes of cities
+     */
     @Transactional(readOnly = true)
-    public List<PreparedGeometry> findPreparedGeometriesWhoseBoundingBoxIntersectedByLineString(
-            LineString lineString) {
-        final List<CityEntity> cityEntities = super.repository.findCitiesWhoseBoundingBoxIntersectedByLineString(
-                lineString);
-        return cityEntities.stream()
-                .map(CityEntity::getGeometry)
-                .map(PreparedGeometryFactory::prepare)
-                .collect(toList());
+    public long findNextVersion() {
+        return super.repository.findIdOfNextTransaction();
+    }
+
+    @Transactional(readOnly = true)
+    public String findDatabaseId() {
+        return super.repository.findDatabaseId();
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Long, PreparedGeometryWithBoundingBox> findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(
+            Geometry geometry) {
+        return mapToPreparedGeometriesByCitiesIds(
+                super.repository.findBoundingBoxesWithGeometriesWhoseBoundingBoxIntersectedByGeometry(geometry));
+    }
+
+    /**
+     * @return versions of cities, whose bounding boxes are intersected by line string, by ids of cities.
+     * Geometries aren't fetched, so they can be taken from cache if versions are actual
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(LineString lineString) {
+        return super.repository.findIdsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(lineString)
+                .stream()
+                .collect(toMap(CityService::findId, CityService::findVersion));
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Long, VersionedPreparedGeometry> findPreparedGeometriesByIds(Collection<Long> ids) {
+        return super.repository.findGeometriesWithVersionsByIds(ids)
+                .stream()
+                .collect(
+                        toMap(
+                                CityService::findId,
+                                city -> new VersionedPreparedGeometry(
+                                        findVersion(city),
+                                        prepare((Geometry) city.get(TUPLE_ALIAS_OF_GEOMETRY))
+                                )
+                        )
+                );
+    }
+
+    /**
+     * @return numbers of given points, which are located in cities, starting from 1
+     */
+    @Transactional(readOnly = true)
+    public List<Integer> findNumbersOfPointsLocatedInCities(MultiPoint points) {
+        return super.repository.findNumbersOfPointsLocatedInCities(points);
+    }
+
+    private static Map<Long, PreparedGeometryWithBoundingBox> mapToPreparedGeometriesByCitiesIds(
+            List<Tuple> cities) {
+        return cities.stream()
+                .collect(
+                        toMap(
+                                CityService::findId,
+                                city -> new PreparedGeometryWithBoundingBox(
+                                        prepare((Geometry) city.get(TUPLE_ALIAS_OF_GEOMETRY)),
+                                        prepare((Geometry) city.get(TUPLE_ALIAS_OF_BOUNDING_BOX))
+                                )
+                        )
+                );
+    }
+
+    //native queries return integer types depending on column's type
+    private static long findId(Tuple city) {
+        return ((Number) city.get(TUPLE_ALIAS_OF_ID)).longValue();
+    }
+
+    private static long findVersion(Tuple city) {
+        return ((Number) city.get(TUPLE_ALIAS_OF_VERSION)).longValue();
     }
 }
@@ -0,0 +1,132 @@
+package by.aurorasoft.nominatim.crud.service;
+
+import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
+import by.aurorasoft.nominatim.crud.model.dto.ReverseCacheEntry;
+import by.aurorasoft.nominatim.crud.model.entity.ReverseCacheEntryEntity;
+import by.aurorasoft.nominatim.crud.model.entity.ReverseCacheEntryEntity.Key;
+import by.aurorasoft.nominatim.crud.repository.ReverseCacheEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+
+import static java.lang.Math.pow;
+import static java.lang.Math.round;
+import static java.lang.Math.toIntExact;
+import static java.time.Instant.now;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Cache of results of reverse requests, whose keys are coordinates quantized to given amount of decimal places, so
+ * close points of different searching processes share entries. Entries are actual during given time to live.
+ */
+@Slf4j
+@Service
+@Transactional
+public class ReverseCacheEntryService {
+    private static final String EXCEPTION_DESCRIPTION_NOT_VALID_SETTINGS
+            = "Decimal places should be from 0 to 7 and time to live should be positive.";
+    private static final String LOG_TEMPLATE_DELETED_EXPIRED_ENTRIES = "{} expired reverse cache entries were deleted.";
+
+    //the greatest amount of decimal places, for which keys of longitudes fit int
+    private static final int MAX_DECIMAL_PLACES = 7;
+
+    private final ReverseCacheEntryRepository repository;
+    private final int decimalPlaces;
+    private final double scale;
+    private final long timeToLiveSeconds;
+
+    public ReverseCacheEntryService(ReverseCacheEntryRepository repository,
+                                    @Value("${search-cities.reverse-cache.decimal-places}") int decimalPlaces,
+                                    @Value("${search-cities.reverse-cache.time-to-live-seconds}")
+                                    long timeToLiveSeconds) {
+        if (decimalPlaces < 0 || decimalPlaces > MAX_DECIMAL_PLACES || timeToLiveSeconds <= 0) {
+            throw new IllegalArgumentException(EXCEPTION_DESCRIPTION_NOT_VALID_SETTINGS);
+        }
+        this.repository = repository;
+        this.decimalPlaces = decimalPlaces;
+        this.scale = pow(10, decimalPlaces);
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    /**
+     * @return not expired entries by given coordinates, which have them
+     */
+    @Transactional(readOnly = true)
+    public Map<Coordinate, ReverseCacheEntry> findActualByCoordinates(Collection<Coordinate> coordinates) {
+        final Map<Coordinate, Key> keysByCoordinates = coordinates.stream()
+                .distinct()
+                .collect(toMap(identity(), this::createKey));
+        final Instant currentTime = now();
+        final Map<Key, ReverseCacheEntry> actualEntriesByKeys = this.repository
+                .findAllById(new HashSet<>(keysByCoordinates.values()))
+                .stream()
+                .filter(entity -> entity.getExpirationTime().isAfter(currentTime))
+                .collect(toMap(ReverseCacheEntryEntity::getId, ReverseCacheEntryService::mapToDto));
+        final Map<Coordinate, ReverseCacheEntry> actualEntriesByCoordinates = new HashMap<>();
+        keysByCoordinates.forEach((coordinate, key) -> {
+            final ReverseCacheEntry entry = actualEntriesByKeys.get(key);
+            if (entry != null) {
+                actualEntriesByCoordinates.put(coordinate, entry);
+            }
+        });
+        return actualEntriesByCoordinates;
+    }
+
+    /**
+     * Saves entries or replaces existing ones by the same keys by one batch of upserts, time to live of saved entries
+     * starts from now
+     */
+    public void save(Map<Coordinate, ReverseCacheEntry> entriesByCoordinates) {
+        final Instant expirationTime = now().plusSeconds(this.timeToLiveSeconds);
+        //different coordinates can have the same key
+        final Map<Key, ReverseCacheEntryEntity> entitiesByKeys = entriesByCoordinates.entrySet()
+                .stream()
+                .map(entryByCoordinate -> mapToEntity(
+                        this.createKey(entryByCoordinate.getKey()), entryByCoordinate.getValue(), expirationTime))
+                .collect(toMap(ReverseCacheEntryEntity::getId, identity(), (first, second) -> second));
+        this.repository.saveAll(entitiesByKeys.values());
+    }
+
+    @Scheduled(fixedDelayString = "${search-cities.reverse-cache.deleting-expired-delay-millis}")
+    public void deleteExpired() {
+        final int amountOfDeletedEntries = this.repository.deleteExpiredAtTime(now());
+        log.info(LOG_TEMPLATE_DELETED_EXPIRED_ENTRIES, amountOfDeletedEntries);
+    }
+
+    private Key createKey(Coordinate coordinate) {
+        return new Key(
+                this.decimalPlaces,
+                this.quantize(coordinate.getLatitude()),
+                this.quantize(coordinate.getLongitude()));
+    }
+
+    private int quantize(double degrees) {
+        return toIntExact(round(degrees * this.scale));
+    }
+
+    private static ReverseCacheEntry mapToDto(ReverseCacheEntryEntity entity) {
+        return ReverseCacheEntry.builder()
+                .place(entity.getPlace())
+                .name(entity.getName())
+                .capital(entity.getCapital())
+                .geometryHash(entity.getGeometryHash())
+                .build();
+    }
+
+    private static ReverseCacheEntryEntity mapToEntity(Key key, ReverseCacheEntry entry, Instant expirationTime) {
+        return ReverseCacheEntryEntity.builder()
+                .id(key)
+                .place(entry.getPlace())
+                .name(entry.getName())
+                .capital(entry.getCapital())
+                .geometryHash(entry.getGeometryHash())
+                .expirationTime(expirationTime)
+                .build();
+    }
+}
@@ -1,7 +1,10 @@
 package by.aurorasoft.nominatim.rest.controller;
 
-import by.aurorasoft.nominatim.rest.model.MileageRequest;
+import by.aurorasoft.nominatim.rest.model.BatchMileageResponse;
+import by.aurorasoft.nominatim.rest.model.ColumnarBatchMileageRequest;
+import by.aurorasoft.nominatim.rest.model.ColumnarMileageRequest;
 import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import by.aurorasoft.nominatim.service.mileage.BatchMileageService;
 import by.aurorasoft.nominatim.service.mileage.MileageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -18,9 +21,16 @@ import static org.springframework.http.ResponseEntity.ok;
 @RequiredArgsConstructor
 public class MileageController {
     private final MileageService mileageService;
+    private final BatchMileageService batchMileageService;
 
     @PostMapping
-    public ResponseEntity<MileageResponse> findMileage(@Valid @RequestBody MileageRequest mileageRequest) {
+    public ResponseEntity<MileageResponse> findMileage(@Valid @RequestBody ColumnarMileageRequest mileageRequest) {
         return ok(this.mileageService.findMileage(mileageRequest));
     }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchMileageResponse> findMileages(
+            @Valid @RequestBody ColumnarBatchMileageRequest batchRequest) {
+        return ok(this.batchMileageService.findMileages(batchRequest));
+    }
 }
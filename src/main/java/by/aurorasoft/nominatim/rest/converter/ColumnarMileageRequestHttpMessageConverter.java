@@ -0,0 +1,409 @@
+package by.aurorasoft.nominatim.rest.converter;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.crud.model.dto.Track.TrackBuilder;
+import by.aurorasoft.nominatim.rest.controller.exception.CustomValidationException;
+import by.aurorasoft.nominatim.rest.model.ColumnarBatchMileageRequest;
+import by.aurorasoft.nominatim.rest.model.ColumnarMileageRequest;
+import by.aurorasoft.nominatim.rest.model.MileageRequest;
+import by.aurorasoft.nominatim.rest.model.MileageRequest.TrackPoint;
+import by.aurorasoft.nominatim.service.mileage.MileageEngine;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.fasterxml.jackson.core.JsonToken.*;
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.lang.Boolean.parseBoolean;
+import static java.lang.Float.isFinite;
+import static java.lang.Float.parseFloat;
+import static java.lang.Integer.parseInt;
+import static java.lang.System.currentTimeMillis;
+import static java.time.Instant.ofEpochMilli;
+import static java.time.Instant.parse;
+import static java.util.Arrays.stream;
+import static java.util.Collections.nCopies;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Reads {@link ColumnarMileageRequest} and {@link ColumnarBatchMileageRequest} token by token without creating object
+ * for each point. Points are validated by the same rules as {@link TrackPoint}, messages of constraints' violations
+ * are taken from its annotations.
+ */
+@Component
+public final class ColumnarMileageRequestHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+    private static final String FIELD_NAME_REQUESTS = "requests";
+    private static final String FIELD_NAME_TRACK_POINTS = "trackPoints";
+    private static final String FIELD_NAME_MIN_DETECTION_SPEED = "minDetectionSpeed";
+    private static final String FIELD_NAME_MAX_MESSAGE_TIMEOUT = "maxMessageTimeout";
+    private static final String FIELD_NAME_ENGINE = "engine";
+    private static final String FIELD_NAME_DATETIME = "datetime";
+    private static final String FIELD_NAME_LATITUDE = "latitude";
+    private static final String FIELD_NAME_LONGITUDE = "longitude";
+    private static final String FIELD_NAME_ALTITUDE = "altitude";
+    private static final String FIELD_NAME_SPEED = "speed";
+    private static final String FIELD_NAME_VALID = "valid";
+
+    private static final float MIN_LATITUDE = -90;
+    private static final float MAX_LATITUDE = 90;
+    private static final float MIN_LONGITUDE = -180;
+    private static final float MAX_LONGITUDE = 180;
+    private static final int MIN_SPEED = 0;
+    private static final int MAX_SPEED = 1000;
+    private static final int MIN_DETECTION_SPEED = 0;
+    private static final int MIN_MAX_MESSAGE_TIMEOUT = 0;
+    private static final int MIN_AMOUNT_OF_TRACK_POINTS = 2;
+
+    private static final String TEMPLATE_TRACK_POINT_PATH = "%s" + FIELD_NAME_TRACK_POINTS + "[%d].%s";
+    private static final String TEMPLATE_BATCH_ELEMENT_PATH_PREFIX = FIELD_NAME_REQUESTS + "[%d].";
+    private static final String EMPTY_PATH_PREFIX = "";
+    private static final String SEPARATOR_FIELD_NAME_AND_MESSAGE_IN_ERROR = " : ";
+    private static final String MESSAGE_NOT_VALID_VALUE = "not valid value";
+    private static final String MESSAGE_TRAILING_CONTENT = "Unexpected content after request";
+    private static final String MESSAGE_NOT_VALID_NUMBER = "Not valid number in string";
+    private static final String MESSAGE_NOT_VALID_BOOLEAN = "Not valid boolean in string";
+    private static final String EXCEPTION_DESCRIPTION_WRITING = "Converter only reads requests";
+
+    private final JsonFactory jsonFactory;
+    private final Validator validator;
+
+    public ColumnarMileageRequestHttpMessageConverter(ObjectMapper objectMapper, Validator validator) {
+        super(APPLICATION_JSON);
+        this.jsonFactory = objectMapper.getFactory();
+        this.validator = validator;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ColumnarMileageRequest.class == clazz || ColumnarBatchMileageRequest.class == clazz;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException {
+        try (final JsonParser parser = this.jsonFactory.createParser(inputMessage.getBody())) {
+            parser.nextToken();
+            final Object request = ColumnarBatchMileageRequest.class == clazz
+                    ? this.readBatchRequest(parser)
+                    : this.readRequest(parser, EMPTY_PATH_PREFIX);
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, MESSAGE_TRAILING_CONTENT);
+            }
+            return request;
+        } catch (final JsonProcessingException | DateTimeParseException exception) {
+            throw new HttpMessageNotReadableException(exception.getMessage(), exception, inputMessage);
+        }
+    }
+
+    /**
+     * Isn't called: {@link #canWrite(Class, MediaType)} always returns false
+     */
+    @Override
+    protected void writeInternal(Object request, HttpOutputMessage outputMessage) {
+        throw new HttpMessageNotWritableException(EXCEPTION_DESCRIPTION_WRITING);
+    }
+
+    private ColumnarBatchMileageRequest readBatchRequest(JsonParser parser)
+            throws IOException {
+        expectToken(parser.currentToken(), START_OBJECT, parser);
+        List<ColumnarMileageRequest> requests = null;
+        while (parser.nextToken() == FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            final JsonToken valueToken = parser.nextToken();
+            if (FIELD_NAME_REQUESTS.equals(fieldName) && valueToken != VALUE_NULL) {
+                requests = this.readRequests(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (requests == null) {
+            throw this.createValidationException(
+                    ColumnarBatchMileageRequest.class, FIELD_NAME_REQUESTS, FIELD_NAME_REQUESTS, null);
+        }
+        return new ColumnarBatchMileageRequest(requests);
+    }
+
+    private List<ColumnarMileageRequest> readRequests(JsonParser parser)
+            throws IOException {
+        expectToken(parser.currentToken(), START_ARRAY, parser);
+        final List<ColumnarMileageRequest> requests = new ArrayList<>();
+        while (parser.nextToken() != END_ARRAY) {
+            final String pathPrefix = String.format(TEMPLATE_BATCH_ELEMENT_PATH_PREFIX, requests.size());
+            requests.add(this.readRequest(parser, pathPrefix));
+        }
+        return requests;
+    }
+
+    private ColumnarMileageRequest readRequest(JsonParser parser, String pathPrefix)
+            throws IOException {
+        expectToken(parser.currentToken(), START_OBJECT, parser);
+        Track track = null;
+        Integer minDetectionSpeed = null;
+        Integer maxMessageTimeout = null;
+        MileageEngine engine = null;
+        while (parser.nextToken() == FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            final JsonToken valueToken = parser.nextToken();
+            if (valueToken == VALUE_NULL) {
+                continue;
+            }
+            switch (fieldName) {
+                case FIELD_NAME_TRACK_POINTS:
+                    track = this.readTrack(parser, pathPrefix);
+                    break;
+                case FIELD_NAME_MIN_DETECTION_SPEED:
+                    minDetectionSpeed = parser.getIntValue();
+                    break;
+                case FIELD_NAME_MAX_MESSAGE_TIMEOUT:
+                    maxMessageTimeout = parser.getIntValue();
+                    break;
+                case FIELD_NAME_ENGINE:
+                    engine = this.readEngine(parser, pathPrefix);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        this.validateRequest(pathPrefix, track, minDetectionSpeed, maxMessageTimeout);
+        return new ColumnarMileageRequest(track, minDetectionSpeed, maxMessageTimeout, engine);
+    }
+
+    private MileageEngine readEngine(JsonParser parser, String pathPrefix)
+            throws IOException {
+        final String name = parser.getText();
+        try {
+            return MileageEngine.valueOf(name);
+        } catch (final IllegalArgumentException exception) {
+            throw this.createRequestValidationException(pathPrefix, FIELD_NAME_ENGINE, name);
+        }
+    }
+
+    private Track readTrack(JsonParser parser, String pathPrefix)
+            throws IOException {
+        expectToken(parser.currentToken(), START_ARRAY, parser);
+        final TrackBuilder trackBuilder = Track.builder();
+        while (parser.nextToken() != END_ARRAY) {
+            this.readTrackPoint(parser, pathPrefix, trackBuilder);
+        }
+        return trackBuilder.build();
+    }
+
+    private void readTrackPoint(JsonParser parser, String pathPrefix, TrackBuilder trackBuilder)
+            throws IOException {
+        expectToken(parser.currentToken(), START_OBJECT, parser);
+        final int index = trackBuilder.getSize();
+        long epochMillis = 0;
+        float latitude = 0;
+        float longitude = 0;
+        int altitude = 0;
+        int speed = 0;
+        boolean valid = false;
+        int readFields = 0;
+        while (parser.nextToken() == FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == VALUE_NULL) {
+                continue;
+            }
+            switch (fieldName) {
+                case FIELD_NAME_DATETIME:
+                    epochMillis = readEpochMillis(parser);
+                    readFields |= TrackPointField.DATETIME.mask;
+                    break;
+                case FIELD_NAME_LATITUDE:
+                    latitude = readFloat(parser);
+                    readFields |= TrackPointField.LATITUDE.mask;
+                    break;
+                case FIELD_NAME_LONGITUDE:
+                    longitude = readFloat(parser);
+                    readFields |= TrackPointField.LONGITUDE.mask;
+                    break;
+                case FIELD_NAME_ALTITUDE:
+                    altitude = readInt(parser);
+                    readFields |= TrackPointField.ALTITUDE.mask;
+                    break;
+                case FIELD_NAME_SPEED:
+                    speed = readInt(parser);
+                    readFields |= TrackPointField.SPEED.mask;
+                    break;
+                case FIELD_NAME_VALID:
+                    valid = readBoolean(parser);
+                    readFields |= TrackPointField.VALID.mask;
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        this.validateTrackPoint(pathPrefix, index, readFields, epochMillis, latitude, longitude, speed);
+        trackBuilder.point(latitude, longitude, altitude, speed, epochMillis, valid);
+    }
+
+    private static long readEpochMillis(JsonParser parser)
+            throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return parse(parser.getText()).toEpochMilli();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue().movePointRight(3).longValue();
+            default:
+                throw new JsonParseException(parser, "Not valid datetime of track point");
+        }
+    }
+
+    /**
+     * Numbers and booleans in strings are accepted as they are by {@link ObjectMapper} reading {@link MileageRequest}
+     */
+    private static float readFloat(JsonParser parser)
+            throws IOException {
+        if (parser.currentToken() != VALUE_STRING) {
+            return parser.getFloatValue();
+        }
+        try {
+            return parseFloat(parser.getText().trim());
+        } catch (final NumberFormatException cause) {
+            throw new JsonParseException(parser, MESSAGE_NOT_VALID_NUMBER, cause);
+        }
+    }
+
+    private static int readInt(JsonParser parser)
+            throws IOException {
+        if (parser.currentToken() != VALUE_STRING) {
+            return parser.getIntValue();
+        }
+        try {
+            return parseInt(parser.getText().trim());
+        } catch (final NumberFormatException cause) {
+            throw new JsonParseException(parser, MESSAGE_NOT_VALID_NUMBER, cause);
+        }
+    }
+
+    private static boolean readBoolean(JsonParser parser)
+            throws IOException {
+        if (parser.currentToken() != VALUE_STRING) {
+            return parser.getBooleanValue();
+        }
+        final String text = parser.getText().trim();
+        if (!text.equalsIgnoreCase(TRUE.toString()) && !text.equalsIgnoreCase(FALSE.toString())) {
+            throw new JsonParseException(parser, MESSAGE_NOT_VALID_BOOLEAN);
+        }
+        return parseBoolean(text);
+    }
+
+    private void validateTrackPoint(String pathPrefix, int index, int readFields,
+                                    long epochMillis, float latitude, float longitude, int speed) {
+        if (readFields != TrackPointField.ALL_FIELDS_MASK) {
+            final TrackPointField notReadField = TrackPointField.findFirstNotRead(readFields);
+            throw this.createTrackPointValidationException(pathPrefix, index, notReadField.name, null);
+        }
+        if (epochMillis > currentTimeMillis()) {
+            throw this.createTrackPointValidationException(
+                    pathPrefix, index, FIELD_NAME_DATETIME, ofEpochMilli(epochMillis));
+        }
+        if (!isFinite(latitude) || latitude < MIN_LATITUDE || latitude > MAX_LATITUDE) {
+            throw this.createTrackPointValidationException(pathPrefix, index, FIELD_NAME_LATITUDE, latitude);
+        }
+        if (!isFinite(longitude) || longitude < MIN_LONGITUDE || longitude > MAX_LONGITUDE) {
+            throw this.createTrackPointValidationException(pathPrefix, index, FIELD_NAME_LONGITUDE, longitude);
+        }
+        if (speed < MIN_SPEED || speed > MAX_SPEED) {
+            throw this.createTrackPointValidationException(pathPrefix, index, FIELD_NAME_SPEED, speed);
+        }
+    }
+
+    private void validateRequest(String pathPrefix, Track track,
+                                 Integer minDetectionSpeed, Integer maxMessageTimeout) {
+        if (track == null || track.getSize() < MIN_AMOUNT_OF_TRACK_POINTS) {
+            throw this.createRequestValidationException(
+                    pathPrefix, FIELD_NAME_TRACK_POINTS, track != null ? nCopies(track.getSize(), null) : null);
+        }
+        if (minDetectionSpeed == null || minDetectionSpeed < MIN_DETECTION_SPEED) {
+            throw this.createRequestValidationException(
+                    pathPrefix, FIELD_NAME_MIN_DETECTION_SPEED, minDetectionSpeed);
+        }
+        if (maxMessageTimeout == null || maxMessageTimeout < MIN_MAX_MESSAGE_TIMEOUT) {
+            throw this.createRequestValidationException(
+                    pathPrefix, FIELD_NAME_MAX_MESSAGE_TIMEOUT, maxMessageTimeout);
+        }
+    }
+
+    private CustomValidationException createTrackPointValidationException(String pathPrefix, int index,
+                                                                         String fieldName, Object value) {
+        final String path = String.format(TEMPLATE_TRACK_POINT_PATH, pathPrefix, index, fieldName);
+        return this.createValidationException(TrackPoint.class, fieldName, path, value);
+    }
+
+    private CustomValidationException createRequestValidationException(String pathPrefix, String fieldName,
+                                                                       Object value) {
+        return this.createValidationException(MileageRequest.class, fieldName, pathPrefix + fieldName, value);
+    }
+
+    /**
+     * Violation is found by primitive checks, validator is used only to take message of violated constraint
+     */
+    private <T> CustomValidationException createValidationException(Class<T> beanType, String fieldName,
+                                                                    String path, Object value) {
+        final Set<ConstraintViolation<T>> violations = this.validator.validateValue(beanType, fieldName, value);
+        final String message = violations.stream()
+                .findFirst()
+                .map(ConstraintViolation::getMessage)
+                .orElse(MESSAGE_NOT_VALID_VALUE);
+        return new CustomValidationException(path + SEPARATOR_FIELD_NAME_AND_MESSAGE_IN_ERROR + message);
+    }
+
+    private static void expectToken(JsonToken actual, JsonToken expected, JsonParser parser)
+            throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", but was " + actual);
+        }
+    }
+
+    private enum TrackPointField {
+        DATETIME(FIELD_NAME_DATETIME),
+        LATITUDE(FIELD_NAME_LATITUDE),
+        LONGITUDE(FIELD_NAME_LONGITUDE),
+        ALTITUDE(FIELD_NAME_ALTITUDE),
+        SPEED(FIELD_NAME_SPEED),
+        VALID(FIELD_NAME_VALID);
+
+        private static final int ALL_FIELDS_MASK = (1 << values().length) - 1;
+
+        private final String name;
+        private final int mask;
+
+        TrackPointField(String name) {
+            this.name = name;
+            this.mask = 1 << this.ordinal();
+        }
+
+        public static TrackPointField findFirstNotRead(int readFields) {
+            return stream(values())
+                    .filter(field -> (readFields & field.mask) == 0)
+                    .findFirst()
+                    .orElseThrow(IllegalArgumentException::new);
+        }
+    }
+}
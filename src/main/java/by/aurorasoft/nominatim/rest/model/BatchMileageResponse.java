@@ -0,0 +1,10 @@
+package by.aurorasoft.nominatim.rest.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class BatchMileageResponse {
+    List<MileageResponse> responses;
+}
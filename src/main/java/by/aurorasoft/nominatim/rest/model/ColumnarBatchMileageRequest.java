@@ -0,0 +1,14 @@
+package by.aurorasoft.nominatim.rest.model;
+
+import lombok.Value;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Value
+public class ColumnarBatchMileageRequest {
+
+    @NotNull
+    List<@Valid ColumnarMileageRequest> requests;
+}
@@ -0,0 +1,28 @@
+package by.aurorasoft.nominatim.rest.model;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.service.mileage.MileageEngine;
+import lombok.Value;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * {@link MileageRequest}, whose points are read directly into columns of {@link Track}
+ */
+@Value
+public class ColumnarMileageRequest {
+    @NotNull
+    Track track;
+
+    @Min(0)
+    int minDetectionSpeed;
+
+    @Min(0)
+    int maxMessageTimeout;
+
+    /**
+     * engine to find mileage, configured one is used if it is null
+     */
+    MileageEngine engine;
+}
@@ -1,8 +1,10 @@
 package by.aurorasoft.nominatim.rest.model;
 
+import by.aurorasoft.nominatim.service.mileage.MileageEngine;
 import by.nhorushko.distancecalculator.LatLngAlt;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Value;
@@ -12,6 +14,7 @@ import javax.validation.constraints.*;
 import java.time.Instant;
 import java.util.List;
 
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
 import static java.lang.Float.NaN;
 import static java.lang.Integer.MIN_VALUE;
 
@@ -31,13 +34,21 @@ public class MileageRequest {
     @Min(0)
     Integer maxMessageTimeout;
 
+    /**
+     * engine to find mileage, configured one is used if it isn't given
+     */
+    @JsonInclude(NON_NULL)
+    MileageEngine engine;
+
     @JsonCreator
     public MileageRequest(@JsonProperty("trackPoints") List<TrackPoint> trackPoints,
                           @JsonProperty("minDetectionSpeed") Integer minDetectionSpeed,
-                          @JsonProperty("maxMessageTimeout") Integer maxMessageTimeout) {
+                          @JsonProperty("maxMessageTimeout") Integer maxMessageTimeout,
+                          @JsonProperty("engine") MileageEngine engine) {
         this.trackPoints = trackPoints;
         this.minDetectionSpeed = minDetectionSpeed;
         this.maxMessageTimeout = maxMessageTimeout;
+        this.engine = engine;
     }
 
     @Value
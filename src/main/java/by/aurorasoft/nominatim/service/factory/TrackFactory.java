@@ -0,0 +1,33 @@
+package by.aurorasoft.nominatim.service.factory;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.nhorushko.distancecalculator.LatLngAlt;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.List;
+
+@Component
+public final class TrackFactory {
+
+    public Track create(List<? extends LatLngAlt> points) {
+        final int size = points.size();
+        final float[] latitudes = new float[size];
+        final float[] longitudes = new float[size];
+        final int[] altitudes = new int[size];
+        final int[] speeds = new int[size];
+        final long[] epochMillis = new long[size];
+        final BitSet valid = new BitSet(size);
+        int index = 0;
+        for (final LatLngAlt point : points) {
+            latitudes[index] = point.getLatitude();
+            longitudes[index] = point.getLongitude();
+            altitudes[index] = point.getAltitude();
+            speeds[index] = point.getSpeed();
+            epochMillis[index] = point.getDatetime().toEpochMilli();
+            valid.set(index, point.isValid());
+            index++;
+        }
+        return new Track(latitudes, longitudes, altitudes, speeds, epochMillis, valid);
+    }
+}
@@ -0,0 +1,38 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.rest.model.BatchMileageResponse;
+import by.aurorasoft.nominatim.rest.model.ColumnarBatchMileageRequest;
+import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.stream.Collectors.toList;
+
+@Service
+public final class BatchMileageService {
+    private final MileageService mileageService;
+    private final ForkJoinPool forkJoinPool;
+
+    public BatchMileageService(MileageService mileageService,
+                               @Qualifier("forkJoinPoolToFindMileages") ForkJoinPool forkJoinPool) {
+        this.mileageService = mileageService;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Parallel stream, which is started inside pool, is executed by threads of this pool, so amount of threads,
+     * computing mileages of all batches, is bounded by parallelism of pool
+     */
+    public BatchMileageResponse findMileages(ColumnarBatchMileageRequest request) {
+        final List<MileageResponse> responses = this.forkJoinPool
+                .submit(() -> request.getRequests()
+                        .parallelStream()
+                        .map(this.mileageService::findMileage)
+                        .collect(toList()))
+                .join();
+        return new BatchMileageResponse(responses);
+    }
+}
@@ -0,0 +1,30 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+public enum ClassificationMode {
+    /**
+     * each point is tested against all cities whose bounding box is intersected by line string of filtered track
+     */
+    LINE_STRING,
+
+    /**
+     * each point is tested only against cities whose bounding box contains this point
+     */
+    POINT,
+
+    /**
+     * like {@link #POINT}, but the last hit city is tested first and lookups are skipped while points stay
+     * in region, which is certainly inside or outside cities
+     */
+    LAST_HIT,
+
+    /**
+     * points are classified by preloaded raster mask of cities, only points of cells crossed by boundaries of cities
+     * are tested like in {@link #LAST_HIT}
+     */
+    RASTER_MASK,
+
+    /**
+     * like {@link #RASTER_MASK}, but cells are taken from preloaded hierarchical cell covering of cities
+     */
+    CELL_COVERING
+}
@@ -0,0 +1,14 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+public enum GeometriesMemoryMode {
+    /**
+     * geometries of cities are held as prepared JTS geometries
+     */
+    HEAP,
+
+    /**
+     * geometries of cities are held as WKB in direct buffers, JTS geometries are created only for hit cities
+     * and are held in bounded cache
+     */
+    OFF_HEAP
+}
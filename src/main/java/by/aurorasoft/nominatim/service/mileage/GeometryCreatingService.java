@@ -1,5 +1,6 @@
 package by.aurorasoft.nominatim.service.mileage;
 
+import by.aurorasoft.nominatim.crud.model.dto.Track;
 import by.nhorushko.distancecalculator.LatLngAlt;
 import lombok.RequiredArgsConstructor;
 import org.locationtech.jts.geom.*;
@@ -11,6 +12,8 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public final class GeometryCreatingService {
+    private static final int COORDINATE_DIMENSION = 2;
+
     private final GeometryFactory geometryFactory;
 
     public LineString createLineString(List<? extends LatLngAlt> latLngAlts) {
@@ -23,6 +26,24 @@ public final class GeometryCreatingService {
         return this.geometryFactory.createPoint(coordinate);
     }
 
+    public Point createPoint(float latitude, float longitude) {
+        return this.geometryFactory.createPoint(new CoordinateXY(longitude, latitude));
+    }
+
+    /**
+     * @param fromPointIndex inclusive index of first point
+     * @param toPointIndex   exclusive index of last point
+     */
+    public MultiPoint createMultiPoint(Track track, int fromPointIndex, int toPointIndex) {
+        final CoordinateSequence coordinateSequence = new CoordinateArraySequence(
+                toPointIndex - fromPointIndex, COORDINATE_DIMENSION);
+        for (int i = fromPointIndex; i < toPointIndex; i++) {
+            coordinateSequence.setOrdinate(i - fromPointIndex, CoordinateSequence.X, track.getLongitude(i));
+            coordinateSequence.setOrdinate(i - fromPointIndex, CoordinateSequence.Y, track.getLatitude(i));
+        }
+        return this.geometryFactory.createMultiPoint(coordinateSequence);
+    }
+
     private static CoordinateXY[] mapToCoordinates(List<? extends LatLngAlt> points) {
         return points.stream()
                 .map(GeometryCreatingService::mapToCoordinate)
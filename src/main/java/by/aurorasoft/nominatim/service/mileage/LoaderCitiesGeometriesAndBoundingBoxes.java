@@ -1,34 +1,176 @@
 package by.aurorasoft.nominatim.service.mileage;
 
+import by.aurorasoft.nominatim.crud.listener.CitiesChangedEvent;
+import by.aurorasoft.nominatim.crud.model.dto.CitiesGeometriesChanges;
 import by.aurorasoft.nominatim.crud.service.CityService;
-import org.locationtech.jts.geom.prep.PreparedGeometry;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshot;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotStorage;
+import by.aurorasoft.nominatim.service.mileage.index.IndexedCityGeometry;
+import by.aurorasoft.nominatim.service.mileage.index.IndexedCityGeometryFactory;
+import by.aurorasoft.nominatim.service.mileage.index.StoredCitiesGeometriesSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Loads cities on start of application and reloads them in background after changes of cities or by schedule.
+ * Reloading fetches only cities changed since the last loaded version. Version is bound of transactions, so changes
+ * of transaction, which commits after later ones, aren't skipped. New snapshot replaces old one only after it is
+ * fully built. On start stored snapshot is used, if it isn't newer than database, and only cities changed since it
+ * are loaded. Stored snapshot of other database is ignored.
+ */
+@Slf4j
 @Component
 public class LoaderCitiesGeometriesAndBoundingBoxes {
+    private static final String LOG_TEMPLATE_LOADED_CITIES
+            = "Geometries of {} cities have been loaded. Changed: {}, deleted: {}, version: {}.";
+    private static final String LOG_TEMPLATE_NOT_ACTUAL_STORED_SNAPSHOT
+            = "Stored snapshot with version {} is ignored, because the next version of cities is {}.";
+    private static final String LOG_TEMPLATE_STORED_SNAPSHOT_OF_OTHER_DATABASE
+            = "Stored snapshot is ignored, because it was written for database '{}', but current one is '{}'.";
+    private static final String LOG_TEMPLATE_FAILURE_RELOADING = "Reloading geometries of cities has been failed.";
+    private static final long NOT_LOADED_VERSION = 0;
+
     private final MileageService mileageService;
     private final CityService cityService;
+    private final CitiesGeometriesSnapshotFactory citiesGeometriesSnapshotFactory;
+    private final CitiesGeometriesSnapshotStorage citiesGeometriesSnapshotStorage;
+    private final IndexedCityGeometryFactory indexedCityGeometryFactory;
+    private final ExecutorService executorService;
     private final boolean cityGeometriesShouldBeLoaded;
+    private final AtomicBoolean reloadingRequested;
+    private final Map<Long, IndexedCityGeometry> loadedGeometriesByCitiesIds;
+    private long loadedVersion;
+    private String databaseId;
 
     public LoaderCitiesGeometriesAndBoundingBoxes(MileageService mileageService, CityService cityService,
+                                                  CitiesGeometriesSnapshotFactory citiesGeometriesSnapshotFactory,
+                                                  CitiesGeometriesSnapshotStorage citiesGeometriesSnapshotStorage,
+                                                  IndexedCityGeometryFactory indexedCityGeometryFactory,
+                                                  @Qualifier("executorServiceToReloadCitiesGeometries")
+                                                  ExecutorService executorService,
                                                   @Value("${search-mileage.load-city-geometries-on-start-application}")
                                                   boolean cityGeometriesShouldBeLoaded) {
         this.mileageService = mileageService;
         this.cityService = cityService;
+        this.citiesGeometriesSnapshotFactory = citiesGeometriesSnapshotFactory;
+        this.citiesGeometriesSnapshotStorage = citiesGeometriesSnapshotStorage;
+        this.indexedCityGeometryFactory = indexedCityGeometryFactory;
+        this.executorService = executorService;
         this.cityGeometriesShouldBeLoaded = cityGeometriesShouldBeLoaded;
+        this.reloadingRequested = new AtomicBoolean();
+        this.loadedGeometriesByCitiesIds = new HashMap<>();
+        this.loadedVersion = NOT_LOADED_VERSION;
     }
 
     @EventListener(classes = ApplicationReadyEvent.class)
     public void injectCitiesGeometriesAndBoundingBoxes() {
         if (this.cityGeometriesShouldBeLoaded) {
-            final Map<PreparedGeometry, PreparedGeometry> citiesGeometriesByBoundingBoxes = this.cityService
-                    .findPreparedGeometriesByPreparedBoundingBoxes();
-            this.mileageService.setCitiesGeometriesByBoundingBoxes(citiesGeometriesByBoundingBoxes);
+            this.injectStoredSnapshot();
+            this.load();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitiesChanged(CitiesChangedEvent event) {
+        this.requestReloading();
+    }
+
+    @Scheduled(initialDelayString = "${search-mileage.reload-city-geometries-delay-millis}",
+            fixedDelayString = "${search-mileage.reload-city-geometries-delay-millis}")
+    public void reloadBySchedule() {
+        this.requestReloading();
+    }
+
+    /**
+     * Requests, which come before start of reloading, are handled by one reloading. Request, which comes
+     * while reloading, leads to one more reloading.
+     */
+    private void requestReloading() {
+        if (this.cityGeometriesShouldBeLoaded && this.reloadingRequested.compareAndSet(false, true)) {
+            this.executorService.execute(this::reload);
+        }
+    }
+
+    private void reload() {
+        this.reloadingRequested.set(false);
+        try {
+            this.load();
+        } catch (final RuntimeException exception) {
+            log.error(LOG_TEMPLATE_FAILURE_RELOADING, exception);
+        }
+    }
+
+    //synchronized to make snapshot of the latest loading be the last injected one
+    private synchronized void load() {
+        final CitiesGeometriesChanges changes = this.cityService.findPreparedGeometriesChangedSinceVersion(
+                this.loadedVersion);
+        if (this.loadedVersion != NOT_LOADED_VERSION && changes.isEmpty()) {
+            return;
+        }
+        if (changes.isFull()) {
+            this.loadedGeometriesByCitiesIds.clear();
+        }
+        changes.getDeletedCitiesIds().forEach(this.loadedGeometriesByCitiesIds::remove);
+        changes.getChangedGeometriesByCitiesIds().forEach(
+                (cityId, geometry) -> this.loadedGeometriesByCitiesIds.put(
+                        cityId, this.indexedCityGeometryFactory.create(geometry)
+                )
+        );
+        final CitiesGeometriesSnapshot snapshot = this.citiesGeometriesSnapshotFactory.create(
+                List.copyOf(this.loadedGeometriesByCitiesIds.values()));
+        this.mileageService.setCitiesGeometriesSnapshot(snapshot);
+        //version is moved only after injecting, so failed reloading will be repeated with the same changes
+        this.loadedVersion = changes.getVersion();
+        log.info(LOG_TEMPLATE_LOADED_CITIES, this.loadedGeometriesByCitiesIds.size(),
+                changes.getChangedGeometriesByCitiesIds().size(), changes.getDeletedCitiesIds().size(),
+                this.loadedVersion);
+        this.citiesGeometriesSnapshotStorage.write(
+                this.findDatabaseId(), this.loadedVersion, this.loadedGeometriesByCitiesIds, snapshot);
+    }
+
+    private synchronized void injectStoredSnapshot() {
+        this.citiesGeometriesSnapshotStorage.read()
+                .filter(this::isActual)
+                .ifPresent(storedSnapshot -> {
+                    this.loadedGeometriesByCitiesIds.putAll(storedSnapshot.getGeometriesByCitiesIds());
+                    this.mileageService.setCitiesGeometriesSnapshot(storedSnapshot.getSnapshot());
+                    this.loadedVersion = storedSnapshot.getVersion();
+                });
+    }
+
+    //snapshot, which is newer than database, was stored for other database or before its restoring
+    private boolean isActual(StoredCitiesGeometriesSnapshot storedSnapshot) {
+        final String databaseId = this.findDatabaseId();
+        if (!databaseId.equals(storedSnapshot.getDatabaseId())) {
+            log.warn(LOG_TEMPLATE_STORED_SNAPSHOT_OF_OTHER_DATABASE, storedSnapshot.getDatabaseId(), databaseId);
+            return false;
+        }
+        final long nextVersion = this.cityService.findNextVersion();
+        if (storedSnapshot.getVersion() > nextVersion) {
+            log.warn(LOG_TEMPLATE_NOT_ACTUAL_STORED_SNAPSHOT, storedSnapshot.getVersion(), nextVersion);
+            return false;
+        }
+        return true;
+    }
+
+    //is called only from synchronized methods
+    private String findDatabaseId() {
+        if (this.databaseId == null) {
+            this.databaseId = this.cityService.findDatabaseId();
         }
+        return this.databaseId;
     }
 }
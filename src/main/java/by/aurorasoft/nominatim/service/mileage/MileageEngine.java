@@ -0,0 +1,14 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+public enum MileageEngine {
+    /**
+     * points are classified in application by geometries of cities, see {@link ClassificationMode}
+     */
+    JVM,
+
+    /**
+     * points are shipped to database as one geometry and are classified by PostGIS against indexed geometries
+     * of cities, so geometries of cities aren't moved into application
+     */
+    POSTGIS
+}
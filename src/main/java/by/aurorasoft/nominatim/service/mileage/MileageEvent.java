@@ -0,0 +1,70 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event of one computed mileage, it's committed also if finding is failed. Amounts, which aren't
+ * defined for request, are -1.
+ */
+@Name("by.aurorasoft.nominatim.Mileage")
+@Label("Mileage")
+@Category({"Nominatim Adapter", "Mileage"})
+@StackTrace(false)
+final class MileageEvent extends Event {
+    private static final int NOT_DEFINED_AMOUNT = -1;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Classification Mode")
+    String classificationMode;
+
+    @Label("Points")
+    int amountOfPoints;
+
+    @Label("Filtered Points")
+    int amountOfFilteredPoints;
+
+    @Label("Considered Cities")
+    int amountOfConsideredCities;
+
+    @Label("Geometries Tests")
+    long amountOfGeometriesTests;
+
+    @Label("Urban Points")
+    int amountOfUrbanPoints;
+
+    @Label("Country Points")
+    int amountOfCountryPoints;
+
+    @Label("Computing Duration")
+    @Timespan
+    long computingDuration;
+
+    @Label("Database Query Duration")
+    @Timespan
+    long databaseQueryDuration;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    public void commit(MileageStatistics statistics, MileageEngine engine, ClassificationMode classificationMode,
+                       boolean succeeded) {
+        this.end();
+        if (!this.shouldCommit()) {
+            return;
+        }
+        this.engine = engine.name();
+        this.classificationMode = classificationMode.name();
+        this.amountOfPoints = statistics.getAmountOfPoints();
+        this.amountOfFilteredPoints = statistics.findAmountOfFilteredPoints().orElse(NOT_DEFINED_AMOUNT);
+        this.amountOfConsideredCities = statistics.findAmountOfConsideredCities().orElse(NOT_DEFINED_AMOUNT);
+        this.amountOfGeometriesTests = statistics.getAmountOfGeometriesTests();
+        this.amountOfUrbanPoints = statistics.getAmountOfUrbanPoints();
+        this.amountOfCountryPoints = statistics.getAmountOfCountryPoints();
+        this.computingDuration = statistics.getComputingDurationNanos();
+        this.databaseQueryDuration = statistics.findDurationNanos(MileagePhase.DATABASE_QUERY);
+        this.succeeded = succeeded;
+        this.commit();
+    }
+}
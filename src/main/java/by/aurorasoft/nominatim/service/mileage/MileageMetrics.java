@@ -0,0 +1,106 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Arrays.stream;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Records statistics of each computed mileage: duration and allocated bytes of each executed phase, elapsed time of
+ * computing, amounts of points before and after filtering, amounts of urban and country points, amount of considered
+ * cities and amount of tests of points by cities' geometries. Duration of phase is summed by chunks of track, so in
+ * parallel computing it is total time of all threads, but not elapsed one.
+ */
+@Component
+public final class MileageMetrics {
+    static final String METER_NAME_PHASE_DURATION = "mileage.phase.duration";
+    static final String METER_NAME_PHASE_ALLOCATED_BYTES = "mileage.phase.allocated";
+    static final String METER_NAME_COMPUTING_DURATION = "mileage.computing.duration";
+    static final String METER_NAME_POINTS = "mileage.points";
+    static final String METER_NAME_FILTERED_POINTS = "mileage.points.filtered";
+    static final String METER_NAME_URBAN_POINTS = "mileage.points.urban";
+    static final String METER_NAME_COUNTRY_POINTS = "mileage.points.country";
+    static final String METER_NAME_CONSIDERED_CITIES = "mileage.cities.considered";
+    static final String METER_NAME_GEOMETRIES_TESTS = "mileage.geometries.tests";
+
+    static final String TAG_KEY_PHASE = "phase";
+
+    private static final String BASE_UNIT_BYTES = "bytes";
+    private static final String BASE_UNIT_POINTS = "points";
+    private static final String BASE_UNIT_CITIES = "cities";
+    private static final String BASE_UNIT_TESTS = "tests";
+
+    private final Map<MileagePhase, Timer> durationTimersByPhases;
+    private final Map<MileagePhase, DistributionSummary> allocatedBytesSummariesByPhases;
+    private final Timer computingDurationTimer;
+    private final DistributionSummary pointsSummary;
+    private final DistributionSummary filteredPointsSummary;
+    private final DistributionSummary urbanPointsSummary;
+    private final DistributionSummary countryPointsSummary;
+    private final DistributionSummary consideredCitiesSummary;
+    private final DistributionSummary geometriesTestsSummary;
+
+    public MileageMetrics(MeterRegistry meterRegistry) {
+        this.durationTimersByPhases = createMetersByPhases(
+                phase -> Timer.builder(METER_NAME_PHASE_DURATION)
+                        .tag(TAG_KEY_PHASE, findTagValue(phase))
+                        .register(meterRegistry)
+        );
+        this.allocatedBytesSummariesByPhases = createMetersByPhases(
+                phase -> DistributionSummary.builder(METER_NAME_PHASE_ALLOCATED_BYTES)
+                        .tag(TAG_KEY_PHASE, findTagValue(phase))
+                        .baseUnit(BASE_UNIT_BYTES)
+                        .register(meterRegistry)
+        );
+        this.computingDurationTimer = Timer.builder(METER_NAME_COMPUTING_DURATION).register(meterRegistry);
+        this.pointsSummary = createSummary(meterRegistry, METER_NAME_POINTS, BASE_UNIT_POINTS);
+        this.filteredPointsSummary = createSummary(meterRegistry, METER_NAME_FILTERED_POINTS, BASE_UNIT_POINTS);
+        this.urbanPointsSummary = createSummary(meterRegistry, METER_NAME_URBAN_POINTS, BASE_UNIT_POINTS);
+        this.countryPointsSummary = createSummary(meterRegistry, METER_NAME_COUNTRY_POINTS, BASE_UNIT_POINTS);
+        this.consideredCitiesSummary = createSummary(meterRegistry, METER_NAME_CONSIDERED_CITIES, BASE_UNIT_CITIES);
+        this.geometriesTestsSummary = createSummary(meterRegistry, METER_NAME_GEOMETRIES_TESTS, BASE_UNIT_TESTS);
+    }
+
+    void record(MileageStatistics statistics) {
+        for (final MileagePhase phase : MileagePhase.values()) {
+            if (statistics.isExecuted(phase)) {
+                this.durationTimersByPhases.get(phase).record(statistics.findDurationNanos(phase), NANOSECONDS);
+                if (MileageStatistics.isAllocationMeasured()) {
+                    this.allocatedBytesSummariesByPhases.get(phase).record(statistics.findAllocatedBytes(phase));
+                }
+            }
+        }
+        this.computingDurationTimer.record(statistics.getComputingDurationNanos(), NANOSECONDS);
+        this.pointsSummary.record(statistics.getAmountOfPoints());
+        statistics.findAmountOfFilteredPoints().ifPresent(this.filteredPointsSummary::record);
+        this.urbanPointsSummary.record(statistics.getAmountOfUrbanPoints());
+        this.countryPointsSummary.record(statistics.getAmountOfCountryPoints());
+        statistics.findAmountOfConsideredCities().ifPresent(this.consideredCitiesSummary::record);
+        this.geometriesTestsSummary.record(statistics.getAmountOfGeometriesTests());
+    }
+
+    static String findTagValue(MileagePhase phase) {
+        return phase.name().toLowerCase().replace('_', '-');
+    }
+
+    private static <M> Map<MileagePhase, M> createMetersByPhases(Function<MileagePhase, M> meterFactory) {
+        return stream(MileagePhase.values())
+                .collect(toMap(identity(), meterFactory, (first, second) -> first,
+                        () -> new EnumMap<>(MileagePhase.class)));
+    }
+
+    private static DistributionSummary createSummary(MeterRegistry meterRegistry, String name, String baseUnit) {
+        return DistributionSummary.builder(name)
+                .baseUnit(baseUnit)
+                .register(meterRegistry);
+    }
+}
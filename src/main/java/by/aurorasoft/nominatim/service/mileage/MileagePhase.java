@@ -0,0 +1,19 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+public enum MileagePhase {
+    TRACK_FILTERING,
+
+    /**
+     * Lookup of cities in memory: in snapshot or in tiles cache
+     */
+    CANDIDATES_LOOKUP,
+
+    /**
+     * Queries of cities to database: by prepared geometries cache or by postgis engine
+     */
+    DATABASE_QUERY,
+
+    POINTS_CLASSIFICATION,
+
+    DISTANCES_SUMMATION
+}
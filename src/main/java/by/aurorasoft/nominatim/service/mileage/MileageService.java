@@ -1,113 +1,393 @@
 package by.aurorasoft.nominatim.service.mileage;
 
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.crud.model.dto.Track.PointView;
 import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.rest.model.ColumnarMileageRequest;
 import by.aurorasoft.nominatim.rest.model.MileageRequest;
 import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import by.aurorasoft.nominatim.service.factory.TrackFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshot;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesTilesCache;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesPreparedGeometriesCache;
+import by.aurorasoft.nominatim.service.mileage.locator.CellsMaskCityPointLocator;
+import by.aurorasoft.nominatim.service.mileage.locator.CandidatesCityPointLocator;
+import by.aurorasoft.nominatim.service.mileage.locator.CityPointLocator;
+import by.aurorasoft.nominatim.service.mileage.locator.IndexCityPointLocator;
+import by.aurorasoft.nominatim.service.mileage.locator.LastHitCachingCityPointLocator;
 import by.nhorushko.distancecalculator.*;
 import by.nhorushko.trackfilter.TrackFilter;
-import lombok.Value;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
+import java.util.BitSet;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
-import static java.util.stream.Collectors.*;
-import static java.util.stream.IntStream.rangeClosed;
+import static by.aurorasoft.nominatim.service.mileage.MileageEngine.POSTGIS;
+import static by.aurorasoft.nominatim.service.mileage.MileagePhase.*;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNullElse;
+import static java.util.stream.IntStream.range;
 
 @Service
 public final class MileageService {
-    private static final double EPSILON_TO_FILTER_TRACK_POINTS = 0.00015;
+    static final double EPSILON_TO_FILTER_TRACK_POINTS = 0.00015;
+    private static final int MIN_AMOUNT_OF_POINTS_TO_FIND_MILEAGE = 2;
 
     private final TrackFilter trackFilter;
     private final DistanceCalculator distanceCalculator;
     private final GeometryCreatingService geometryCreatingService;
+    private final CitiesPreparedGeometriesCache citiesPreparedGeometriesCache;
     private final CityService cityService;
-    private Map<PreparedGeometry, PreparedGeometry> citiesGeometriesByBoundingBoxes;
+    private final CitiesGeometriesTilesCache citiesGeometriesTilesCache;
+    private final TrackFactory trackFactory;
+    private final MileageMetrics metrics;
+    private final ClassificationMode classificationMode;
+    private final MileageEngine engine;
+    private final int pointsInQueryOfPostgisEngine;
+    private final ForkJoinPool forkJoinPool;
+    private final int minPointsToFindMileageInParallel;
+    private final int pointsInChunk;
+
+    //snapshot is replaced as a whole, so each request works with structures of the same cities
+    private volatile CitiesGeometriesSnapshot citiesGeometriesSnapshot;
 
     public MileageService(TrackFilter trackFilter, DistanceCalculator distanceCalculator,
-                          GeometryCreatingService geometryCreatingService, CityService cityService) {
+                          GeometryCreatingService geometryCreatingService,
+                          CitiesPreparedGeometriesCache citiesPreparedGeometriesCache, CityService cityService,
+                          CitiesGeometriesTilesCache citiesGeometriesTilesCache, TrackFactory trackFactory,
+                          MileageMetrics metrics,
+                          @Value("${search-mileage.classification-mode}")
+                          ClassificationMode classificationMode,
+                          @Value("${search-mileage.engine}")
+                          MileageEngine engine,
+                          @Value("${search-mileage.postgis-engine.points-in-query}")
+                          int pointsInQueryOfPostgisEngine,
+                          @Qualifier("forkJoinPoolToFindMileages") ForkJoinPool forkJoinPool,
+                          @Value("${search-mileage.parallel-computing.min-points}")
+                          int minPointsToFindMileageInParallel,
+                          @Value("${search-mileage.parallel-computing.points-in-chunk}")
+                          int pointsInChunk) {
         this.trackFilter = trackFilter;
         this.distanceCalculator = distanceCalculator;
         this.geometryCreatingService = geometryCreatingService;
+        this.citiesPreparedGeometriesCache = citiesPreparedGeometriesCache;
         this.cityService = cityService;
-        this.citiesGeometriesByBoundingBoxes = null;
+        this.citiesGeometriesTilesCache = citiesGeometriesTilesCache;
+        this.trackFactory = trackFactory;
+        this.metrics = metrics;
+        this.classificationMode = classificationMode;
+        this.engine = engine;
+        this.pointsInQueryOfPostgisEngine = pointsInQueryOfPostgisEngine;
+        this.forkJoinPool = forkJoinPool;
+        this.minPointsToFindMileageInParallel = minPointsToFindMileageInParallel;
+        this.pointsInChunk = pointsInChunk;
+        this.citiesGeometriesSnapshot = null;
     }
 
     public MileageResponse findMileage(MileageRequest request) {
+        final Track track = this.trackFactory.create(request.getTrackPoints());
+        final DistanceCalculatorSettings distanceCalculatorSettings = new DistanceCalculatorSettingsImpl(
+                request.getMinDetectionSpeed(), request.getMaxMessageTimeout());
+        return this.findMileage(track, distanceCalculatorSettings, request.getEngine());
+    }
+
+    public MileageResponse findMileage(ColumnarMileageRequest request) {
         final DistanceCalculatorSettings distanceCalculatorSettings = new DistanceCalculatorSettingsImpl(
                 request.getMinDetectionSpeed(), request.getMaxMessageTimeout());
-        final Map<Boolean, Double> mileagesByLocatedInCity = this.findMileagesByLocatedInCity(
-                request.getTrackPoints(), distanceCalculatorSettings);
-        return new MileageResponse(
-                mileagesByLocatedInCity.get(true),
-                mileagesByLocatedInCity.get(false)
+        return this.findMileage(request.getTrack(), distanceCalculatorSettings, request.getEngine());
+    }
+
+    public MileageResponse findMileage(Track track, DistanceCalculatorSettings distanceCalculatorSettings) {
+        return this.findMileage(track, distanceCalculatorSettings, null);
+    }
+
+    /**
+     * @param engine engine to classify points or null to use configured one
+     * @return zero mileage if track has less than two points
+     */
+    public MileageResponse findMileage(Track track, DistanceCalculatorSettings distanceCalculatorSettings,
+                                       MileageEngine engine) {
+        if (track.getSize() < MIN_AMOUNT_OF_POINTS_TO_FIND_MILEAGE) {
+            return new MileageResponse(0, 0);
+        }
+        final MileageEvent event = new MileageEvent();
+        event.begin();
+        final MileageEngine usedEngine = requireNonNullElse(engine, this.engine);
+        final MileageStatistics statistics = new MileageStatistics();
+        statistics.setAmountOfPoints(track.getSize());
+        boolean succeeded = false;
+        try {
+            final Supplier<PointInCityPredicate> pointInCityPredicateFactory = this.createPointInCityPredicateFactory(
+                    track, usedEngine, statistics);
+            final Mileage mileage = statistics.measureComputing(
+                    () -> track.getSize() >= this.minPointsToFindMileageInParallel
+                            ? this.findMileageInParallel(track, distanceCalculatorSettings, pointInCityPredicateFactory)
+                            : this.findMileageOfChunk(track, 1, track.getSize(), distanceCalculatorSettings,
+                            pointInCityPredicateFactory.get())
+            );
+            this.metrics.record(statistics.combine(mileage.statistics));
+            succeeded = true;
+            return new MileageResponse(mileage.urban.getSum(), mileage.country.getSum());
+        } finally {
+            event.commit(statistics, usedEngine, this.classificationMode, succeeded);
+        }
+    }
+
+    void setCitiesGeometriesSnapshot(CitiesGeometriesSnapshot citiesGeometriesSnapshot) {
+        this.citiesGeometriesSnapshot = citiesGeometriesSnapshot;
+    }
+
+    /**
+     * Each slice of chunk [firstPointIndex - 1, firstPointIndex] ... [lastPointIndex - 1, lastPointIndex] is handled
+     * by exactly one chunk, so neighbouring chunks share only one point and results are exact at seams
+     */
+    private Mileage findMileageInParallel(Track track, DistanceCalculatorSettings distanceCalculatorSettings,
+                                          Supplier<PointInCityPredicate> pointInCityPredicateFactory) {
+        final int amountOfChunks = (track.getSize() - 1 + this.pointsInChunk - 1) / this.pointsInChunk;
+        return this.forkJoinPool
+                .submit(() -> range(0, amountOfChunks)
+                        .parallel()
+                        .mapToObj(chunkIndex -> this.findMileageOfChunk(
+                                track,
+                                1 + chunkIndex * this.pointsInChunk,
+                                min(1 + (chunkIndex + 1) * this.pointsInChunk, track.getSize()),
+                                distanceCalculatorSettings,
+                                pointInCityPredicateFactory.get()))
+                        .collect(Mileage::new, Mileage::combine, Mileage::combine))
+                .join();
+    }
+
+    /**
+     * Points are classified before summation of distances, so each phase is measured once per chunk, not for
+     * each point
+     *
+     * @param fromPointIndex inclusive index of second point of first slice
+     * @param toPointIndex   exclusive index of second point of last slice
+     */
+    private Mileage findMileageOfChunk(Track track, int fromPointIndex, int toPointIndex,
+                                       DistanceCalculatorSettings distanceCalculatorSettings,
+                                       PointInCityPredicate pointInCityPredicate) {
+        final Mileage mileage = new Mileage();
+        final boolean[] pointsLocatedInCities = mileage.statistics.measure(
+                POINTS_CLASSIFICATION,
+                () -> classifyPoints(fromPointIndex, toPointIndex, pointInCityPredicate)
         );
+        mileage.statistics.addGeometriesTests(pointInCityPredicate.findAmountOfGeometriesTests());
+        final int amountOfUrbanPoints = countTrues(pointsLocatedInCities);
+        mileage.statistics.addClassifiedPoints(amountOfUrbanPoints, pointsLocatedInCities.length - amountOfUrbanPoints);
+        mileage.statistics.measure(DISTANCES_SUMMATION, () -> {
+            final PointView firstPoint = track.createPointView(0);
+            final PointView secondPoint = track.createPointView(0);
+            for (int i = fromPointIndex; i < toPointIndex; i++) {
+                firstPoint.moveTo(i - 1);
+                secondPoint.moveTo(i);
+                final double distance = this.distanceCalculator.calculateDistance(
+                        firstPoint, secondPoint, distanceCalculatorSettings);
+                //slices, which is located in city, must have second point, which is located in city
+                if (pointsLocatedInCities[i - fromPointIndex]) {
+                    mileage.urban.accept(distance);
+                } else {
+                    mileage.country.accept(distance);
+                }
+            }
+        });
+        return mileage;
+    }
+
+    private static boolean[] classifyPoints(int fromPointIndex, int toPointIndex,
+                                            PointInCityPredicate pointInCityPredicate) {
+        final boolean[] pointsLocatedInCities = new boolean[toPointIndex - fromPointIndex];
+        for (int i = fromPointIndex; i < toPointIndex; i++) {
+            pointsLocatedInCities[i - fromPointIndex] = pointInCityPredicate.test(i);
+        }
+        return pointsLocatedInCities;
     }
 
-    void setCitiesGeometriesByBoundingBoxes(Map<PreparedGeometry, PreparedGeometry> citiesGeometriesByBoundingBoxes) {
-        this.citiesGeometriesByBoundingBoxes = citiesGeometriesByBoundingBoxes;
+    private static int countTrues(boolean[] values) {
+        int amountOfTrues = 0;
+        for (final boolean value : values) {
+            if (value) {
+                amountOfTrues++;
+            }
+        }
+        return amountOfTrues;
     }
 
-    private Map<Boolean, Double> findMileagesByLocatedInCity(List<? extends LatLngAlt> trackPoints,
-                                                             DistanceCalculatorSettings distanceCalculatorSettings) {
-        final List<PreparedGeometry> intersectedCitiesGeometries
-                = this.findGeometriesIntersectedByLineStringOfPoints(trackPoints);
-        final int indexPenultimatePoint = trackPoints.size() - 2;
-        return rangeClosed(0, indexPenultimatePoint)
-                .mapToObj(i -> new TrackSlice(
-                        trackPoints.get(i),
-                        trackPoints.get(i + 1),
-                        //slices, which is located in city, must have second point, which is located in city
-                        this.isAnyGeometryContainPoint(trackPoints.get(i + 1), intersectedCitiesGeometries)
-                ))
-                .collect(
-                        partitioningBy(
-                                TrackSlice::isLocatedInCity,
-                                summingDouble(slice -> this.calculateDistance(slice, distanceCalculatorSettings))
-                        )
-                );
+    private Supplier<PointInCityPredicate> createPointInCityPredicateFactory(Track track, MileageEngine engine,
+                                                                            MileageStatistics statistics) {
+        if (engine == POSTGIS) {
+            return this.createPostgisPointInCityPredicateFactory(track, statistics);
+        }
+        final Supplier<CityPointLocator> cityPointLocatorFactory = this.createCityPointLocatorFactory(
+                track, this.citiesGeometriesSnapshot, statistics);
+        return () -> {
+            final CityPointLocator cityPointLocator = cityPointLocatorFactory.get();
+            return new PointInCityPredicate() {
+                @Override
+                public boolean test(int pointIndex) {
+                    return cityPointLocator.isLocatedInCity(
+                            track.getLatitude(pointIndex), track.getLongitude(pointIndex));
+                }
+
+                @Override
+                public long findAmountOfGeometriesTests() {
+                    return cityPointLocator.findAmountOfGeometriesTests();
+                }
+            };
+        };
     }
 
-    private double calculateDistance(TrackSlice trackSlice, DistanceCalculatorSettings distanceCalculatorSettings) {
-        return this.distanceCalculator.calculateDistance(trackSlice.firstPoint, trackSlice.secondPoint,
-                distanceCalculatorSettings);
+    /**
+     * All points are classified by database before computing of mileage, so predicate has no state and is shared
+     */
+    private Supplier<PointInCityPredicate> createPostgisPointInCityPredicateFactory(Track track,
+                                                                                    MileageStatistics statistics) {
+        final BitSet pointsLocatedInCities = statistics.measure(
+                DATABASE_QUERY, () -> this.findPointsLocatedInCitiesByDatabase(track));
+        final PointInCityPredicate pointInCityPredicate = pointsLocatedInCities::get;
+        return () -> pointInCityPredicate;
     }
 
-    private List<PreparedGeometry> findGeometriesIntersectedByLineStringOfPoints(
-            List<? extends LatLngAlt> trackPoints) {
-        final LineString lineString = this.createLineStringByFilteredPoints(trackPoints);
-        return this.citiesGeometriesByBoundingBoxes != null
-                ? this.findGeometriesIntersectedByLineStringByLoadedPreparedGeometries(lineString)
-                : this.cityService.findPreparedGeometriesWhoseBoundingBoxIntersectedByLineString(lineString);
+    private BitSet findPointsLocatedInCitiesByDatabase(Track track) {
+        final BitSet pointsLocatedInCities = new BitSet(track.getSize());
+        for (int from = 0; from < track.getSize(); from += this.pointsInQueryOfPostgisEngine) {
+            final int to = min(from + this.pointsInQueryOfPostgisEngine, track.getSize());
+            final int firstPointIndex = from;
+            this.cityService.findNumbersOfPointsLocatedInCities(
+                    this.geometryCreatingService.createMultiPoint(track, from, to)
+            ).forEach(pointNumber -> pointsLocatedInCities.set(firstPointIndex + pointNumber - 1));
+        }
+        return pointsLocatedInCities;
     }
 
-    private LineString createLineStringByFilteredPoints(List<? extends LatLngAlt> notFilteredPoints) {
-        final List<? extends LatLngAlt> significantTrackPointsToCreateLineString = this.trackFilter.filter(
-                notFilteredPoints, EPSILON_TO_FILTER_TRACK_POINTS);
-        return this.geometryCreatingService.createLineString(significantTrackPointsToCreateLineString);
+    /**
+     * Expensive lookups of cities are done once, but each chunk of track gets own locator, because locators
+     * can have state
+     */
+    private Supplier<CityPointLocator> createCityPointLocatorFactory(Track track,
+                                                                     CitiesGeometriesSnapshot snapshot,
+                                                                     MileageStatistics statistics) {
+        switch (this.classificationMode) {
+            case POINT: {
+                final CitiesGeometriesIndex index = this.findCitiesGeometriesIndex(track, snapshot, statistics);
+                return () -> new IndexCityPointLocator(index, this.geometryCreatingService);
+            }
+            case LAST_HIT: {
+                final CitiesGeometriesIndex index = this.findCitiesGeometriesIndex(track, snapshot, statistics);
+                return () -> new LastHitCachingCityPointLocator(index, this.geometryCreatingService);
+            }
+            case RASTER_MASK:
+                return this.createCellsMaskCityPointLocatorFactory(
+                        track, snapshot, snapshot != null ? snapshot.getRasterMask() : null, statistics);
+            case CELL_COVERING:
+                return this.createCellsMaskCityPointLocatorFactory(
+                        track, snapshot, snapshot != null ? snapshot.getCellCovering() : null, statistics);
+            case LINE_STRING:
+            default: {
+                final List<PreparedGeometry> candidates = this.findGeometriesIntersectedByLineStringOfPoints(
+                        track, snapshot, statistics);
+                statistics.setAmountOfConsideredCities(candidates.size());
+                return () -> new CandidatesCityPointLocator(candidates, this.geometryCreatingService);
+            }
+        }
+    }
+
+    private Supplier<CityPointLocator> createCellsMaskCityPointLocatorFactory(Track track,
+                                                                              CitiesGeometriesSnapshot snapshot,
+                                                                              CitiesCellsMask mask,
+                                                                              MileageStatistics statistics) {
+        final CitiesGeometriesIndex index = this.findCitiesGeometriesIndex(track, snapshot, statistics);
+        return () -> {
+            final CityPointLocator boundaryCellsLocator = new LastHitCachingCityPointLocator(
+                    index, this.geometryCreatingService);
+            return mask != null ? new CellsMaskCityPointLocator(mask, boundaryCellsLocator) : boundaryCellsLocator;
+        };
+    }
+
+    private CitiesGeometriesIndex findCitiesGeometriesIndex(Track track, CitiesGeometriesSnapshot snapshot,
+                                                            MileageStatistics statistics) {
+        final CitiesGeometriesIndex index = this.lookupCitiesGeometriesIndex(track, snapshot, statistics);
+        statistics.setAmountOfConsideredCities(index.findAmountOfCitiesGeometries());
+        return index;
+    }
+
+    private CitiesGeometriesIndex lookupCitiesGeometriesIndex(Track track, CitiesGeometriesSnapshot snapshot,
+                                                              MileageStatistics statistics) {
+        if (snapshot != null) {
+            return snapshot.getIndex();
+        }
+        final LineString lineString = this.createLineStringByFilteredPoints(track, statistics);
+        if (this.citiesGeometriesTilesCache.isEnabled()) {
+            return statistics.measure(CANDIDATES_LOOKUP, () -> this.citiesGeometriesTilesCache.findIndex(lineString));
+        }
+        return CitiesGeometriesIndex.createByGeometries(statistics.measure(
+                DATABASE_QUERY,
+                () -> this.citiesPreparedGeometriesCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(
+                        lineString)
+        ));
+    }
+
+    private List<PreparedGeometry> findGeometriesIntersectedByLineStringOfPoints(Track track,
+                                                                             CitiesGeometriesSnapshot snapshot,
+                                                                             MileageStatistics statistics) {
+        final LineString lineString = this.createLineStringByFilteredPoints(track, statistics);
+        if (snapshot != null) {
+            return statistics.measure(
+                    CANDIDATES_LOOKUP,
+                    () -> snapshot.getIndex().findGeometriesWhoseBoundingBoxIntersectedByGeometry(lineString)
+            );
+        }
+        if (this.citiesGeometriesTilesCache.isEnabled()) {
+            return statistics.measure(
+                    CANDIDATES_LOOKUP,
+                    () -> this.citiesGeometriesTilesCache.findIndex(lineString)
+                            .findGeometriesWhoseBoundingBoxIntersectedByGeometry(lineString)
+            );
+        }
+        return statistics.measure(
+                DATABASE_QUERY,
+                () -> this.citiesPreparedGeometriesCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(
+                        lineString)
+        );
     }
 
-    private List<PreparedGeometry> findGeometriesIntersectedByLineStringByLoadedPreparedGeometries(LineString lineString) {
-        return this.citiesGeometriesByBoundingBoxes
-                .entrySet()
-                .stream()
-                .filter(geometryByBoundingBox -> geometryByBoundingBox.getKey().intersects(lineString))
-                .map(Map.Entry::getValue)
-                .collect(toList());
+    private LineString createLineStringByFilteredPoints(Track track, MileageStatistics statistics) {
+        final List<? extends LatLngAlt> significantTrackPointsToCreateLineString = statistics.measure(
+                TRACK_FILTERING,
+                () -> this.trackFilter.filter(track.asPoints(), EPSILON_TO_FILTER_TRACK_POINTS)
+        );
+        statistics.setAmountOfFilteredPoints(significantTrackPointsToCreateLineString.size());
+        return this.geometryCreatingService.createLineString(significantTrackPointsToCreateLineString);
     }
 
-    private boolean isAnyGeometryContainPoint(LatLngAlt latLngAlt, List<PreparedGeometry> geometries) {
-        final Point point = this.geometryCreatingService.createPoint(latLngAlt);
-        return geometries
-                .stream()
-                .anyMatch(geometry -> geometry.contains(point));
+    @FunctionalInterface
+    private interface PointInCityPredicate {
+        boolean test(int pointIndex);
+
+        default long findAmountOfGeometriesTests() {
+            return 0;
+        }
     }
 
-    @Value
-    private static class TrackSlice {
-        LatLngAlt firstPoint;
-        LatLngAlt secondPoint;
-        boolean locatedInCity;
+    private static final class Mileage {
+        private final DoubleSummaryStatistics urban = new DoubleSummaryStatistics();
+        private final DoubleSummaryStatistics country = new DoubleSummaryStatistics();
+        private final MileageStatistics statistics = new MileageStatistics();
+
+        public Mileage combine(Mileage other) {
+            this.urban.combine(other.urban);
+            this.country.combine(other.country);
+            this.statistics.combine(other.statistics);
+            return this;
+        }
     }
 }
@@ -0,0 +1,183 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.OptionalInt;
+import java.util.function.Supplier;
+
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+
+/**
+ * Statistics of computing of one mileage. Isn't thread-safe, so each chunk of track accumulates own statistics,
+ * which are combined after that. Durations and allocated bytes of phases are summed by chunks, so in parallel
+ * computing they exceed elapsed time, which is measured separately. Allocated bytes are measured by current thread
+ * only if JVM supports it.
+ */
+final class MileageStatistics {
+    private static final int NOT_DEFINED_AMOUNT = -1;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_MEASURED = THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemoryEnabled();
+
+    private final boolean[] executedPhases;
+    private final long[] durationsNanosByPhases;
+    private final long[] allocatedBytesByPhases;
+    private int amountOfPoints;
+    private int amountOfFilteredPoints;
+    private int amountOfConsideredCities;
+    private long amountOfGeometriesTests;
+    private int amountOfUrbanPoints;
+    private int amountOfCountryPoints;
+    private long computingDurationNanos;
+
+    public MileageStatistics() {
+        final int amountOfPhases = MileagePhase.values().length;
+        this.executedPhases = new boolean[amountOfPhases];
+        this.durationsNanosByPhases = new long[amountOfPhases];
+        this.allocatedBytesByPhases = new long[amountOfPhases];
+        this.amountOfPoints = 0;
+        this.amountOfFilteredPoints = NOT_DEFINED_AMOUNT;
+        this.amountOfConsideredCities = NOT_DEFINED_AMOUNT;
+        this.amountOfGeometriesTests = 0;
+        this.amountOfUrbanPoints = 0;
+        this.amountOfCountryPoints = 0;
+        this.computingDurationNanos = 0;
+    }
+
+    public static boolean isAllocationMeasured() {
+        return ALLOCATION_MEASURED;
+    }
+
+    public <T> T measure(MileagePhase phase, Supplier<T> operation) {
+        final long startNanos = nanoTime();
+        final long startAllocatedBytes = findAllocatedBytesOfCurrentThread();
+        final T result = operation.get();
+        this.addPhase(phase, nanoTime() - startNanos, findAllocatedBytesOfCurrentThread() - startAllocatedBytes);
+        return result;
+    }
+
+    public void measure(MileagePhase phase, Runnable operation) {
+        this.measure(phase, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    public void addPhase(MileagePhase phase, long durationNanos, long allocatedBytes) {
+        this.executedPhases[phase.ordinal()] = true;
+        this.durationsNanosByPhases[phase.ordinal()] += durationNanos;
+        this.allocatedBytesByPhases[phase.ordinal()] += allocatedBytes;
+    }
+
+    public boolean isExecuted(MileagePhase phase) {
+        return this.executedPhases[phase.ordinal()];
+    }
+
+    public long findDurationNanos(MileagePhase phase) {
+        return this.durationsNanosByPhases[phase.ordinal()];
+    }
+
+    public long findAllocatedBytes(MileagePhase phase) {
+        return this.allocatedBytesByPhases[phase.ordinal()];
+    }
+
+    public int getAmountOfPoints() {
+        return this.amountOfPoints;
+    }
+
+    public void setAmountOfPoints(int amountOfPoints) {
+        this.amountOfPoints = amountOfPoints;
+    }
+
+    /**
+     * @return amount of points after filtering or empty if track wasn't filtered
+     */
+    public OptionalInt findAmountOfFilteredPoints() {
+        return findDefinedAmount(this.amountOfFilteredPoints);
+    }
+
+    public void setAmountOfFilteredPoints(int amountOfFilteredPoints) {
+        this.amountOfFilteredPoints = amountOfFilteredPoints;
+    }
+
+    /**
+     * @return amount of cities, by which points were classified, or empty if points were classified by database
+     */
+    public OptionalInt findAmountOfConsideredCities() {
+        return findDefinedAmount(this.amountOfConsideredCities);
+    }
+
+    public void setAmountOfConsideredCities(int amountOfConsideredCities) {
+        this.amountOfConsideredCities = amountOfConsideredCities;
+    }
+
+    public long getAmountOfGeometriesTests() {
+        return this.amountOfGeometriesTests;
+    }
+
+    public void addGeometriesTests(long amountOfGeometriesTests) {
+        this.amountOfGeometriesTests += amountOfGeometriesTests;
+    }
+
+    public int getAmountOfUrbanPoints() {
+        return this.amountOfUrbanPoints;
+    }
+
+    public int getAmountOfCountryPoints() {
+        return this.amountOfCountryPoints;
+    }
+
+    /**
+     * Adds classified points, which are second points of slices, so first point of track isn't counted
+     */
+    public void addClassifiedPoints(int amountOfUrbanPoints, int amountOfCountryPoints) {
+        this.amountOfUrbanPoints += amountOfUrbanPoints;
+        this.amountOfCountryPoints += amountOfCountryPoints;
+    }
+
+    /**
+     * Measures elapsed time of classification of points and summation of distances by all chunks
+     */
+    public <T> T measureComputing(Supplier<T> computing) {
+        final long startNanos = nanoTime();
+        final T result = computing.get();
+        this.computingDurationNanos = nanoTime() - startNanos;
+        return result;
+    }
+
+    public long getComputingDurationNanos() {
+        return this.computingDurationNanos;
+    }
+
+    public void setComputingDurationNanos(long computingDurationNanos) {
+        this.computingDurationNanos = computingDurationNanos;
+    }
+
+    /**
+     * Adds phases, geometries tests and classified points of other statistics, which are accumulated by chunks
+     * of track
+     */
+    public MileageStatistics combine(MileageStatistics other) {
+        for (int i = 0; i < this.executedPhases.length; i++) {
+            this.executedPhases[i] |= other.executedPhases[i];
+            this.durationsNanosByPhases[i] += other.durationsNanosByPhases[i];
+            this.allocatedBytesByPhases[i] += other.allocatedBytesByPhases[i];
+        }
+        this.amountOfGeometriesTests += other.amountOfGeometriesTests;
+        this.amountOfUrbanPoints += other.amountOfUrbanPoints;
+        this.amountOfCountryPoints += other.amountOfCountryPoints;
+        return this;
+    }
+
+    private static long findAllocatedBytesOfCurrentThread() {
+        return ALLOCATION_MEASURED
+                ? ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(currentThread().getId())
+                : 0;
+    }
+
+    private static OptionalInt findDefinedAmount(int amount) {
+        return amount != NOT_DEFINED_AMOUNT ? OptionalInt.of(amount) : OptionalInt.empty();
+    }
+}
@@ -0,0 +1,79 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.experimental.UtilityClass;
+import org.locationtech.jts.geom.Envelope;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Hierarchical cells of quadtree over [-180, 180] x [-90, 90]. Id of cell with level L and morton code M of its
+ * position is ((M << 1) | 1) << 2 * (MAX_LEVEL - L), so ids of all descendants of cell are in range
+ * [{@link #findRangeMin(long)}, {@link #findRangeMax(long)}] and id of leaf cell containing point can be compared
+ * with ids of cells of any level.
+ */
+@UtilityClass
+class CellIdUtil {
+    public static final int MAX_LEVEL = 30;
+
+    private static final double MIN_LONGITUDE = -180;
+    private static final double MIN_LATITUDE = -90;
+    private static final double LONGITUDE_RANGE = 360;
+    private static final double LATITUDE_RANGE = 180;
+    private static final int AMOUNT_OF_LEAF_CELLS_BY_AXIS = 1 << MAX_LEVEL;
+
+    public static long findLeafId(float latitude, float longitude) {
+        final int column = findLeafPosition(longitude, MIN_LONGITUDE, LONGITUDE_RANGE);
+        final int row = findLeafPosition(latitude, MIN_LATITUDE, LATITUDE_RANGE);
+        return createId(MAX_LEVEL, column, row);
+    }
+
+    public static long createId(int level, int column, int row) {
+        final long mortonCode = spreadBits(column) | (spreadBits(row) << 1);
+        return ((mortonCode << 1) | 1) << 2 * (MAX_LEVEL - level);
+    }
+
+    public static long findRangeMin(long id) {
+        return id - (findLowestOnBit(id) - 1);
+    }
+
+    public static long findRangeMax(long id) {
+        return id + (findLowestOnBit(id) - 1);
+    }
+
+    public static boolean contains(long id, long otherId) {
+        return findRangeMin(id) <= otherId && otherId <= findRangeMax(id);
+    }
+
+    public static Envelope findEnvelope(int level, int column, int row) {
+        final double width = LONGITUDE_RANGE / (1 << level);
+        final double height = LATITUDE_RANGE / (1 << level);
+        return new Envelope(
+                MIN_LONGITUDE + column * width,
+                MIN_LONGITUDE + (column + 1) * width,
+                MIN_LATITUDE + row * height,
+                MIN_LATITUDE + (row + 1) * height
+        );
+    }
+
+    private static int findLeafPosition(double value, double minValue, double range) {
+        final double position = floor((value - minValue) / range * AMOUNT_OF_LEAF_CELLS_BY_AXIS);
+        return (int) min(max(position, 0), AMOUNT_OF_LEAF_CELLS_BY_AXIS - 1);
+    }
+
+    private static long findLowestOnBit(long id) {
+        return id & -id;
+    }
+
+    //inserts zero bit before each bit of value: abc -> 0a0b0c
+    private static long spreadBits(int value) {
+        long result = value & 0xFFFFFFFFL;
+        result = (result | (result << 16)) & 0x0000FFFF0000FFFFL;
+        result = (result | (result << 8)) & 0x00FF00FF00FF00FFL;
+        result = (result | (result << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        result = (result | (result << 2)) & 0x3333333333333333L;
+        result = (result | (result << 1)) & 0x5555555555555555L;
+        return result;
+    }
+}
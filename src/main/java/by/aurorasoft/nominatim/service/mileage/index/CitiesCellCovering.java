@@ -0,0 +1,83 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static by.aurorasoft.nominatim.service.mileage.index.CellIdUtil.*;
+import static java.util.Arrays.binarySearch;
+
+/**
+ * Covering of cities by hierarchical cells. Ids of interior and boundary cells are stored in sorted arrays
+ * of not overlapping cells, so point is classified by binary search without creating any objects.
+ */
+public final class CitiesCellCovering implements CitiesCellsMask {
+    private static final int FORMAT_VERSION = 1;
+
+    private final long[] interiorCellsIds;
+    private final long[] boundaryCellsIds;
+
+    CitiesCellCovering(long[] interiorCellsIds, long[] boundaryCellsIds) {
+        this.interiorCellsIds = interiorCellsIds;
+        this.boundaryCellsIds = boundaryCellsIds;
+    }
+
+    @Override
+    public Cell findCell(float latitude, float longitude) {
+        final long leafId = findLeafId(latitude, longitude);
+        if (isAnyCellContainLeaf(this.interiorCellsIds, leafId)) {
+            return Cell.INSIDE;
+        }
+        return isAnyCellContainLeaf(this.boundaryCellsIds, leafId) ? Cell.BOUNDARY : Cell.OUTSIDE;
+    }
+
+    public int findAmountOfCells() {
+        return this.interiorCellsIds.length + this.boundaryCellsIds.length;
+    }
+
+    public void writeTo(DataOutput output)
+            throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        writeIds(output, this.interiorCellsIds);
+        writeIds(output, this.boundaryCellsIds);
+    }
+
+    public static CitiesCellCovering readFrom(DataInput input)
+            throws IOException {
+        final int formatVersion = input.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Not supported format version of cell covering: " + formatVersion);
+        }
+        final long[] interiorCellsIds = readIds(input);
+        final long[] boundaryCellsIds = readIds(input);
+        return new CitiesCellCovering(interiorCellsIds, boundaryCellsIds);
+    }
+
+    //cells are not overlapped, so only cells, which are neighbours of leaf in sorted array, can contain it
+    private static boolean isAnyCellContainLeaf(long[] cellsIds, long leafId) {
+        final int searchResult = binarySearch(cellsIds, leafId);
+        if (searchResult >= 0) {
+            return true;
+        }
+        final int insertionPoint = -searchResult - 1;
+        return insertionPoint < cellsIds.length && contains(cellsIds[insertionPoint], leafId)
+                || insertionPoint > 0 && contains(cellsIds[insertionPoint - 1], leafId);
+    }
+
+    private static void writeIds(DataOutput output, long[] ids)
+            throws IOException {
+        output.writeInt(ids.length);
+        for (final long id : ids) {
+            output.writeLong(id);
+        }
+    }
+
+    private static long[] readIds(DataInput input)
+            throws IOException {
+        final long[] ids = new long[input.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = input.readLong();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,84 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.stream.LongStream;
+
+import static by.aurorasoft.nominatim.service.mileage.index.CellIdUtil.*;
+import static java.util.Comparator.comparingLong;
+
+@Slf4j
+@Component
+public final class CitiesCellCoveringFactory {
+    private static final String LOG_TEMPLATE_CREATED_COVERING
+            = "Cell covering of cities has been created: {} interior cells, {} boundary cells.";
+
+    private final GeometryFactory geometryFactory;
+    private final int maxLevel;
+
+    public CitiesCellCoveringFactory(GeometryFactory geometryFactory,
+                                     @Value("${search-mileage.cell-covering.max-level}") int maxLevel) {
+        this.geometryFactory = geometryFactory;
+        this.maxLevel = maxLevel;
+    }
+
+    public CitiesCellCovering create(Collection<PreparedGeometry> citiesGeometries) {
+        final LongStream.Builder interiorCellsIds = LongStream.builder();
+        final LongStream.Builder boundaryCellsIds = LongStream.builder();
+        citiesGeometries.forEach(geometry -> this.coverGeometry(geometry, 0, 0, 0, interiorCellsIds, boundaryCellsIds));
+        final long[] normalizedInteriorCellsIds = normalize(interiorCellsIds.build());
+        final long[] normalizedBoundaryCellsIds = normalize(boundaryCellsIds.build());
+        log.info(LOG_TEMPLATE_CREATED_COVERING, normalizedInteriorCellsIds.length, normalizedBoundaryCellsIds.length);
+        return new CitiesCellCovering(normalizedInteriorCellsIds, normalizedBoundaryCellsIds);
+    }
+
+    private void coverGeometry(PreparedGeometry geometry, int level, int column, int row,
+                               LongStream.Builder interiorCellsIds, LongStream.Builder boundaryCellsIds) {
+        final Geometry cell = this.geometryFactory.toGeometry(findEnvelope(level, column, row));
+        if (!geometry.intersects(cell)) {
+            return;
+        }
+        if (geometry.containsProperly(cell)) {
+            interiorCellsIds.add(createId(level, column, row));
+            return;
+        }
+        if (level == this.maxLevel) {
+            boundaryCellsIds.add(createId(level, column, row));
+            return;
+        }
+        final int childLevel = level + 1;
+        final int childColumn = column << 1;
+        final int childRow = row << 1;
+        this.coverGeometry(geometry, childLevel, childColumn, childRow, interiorCellsIds, boundaryCellsIds);
+        this.coverGeometry(geometry, childLevel, childColumn + 1, childRow, interiorCellsIds, boundaryCellsIds);
+        this.coverGeometry(geometry, childLevel, childColumn, childRow + 1, interiorCellsIds, boundaryCellsIds);
+        this.coverGeometry(geometry, childLevel, childColumn + 1, childRow + 1, interiorCellsIds, boundaryCellsIds);
+    }
+
+    /**
+     * @return sorted ids without duplicates and cells, which are contained by other cells
+     */
+    private static long[] normalize(LongStream cellsIds) {
+        final long[] sortedByRangeMinIds = cellsIds
+                .boxed()
+                .sorted(comparingLong(CellIdUtil::findRangeMin)
+                        .thenComparing(comparingLong(CellIdUtil::findRangeMax).reversed()))
+                .mapToLong(Long::longValue)
+                .toArray();
+        final LongStream.Builder normalizedIds = LongStream.builder();
+        long lastRangeMax = Long.MIN_VALUE;
+        for (final long id : sortedByRangeMinIds) {
+            if (findRangeMax(id) > lastRangeMax) {
+                normalizedIds.add(id);
+                lastRangeMax = findRangeMax(id);
+            }
+        }
+        return normalizedIds.build().toArray();
+    }
+}
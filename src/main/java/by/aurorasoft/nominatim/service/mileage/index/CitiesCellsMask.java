@@ -0,0 +1,9 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+public interface CitiesCellsMask {
+    Cell findCell(float latitude, float longitude);
+
+    enum Cell {
+        OUTSIDE, INSIDE, BOUNDARY
+    }
+}
@@ -0,0 +1,98 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.lang.Math.min;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Packed STR-tree over envelopes of cities' bounding boxes. Tree is built once in constructor,
+ * so it is safe to query it from several threads.
+ */
+public final class CitiesGeometriesIndex {
+    private final STRtree tree;
+
+    public CitiesGeometriesIndex(Map<PreparedGeometry, PreparedGeometry> geometriesByBoundingBoxes) {
+        this(
+                geometriesByBoundingBoxes.entrySet()
+                        .stream()
+                        .map(geometryByBoundingBox -> new IndexedCityGeometry(
+                                geometryByBoundingBox.getKey(), geometryByBoundingBox.getValue())
+                        )
+                        .collect(toList())
+        );
+    }
+
+    public CitiesGeometriesIndex(Collection<IndexedCityGeometry> geometries) {
+        this.tree = new STRtree();
+        geometries.forEach(
+                geometry -> this.tree.insert(geometry.getBoundingBox().getGeometry().getEnvelopeInternal(), geometry)
+        );
+        this.tree.build();
+    }
+
+    public static CitiesGeometriesIndex createByGeometries(Collection<PreparedGeometry> geometries) {
+        final Map<PreparedGeometry, PreparedGeometry> geometriesByThemselves = geometries.stream()
+                .collect(toMap(identity(), identity()));
+        return new CitiesGeometriesIndex(geometriesByThemselves);
+    }
+
+    public List<PreparedGeometry> findGeometriesWhoseBoundingBoxIntersectedByGeometry(Geometry geometry) {
+        final List<IndexedCityGeometry> candidates = this.findCandidates(geometry.getEnvelopeInternal());
+        return candidates.stream()
+                .filter(candidate -> candidate.getBoundingBox().intersects(geometry))
+                .map(IndexedCityGeometry::getGeometry)
+                .collect(toList());
+    }
+
+    public int findAmountOfCitiesGeometries() {
+        return this.tree.size();
+    }
+
+    public boolean isAnyGeometryContainPoint(Point point) {
+        return this.findCityGeometryContainingPoint(point).isPresent();
+    }
+
+    public Optional<IndexedCityGeometry> findCityGeometryContainingPoint(Point point) {
+        final List<IndexedCityGeometry> candidates = this.findCandidates(point.getEnvelopeInternal());
+        for (final IndexedCityGeometry candidate : candidates) {
+            if (candidate.containsPoint(point)) {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return distance to the nearest city geometry or {@code maxDistance} if there are no cities nearer
+     */
+    public double findDistanceToNearestCityGeometry(Point point, double maxDistance) {
+        final Envelope pointEnvelope = point.getEnvelopeInternal();
+        final Envelope searchEnvelope = new Envelope(pointEnvelope);
+        searchEnvelope.expandBy(maxDistance);
+        final List<IndexedCityGeometry> candidates = this.findCandidates(searchEnvelope);
+        double distance = maxDistance;
+        for (final IndexedCityGeometry candidate : candidates) {
+            if (candidate.getEnvelope().distance(pointEnvelope) < distance) {
+                distance = min(distance, candidate.findDistanceToBoundary(point));
+            }
+        }
+        return distance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<IndexedCityGeometry> findCandidates(Envelope envelope) {
+        return this.tree.query(envelope);
+    }
+}
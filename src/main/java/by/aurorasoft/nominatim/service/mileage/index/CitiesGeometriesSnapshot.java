@@ -0,0 +1,14 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.Value;
+
+/**
+ * Immutable set of structures, built from the same cities. Raster mask and cell covering are null, if they aren't
+ * used by classification mode.
+ */
+@Value
+public class CitiesGeometriesSnapshot {
+    CitiesGeometriesIndex index;
+    CitiesRasterMask rasterMask;
+    CitiesCellCovering cellCovering;
+}
@@ -0,0 +1,97 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.ClassificationMode;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.CELL_COVERING;
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.RASTER_MASK;
+import static java.util.Objects.requireNonNullElseGet;
+import static java.util.stream.Collectors.toList;
+
+@Component
+public final class CitiesGeometriesSnapshotFactory {
+    private final CitiesRasterMaskFactory citiesRasterMaskFactory;
+    private final CitiesCellCoveringFactory citiesCellCoveringFactory;
+    private final ClassificationMode classificationMode;
+
+    public CitiesGeometriesSnapshotFactory(CitiesRasterMaskFactory citiesRasterMaskFactory,
+                                           CitiesCellCoveringFactory citiesCellCoveringFactory,
+                                           @Value("${search-mileage.classification-mode}")
+                                           ClassificationMode classificationMode) {
+        this.citiesRasterMaskFactory = citiesRasterMaskFactory;
+        this.citiesCellCoveringFactory = citiesCellCoveringFactory;
+        this.classificationMode = classificationMode;
+    }
+
+    public CitiesGeometriesSnapshot create(Map<PreparedGeometry, PreparedGeometry> geometriesByBoundingBoxes) {
+        final List<IndexedCityGeometry> geometries = geometriesByBoundingBoxes.entrySet()
+                .stream()
+                .map(geometryByBoundingBox -> new IndexedCityGeometry(
+                        geometryByBoundingBox.getKey(), geometryByBoundingBox.getValue())
+                )
+                .collect(toList());
+        return this.create(geometries);
+    }
+
+    public CitiesGeometriesSnapshot create(Collection<IndexedCityGeometry> geometries) {
+        return this.create(geometries, null, null);
+    }
+
+    /**
+     * Creates snapshot, reusing given raster mask and cell covering, which were built from the same cities before.
+     * Structures, which are needed by classification mode but aren't given, are built.
+     */
+    public CitiesGeometriesSnapshot create(Collection<IndexedCityGeometry> geometries,
+                                           CitiesRasterMask builtRasterMask,
+                                           CitiesCellCovering builtCellCovering) {
+        return new CitiesGeometriesSnapshot(
+                new CitiesGeometriesIndex(geometries),
+                this.classificationMode == RASTER_MASK
+                        ? requireNonNullElseGet(
+                                builtRasterMask,
+                                () -> this.citiesRasterMaskFactory.create(findPreparedGeometries(geometries)))
+                        : null,
+                this.classificationMode == CELL_COVERING
+                        ? requireNonNullElseGet(
+                                builtCellCovering,
+                                () -> this.citiesCellCoveringFactory.create(findPreparedGeometries(geometries)))
+                        : null
+        );
+    }
+
+    //geometries are materialized while iterating, so off-heap geometries aren't held all at once
+    private static Collection<PreparedGeometry> findPreparedGeometries(Collection<IndexedCityGeometry> geometries) {
+        return new AbstractCollection<>() {
+
+            @Override
+            public Iterator<PreparedGeometry> iterator() {
+                final Iterator<IndexedCityGeometry> iterator = geometries.iterator();
+                return new Iterator<>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public PreparedGeometry next() {
+                        return iterator.next().getGeometry();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return geometries.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.ClassificationMode;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.file.Files.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Stores snapshot of cities in binary file: id of database and version of cities, settings of classification, WKB of
+ * geometries and bounding boxes and built raster mask or cell covering. File is written to temporary one and then
+ * moved, so it is never seen half-written. File, which was written with other settings of classification, isn't read:
+ * its raster mask or cell covering can't be reused.
+ */
+@Slf4j
+@Component
+public final class CitiesGeometriesSnapshotStorage {
+    private static final String LOG_TEMPLATE_WRITTEN_SNAPSHOT
+            = "Snapshot of {} cities with version {} has been written to '{}'.";
+    private static final String LOG_TEMPLATE_READ_SNAPSHOT
+            = "Snapshot of {} cities with version {} has been read from '{}'.";
+    private static final String LOG_TEMPLATE_FAILURE_WRITING
+            = "Writing snapshot of cities to '{}' has been failed. Exception: {}.";
+    private static final String LOG_TEMPLATE_FAILURE_READING
+            = "Reading snapshot of cities from '{}' has been failed. Exception: {}.";
+    private static final String LOG_TEMPLATE_OTHER_SETTINGS
+            = "Snapshot of cities in '{}' is ignored, because it was written with other settings of classification.";
+    private static final String EXCEPTION_DESCRIPTION_NOT_ABSOLUTE_PATH = "Path of snapshot file should be absolute.";
+
+    private static final int FORMAT_VERSION = 2;
+    private static final int WKB_DIMENSION = 2;
+    private static final boolean WKB_INCLUDES_SRID = true;
+    private static final String SUFFIX_OF_TEMPORARY_FILE = ".tmp";
+
+    private final CitiesGeometriesSnapshotFactory citiesGeometriesSnapshotFactory;
+    private final IndexedCityGeometryFactory indexedCityGeometryFactory;
+    private final GeometryFactory geometryFactory;
+    private final boolean snapshotShouldBeStored;
+    private final Path path;
+    private final ClassificationMode classificationMode;
+    private final double rasterMaskCellSize;
+    private final int cellCoveringMaxLevel;
+
+    public CitiesGeometriesSnapshotStorage(CitiesGeometriesSnapshotFactory citiesGeometriesSnapshotFactory,
+                                           IndexedCityGeometryFactory indexedCityGeometryFactory,
+                                           GeometryFactory geometryFactory,
+                                           @Value("${search-mileage.snapshot-file.enabled}")
+                                           boolean snapshotShouldBeStored,
+                                           @Value("${search-mileage.snapshot-file.path}") String path,
+                                           @Value("${search-mileage.classification-mode}")
+                                           ClassificationMode classificationMode,
+                                           @Value("${search-mileage.raster-mask.cell-size}") double rasterMaskCellSize,
+                                           @Value("${search-mileage.cell-covering.max-level}")
+                                           int cellCoveringMaxLevel) {
+        this.citiesGeometriesSnapshotFactory = citiesGeometriesSnapshotFactory;
+        this.indexedCityGeometryFactory = indexedCityGeometryFactory;
+        this.geometryFactory = geometryFactory;
+        this.snapshotShouldBeStored = snapshotShouldBeStored;
+        this.path = Paths.get(path);
+        if (snapshotShouldBeStored && !this.path.isAbsolute()) {
+            throw new IllegalArgumentException(EXCEPTION_DESCRIPTION_NOT_ABSOLUTE_PATH);
+        }
+        this.classificationMode = classificationMode;
+        this.rasterMaskCellSize = rasterMaskCellSize;
+        this.cellCoveringMaxLevel = cellCoveringMaxLevel;
+    }
+
+    public void write(String databaseId, long version, Map<Long, IndexedCityGeometry> geometriesByCitiesIds,
+                      CitiesGeometriesSnapshot snapshot) {
+        if (!this.snapshotShouldBeStored) {
+            return;
+        }
+        final Path temporaryPath = this.path.resolveSibling(this.path.getFileName() + SUFFIX_OF_TEMPORARY_FILE);
+        try {
+            try (final DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(newOutputStream(temporaryPath)))) {
+                this.write(output, databaseId, version, geometriesByCitiesIds, snapshot);
+            }
+            move(temporaryPath, this.path, REPLACE_EXISTING, ATOMIC_MOVE);
+            log.info(LOG_TEMPLATE_WRITTEN_SNAPSHOT, geometriesByCitiesIds.size(), version, this.path);
+        } catch (final IOException exception) {
+            log.error(LOG_TEMPLATE_FAILURE_WRITING, this.path, exception.getMessage());
+        }
+    }
+
+    public Optional<StoredCitiesGeometriesSnapshot> read() {
+        if (!this.snapshotShouldBeStored || !exists(this.path)) {
+            return Optional.empty();
+        }
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(newInputStream(this.path)))) {
+            final Optional<StoredCitiesGeometriesSnapshot> optionalSnapshot = this.read(input);
+            optionalSnapshot.ifPresentOrElse(
+                    snapshot -> log.info(LOG_TEMPLATE_READ_SNAPSHOT,
+                            snapshot.getGeometriesByCitiesIds().size(), snapshot.getVersion(), this.path),
+                    () -> log.warn(LOG_TEMPLATE_OTHER_SETTINGS, this.path));
+            return optionalSnapshot;
+        } catch (final IOException | ParseException | RuntimeException exception) {
+            log.warn(LOG_TEMPLATE_FAILURE_READING, this.path, exception.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void write(DataOutput output, String databaseId, long version,
+                       Map<Long, IndexedCityGeometry> geometriesByCitiesIds,
+                       CitiesGeometriesSnapshot snapshot)
+            throws IOException {
+        final WKBWriter wkbWriter = new WKBWriter(WKB_DIMENSION, WKB_INCLUDES_SRID);
+        output.writeInt(FORMAT_VERSION);
+        output.writeUTF(this.classificationMode.name());
+        output.writeDouble(this.rasterMaskCellSize);
+        output.writeInt(this.cellCoveringMaxLevel);
+        output.writeUTF(databaseId);
+        output.writeLong(version);
+        output.writeInt(geometriesByCitiesIds.size());
+        for (final Map.Entry<Long, IndexedCityGeometry> geometryByCityId
+                : geometriesByCitiesIds.entrySet()) {
+            output.writeLong(geometryByCityId.getKey());
+            writeGeometry(output, wkbWriter, geometryByCityId.getValue().getBoundingBox());
+            geometryByCityId.getValue().writeGeometryWkbTo(output);
+        }
+        output.writeBoolean(snapshot.getRasterMask() != null);
+        if (snapshot.getRasterMask() != null) {
+            snapshot.getRasterMask().writeTo(output);
+        }
+        output.writeBoolean(snapshot.getCellCovering() != null);
+        if (snapshot.getCellCovering() != null) {
+            snapshot.getCellCovering().writeTo(output);
+        }
+    }
+
+    private static void writeGeometry(DataOutput output, WKBWriter wkbWriter, PreparedGeometry geometry)
+            throws IOException {
+        final byte[] wkb = wkbWriter.write(geometry.getGeometry());
+        output.writeInt(wkb.length);
+        output.write(wkb);
+    }
+
+    private Optional<StoredCitiesGeometriesSnapshot> read(DataInputStream input)
+            throws IOException, ParseException {
+        final int formatVersion = input.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Not supported format version of snapshot: " + formatVersion);
+        }
+        if (!this.classificationMode.name().equals(input.readUTF())
+                || this.rasterMaskCellSize != input.readDouble()
+                || this.cellCoveringMaxLevel != input.readInt()) {
+            return Optional.empty();
+        }
+        final WKBReader wkbReader = new WKBReader(this.geometryFactory);
+        final String databaseId = input.readUTF();
+        final long version = input.readLong();
+        final int amountOfCities = input.readInt();
+        final Map<Long, IndexedCityGeometry> geometriesByCitiesIds = new HashMap<>(amountOfCities);
+        for (int i = 0; i < amountOfCities; i++) {
+            final long cityId = input.readLong();
+            final PreparedGeometry boundingBox = readGeometry(input, wkbReader);
+            final PreparedGeometry geometry = readGeometry(input, wkbReader);
+            geometriesByCitiesIds.put(cityId, this.indexedCityGeometryFactory.create(boundingBox, geometry));
+        }
+        final CitiesRasterMask rasterMask = input.readBoolean() ? CitiesRasterMask.readFrom(input) : null;
+        final CitiesCellCovering cellCovering = input.readBoolean() ? CitiesCellCovering.readFrom(input) : null;
+        final CitiesGeometriesSnapshot snapshot = this.citiesGeometriesSnapshotFactory.create(
+                geometriesByCitiesIds.values(), rasterMask, cellCovering);
+        return Optional.of(new StoredCitiesGeometriesSnapshot(databaseId, version, geometriesByCitiesIds, snapshot));
+    }
+
+    private static PreparedGeometry readGeometry(DataInputStream input, WKBReader wkbReader)
+            throws IOException, ParseException {
+        final byte[] wkb = new byte[input.readInt()];
+        input.readFully(wkb);
+        final Geometry geometry = wkbReader.read(wkb);
+        return prepare(geometry);
+    }
+}
@@ -0,0 +1,159 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.crud.listener.CitiesChangedEvent;
+import by.aurorasoft.nominatim.crud.model.dto.PreparedGeometryWithBoundingBox;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.service.mileage.index.WeightedLruCache.Statistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.floor;
+import static java.util.stream.Collectors.toMap;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Geometries of cities, which are loaded lazily by tiles of fixed size on first touch. Tile contains all cities,
+ * whose bounding boxes intersect it, and weighs amount of points of their geometries, so the coldest tiles are
+ * evicted when total amount of points exceeds limit. Keys of tiles contain generation of cities, which is incremented
+ * on their changes, so tile, which is being loaded while cities are changed, isn't found after its caching.
+ */
+@Slf4j
+@Component
+public final class CitiesGeometriesTilesCache {
+    private static final String LOG_TEMPLATE_STATISTICS
+            = "Tiles of cities' geometries: cached tiles: {}, cached points: {}, hits: {}, misses: {}, hit ratio: {}.";
+
+    //each tile weighs at least one point, so tiles without cities are evicted too
+    private static final long MIN_WEIGHT_OF_TILE = 1;
+
+    private static final String CACHE_NAME = "tiles";
+
+    private final CityService cityService;
+    private final IndexedCityGeometryFactory indexedCityGeometryFactory;
+    private final GeometryFactory geometryFactory;
+    private final boolean enabled;
+    private final double tileSize;
+    private final WeightedLruCache<TileKey, Tile> cache;
+    private final AtomicLong generation;
+
+    public CitiesGeometriesTilesCache(CityService cityService,
+                                      IndexedCityGeometryFactory indexedCityGeometryFactory,
+                                      GeometryFactory geometryFactory,
+                                      @Value("${search-mileage.tile-cache.enabled}") boolean enabled,
+                                      @Value("${search-mileage.tile-cache.tile-size}") double tileSize,
+                                      @Value("${search-mileage.tile-cache.max-cached-points}") long maxCachedPoints,
+                                      MeterRegistry meterRegistry) {
+        this.cityService = cityService;
+        this.indexedCityGeometryFactory = indexedCityGeometryFactory;
+        this.geometryFactory = geometryFactory;
+        this.enabled = enabled;
+        this.tileSize = tileSize;
+        this.cache = new WeightedLruCache<>(maxCachedPoints, Tile::getWeight);
+        this.generation = new AtomicLong();
+        this.cache.registerMeters(meterRegistry, CACHE_NAME);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return index of cities, whose bounding boxes intersect tiles touched by given geometry
+     */
+    public CitiesGeometriesIndex findIndex(Geometry geometry) {
+        final PreparedGeometry preparedGeometry = prepare(geometry);
+        final Envelope envelope = geometry.getEnvelopeInternal();
+        final int maxColumn = this.findTilePosition(envelope.getMaxX());
+        final int maxRow = this.findTilePosition(envelope.getMaxY());
+        final Map<Long, IndexedCityGeometry> geometriesByCitiesIds = new HashMap<>();
+        for (int column = this.findTilePosition(envelope.getMinX()); column <= maxColumn; column++) {
+            for (int row = this.findTilePosition(envelope.getMinY()); row <= maxRow; row++) {
+                final Envelope tileEnvelope = this.createTileEnvelope(column, row);
+                if (preparedGeometry.intersects(this.geometryFactory.toGeometry(tileEnvelope))) {
+                    geometriesByCitiesIds.putAll(this.findTile(column, row, tileEnvelope).getGeometriesByCitiesIds());
+                }
+            }
+        }
+        return new CitiesGeometriesIndex(geometriesByCitiesIds.values());
+    }
+
+    public Statistics findStatistics() {
+        return this.cache.findStatistics();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitiesChanged(CitiesChangedEvent event) {
+        this.generation.incrementAndGet();
+        this.cache.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${search-mileage.tile-cache.statistics-logging-delay-millis}")
+    public void logStatistics() {
+        if (!this.enabled) {
+            return;
+        }
+        final Statistics statistics = this.findStatistics();
+        log.info(LOG_TEMPLATE_STATISTICS, statistics.getSize(), statistics.getWeight(),
+                statistics.getAmountOfHits(), statistics.getAmountOfMisses(), statistics.findHitRatio());
+    }
+
+    private Tile findTile(int column, int row, Envelope tileEnvelope) {
+        final TileKey key = new TileKey(this.generation.get(), column, row);
+        return this.cache.get(key, () -> this.loadTile(tileEnvelope));
+    }
+
+    private Tile loadTile(Envelope tileEnvelope) {
+        final Map<Long, PreparedGeometryWithBoundingBox> loadedGeometriesByCitiesIds = this.cityService
+                .findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                        this.geometryFactory.toGeometry(tileEnvelope));
+        final long amountOfPoints = loadedGeometriesByCitiesIds.values()
+                .stream()
+                .mapToLong(geometry -> geometry.getGeometry().getGeometry().getNumPoints())
+                .sum();
+        final Map<Long, IndexedCityGeometry> geometriesByCitiesIds = loadedGeometriesByCitiesIds.entrySet()
+                .stream()
+                .collect(
+                        toMap(
+                                Map.Entry::getKey,
+                                geometryByCityId -> this.indexedCityGeometryFactory.create(geometryByCityId.getValue())
+                        )
+                );
+        return new Tile(geometriesByCitiesIds, MIN_WEIGHT_OF_TILE + amountOfPoints);
+    }
+
+    private int findTilePosition(double coordinate) {
+        return (int) floor(coordinate / this.tileSize);
+    }
+
+    private Envelope createTileEnvelope(int column, int row) {
+        return new Envelope(
+                column * this.tileSize, (column + 1) * this.tileSize,
+                row * this.tileSize, (row + 1) * this.tileSize
+        );
+    }
+
+    @lombok.Value
+    private static class TileKey {
+        long generation;
+        int column;
+        int row;
+    }
+
+    @lombok.Value
+    private static class Tile {
+        Map<Long, IndexedCityGeometry> geometriesByCitiesIds;
+        long weight;
+    }
+}
@@ -0,0 +1,60 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.crud.model.dto.VersionedPreparedGeometry;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared geometries of cities by their ids. Only ids and versions of cities are queried for each request,
+ * geometries are fetched and prepared only if they aren't cached or their versions are changed.
+ */
+@Component
+public final class CitiesPreparedGeometriesCache {
+    private static final String CACHE_NAME = "prepared-geometries";
+
+    private final CityService cityService;
+    private final WeightedLruCache<Long, VersionedPreparedGeometry> cache;
+
+    public CitiesPreparedGeometriesCache(CityService cityService,
+                                         @Value("${search-mileage.prepared-geometries-cache.max-cached-points}")
+                                         long maxCachedPoints,
+                                         MeterRegistry meterRegistry) {
+        this.cityService = cityService;
+        this.cache = new WeightedLruCache<>(maxCachedPoints, CitiesPreparedGeometriesCache::findAmountOfPoints);
+        this.cache.registerMeters(meterRegistry, CACHE_NAME);
+    }
+
+    public List<PreparedGeometry> findGeometriesWhoseBoundingBoxIntersectedByLineString(LineString lineString) {
+        final Map<Long, Long> versionsByCitiesIds = this.cityService
+                .findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(lineString);
+        final List<PreparedGeometry> geometries = new ArrayList<>(versionsByCitiesIds.size());
+        final List<Long> idsOfNotCachedCities = new ArrayList<>();
+        versionsByCitiesIds.forEach((cityId, version) -> {
+            final VersionedPreparedGeometry cachedGeometry = this.cache.getIfPresent(cityId);
+            if (cachedGeometry != null && cachedGeometry.getVersion() == version) {
+                geometries.add(cachedGeometry.getGeometry());
+            } else {
+                idsOfNotCachedCities.add(cityId);
+            }
+        });
+        if (!idsOfNotCachedCities.isEmpty()) {
+            this.cityService.findPreparedGeometriesByIds(idsOfNotCachedCities).forEach((cityId, geometry) -> {
+                this.cache.put(cityId, geometry);
+                geometries.add(geometry.getGeometry());
+            });
+        }
+        return geometries;
+    }
+
+    private static long findAmountOfPoints(VersionedPreparedGeometry geometry) {
+        return geometry.getGeometry().getGeometry().getNumPoints();
+    }
+}
@@ -0,0 +1,74 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static java.lang.Math.floor;
+
+/**
+ * Regular grid over area covered by cities. Each cell is marked as fully inside any city, fully outside all cities
+ * or as cell, which is crossed by boundary of city. Only points of boundary cells need exact geometry tests.
+ */
+public final class CitiesRasterMask implements CitiesCellsMask {
+    private static final Cell[] CELLS_BY_ORDINALS = Cell.values();
+    private static final int FORMAT_VERSION = 1;
+
+    private final double minLongitude;
+    private final double minLatitude;
+    private final double cellSize;
+    private final int amountOfColumns;
+    private final int amountOfRows;
+    private final byte[] cells;
+
+    CitiesRasterMask(double minLongitude, double minLatitude, double cellSize,
+                     int amountOfColumns, int amountOfRows, byte[] cells) {
+        this.minLongitude = minLongitude;
+        this.minLatitude = minLatitude;
+        this.cellSize = cellSize;
+        this.amountOfColumns = amountOfColumns;
+        this.amountOfRows = amountOfRows;
+        this.cells = cells;
+    }
+
+    @Override
+    public Cell findCell(float latitude, float longitude) {
+        final int column = (int) floor((longitude - this.minLongitude) / this.cellSize);
+        final int row = (int) floor((latitude - this.minLatitude) / this.cellSize);
+        if (column < 0 || column >= this.amountOfColumns || row < 0 || row >= this.amountOfRows) {
+            return Cell.OUTSIDE;
+        }
+        return CELLS_BY_ORDINALS[this.cells[row * this.amountOfColumns + column]];
+    }
+
+    public double getCellSize() {
+        return this.cellSize;
+    }
+
+    public void writeTo(DataOutput output)
+            throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeDouble(this.minLongitude);
+        output.writeDouble(this.minLatitude);
+        output.writeDouble(this.cellSize);
+        output.writeInt(this.amountOfColumns);
+        output.writeInt(this.amountOfRows);
+        output.write(this.cells);
+    }
+
+    public static CitiesRasterMask readFrom(DataInput input)
+            throws IOException {
+        final int formatVersion = input.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Not supported format version of raster mask: " + formatVersion);
+        }
+        final double minLongitude = input.readDouble();
+        final double minLatitude = input.readDouble();
+        final double cellSize = input.readDouble();
+        final int amountOfColumns = input.readInt();
+        final int amountOfRows = input.readInt();
+        final byte[] cells = new byte[amountOfColumns * amountOfRows];
+        input.readFully(cells);
+        return new CitiesRasterMask(minLongitude, minLatitude, cellSize, amountOfColumns, amountOfRows, cells);
+    }
+}
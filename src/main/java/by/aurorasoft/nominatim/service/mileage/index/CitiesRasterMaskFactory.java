@@ -0,0 +1,162 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+import static by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell.BOUNDARY;
+import static by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell.INSIDE;
+import static java.lang.Math.floor;
+import static java.util.Arrays.fill;
+
+@Slf4j
+@Component
+public final class CitiesRasterMaskFactory {
+    private static final String LOG_TEMPLATE_CREATED_MASK
+            = "Raster mask of cities has been created: {} x {} cells, cell size: {}.";
+
+    private static final int CELL_SIZE_INCREASING_FACTOR = 2;
+
+    private final GeometryFactory geometryFactory;
+    private final double cellSize;
+    private final long maxMemoryBytes;
+
+    public CitiesRasterMaskFactory(GeometryFactory geometryFactory,
+                                   @Value("${search-mileage.raster-mask.cell-size}") double cellSize,
+                                   @Value("${search-mileage.raster-mask.max-memory-bytes}") long maxMemoryBytes) {
+        this.geometryFactory = geometryFactory;
+        this.cellSize = cellSize;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public CitiesRasterMask create(Collection<PreparedGeometry> citiesGeometries) {
+        final Envelope area = findArea(citiesGeometries);
+        final double cellSize = this.findCellSizeFittingMemory(area);
+        final Grid grid = new Grid(area.getMinX(), area.getMinY(), cellSize,
+                findAmountOfCells(area.getWidth(), cellSize), findAmountOfCells(area.getHeight(), cellSize));
+        citiesGeometries.forEach(geometry -> this.markCells(grid, geometry));
+        log.info(LOG_TEMPLATE_CREATED_MASK, grid.amountOfColumns, grid.amountOfRows, cellSize);
+        return new CitiesRasterMask(grid.minLongitude, grid.minLatitude, cellSize,
+                grid.amountOfColumns, grid.amountOfRows, grid.cells);
+    }
+
+    private static Envelope findArea(Collection<PreparedGeometry> geometries) {
+        final Envelope area = new Envelope();
+        geometries.forEach(geometry -> area.expandToInclude(geometry.getGeometry().getEnvelopeInternal()));
+        return area;
+    }
+
+    private double findCellSizeFittingMemory(Envelope area) {
+        double cellSize = this.cellSize;
+        while ((long) findAmountOfCells(area.getWidth(), cellSize) * findAmountOfCells(area.getHeight(), cellSize)
+                > this.maxMemoryBytes) {
+            cellSize *= CELL_SIZE_INCREASING_FACTOR;
+        }
+        return cellSize;
+    }
+
+    //one extra cell guarantees, that points on max border of area are located in grid
+    private static int findAmountOfCells(double length, double cellSize) {
+        return (int) floor(length / cellSize) + 1;
+    }
+
+    private void markCells(Grid grid, PreparedGeometry geometry) {
+        final Envelope envelope = geometry.getGeometry().getEnvelopeInternal();
+        if (envelope.isNull()) {
+            return;
+        }
+        this.markCells(grid, geometry,
+                grid.findColumn(envelope.getMinX()), grid.findRow(envelope.getMinY()),
+                grid.findColumn(envelope.getMaxX()) + 1, grid.findRow(envelope.getMaxY()) + 1);
+    }
+
+    /**
+     * Recursively splits block of cells [fromColumn, toColumn) x [fromRow, toRow) into quarters
+     * until block is fully inside or outside city or consists of one cell
+     */
+    private void markCells(Grid grid, PreparedGeometry geometry,
+                           int fromColumn, int fromRow, int toColumn, int toRow) {
+        final Geometry block = this.geometryFactory.toGeometry(grid.findEnvelope(fromColumn, fromRow, toColumn, toRow));
+        if (!geometry.intersects(block)) {
+            return;
+        }
+        if (geometry.containsProperly(block)) {
+            grid.mark(fromColumn, fromRow, toColumn, toRow, INSIDE);
+            return;
+        }
+        if (toColumn - fromColumn == 1 && toRow - fromRow == 1) {
+            grid.mark(fromColumn, fromRow, toColumn, toRow, BOUNDARY);
+            return;
+        }
+        final int middleColumn = toColumn - fromColumn > 1 ? (fromColumn + toColumn) / 2 : toColumn;
+        final int middleRow = toRow - fromRow > 1 ? (fromRow + toRow) / 2 : toRow;
+        this.markCells(grid, geometry, fromColumn, fromRow, middleColumn, middleRow);
+        if (middleColumn < toColumn) {
+            this.markCells(grid, geometry, middleColumn, fromRow, toColumn, middleRow);
+        }
+        if (middleRow < toRow) {
+            this.markCells(grid, geometry, fromColumn, middleRow, middleColumn, toRow);
+        }
+        if (middleColumn < toColumn && middleRow < toRow) {
+            this.markCells(grid, geometry, middleColumn, middleRow, toColumn, toRow);
+        }
+    }
+
+    private static final class Grid {
+        private final double minLongitude;
+        private final double minLatitude;
+        private final double cellSize;
+        private final int amountOfColumns;
+        private final int amountOfRows;
+        private final byte[] cells;
+
+        public Grid(double minLongitude, double minLatitude, double cellSize, int amountOfColumns, int amountOfRows) {
+            this.minLongitude = minLongitude;
+            this.minLatitude = minLatitude;
+            this.cellSize = cellSize;
+            this.amountOfColumns = amountOfColumns;
+            this.amountOfRows = amountOfRows;
+            this.cells = new byte[amountOfColumns * amountOfRows];
+        }
+
+        public int findColumn(double longitude) {
+            return (int) floor((longitude - this.minLongitude) / this.cellSize);
+        }
+
+        public int findRow(double latitude) {
+            return (int) floor((latitude - this.minLatitude) / this.cellSize);
+        }
+
+        public Envelope findEnvelope(int fromColumn, int fromRow, int toColumn, int toRow) {
+            return new Envelope(
+                    this.minLongitude + fromColumn * this.cellSize,
+                    this.minLongitude + toColumn * this.cellSize,
+                    this.minLatitude + fromRow * this.cellSize,
+                    this.minLatitude + toRow * this.cellSize
+            );
+        }
+
+        //cell, which is inside any city, stays inside even if it is crossed by boundary of another city
+        public void mark(int fromColumn, int fromRow, int toColumn, int toRow, Cell cell) {
+            for (int row = fromRow; row < toRow; row++) {
+                final int rowOffset = row * this.amountOfColumns;
+                if (cell == INSIDE) {
+                    fill(this.cells, rowOffset + fromColumn, rowOffset + toColumn, (byte) INSIDE.ordinal());
+                } else {
+                    for (int column = fromColumn; column < toColumn; column++) {
+                        if (this.cells[rowOffset + column] != INSIDE.ordinal()) {
+                            this.cells[rowOffset + column] = (byte) cell.ordinal();
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Source of full geometry of city, which is either retained or materialized on demand
+ */
+interface CityGeometrySource {
+    FullCityGeometry get();
+
+    /**
+     * Writes length of WKB of geometry and WKB itself
+     */
+    void writeWkbTo(DataOutput output)
+            throws IOException;
+}
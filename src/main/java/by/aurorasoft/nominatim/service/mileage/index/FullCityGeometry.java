@@ -0,0 +1,60 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.Getter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Full geometry of city with index of distances to its boundary and simplified geometries. They are retained as long
+ * as geometry, so in off-heap mode they are evicted from cache together with geometry.
+ */
+final class FullCityGeometry {
+
+    @Getter
+    private final PreparedGeometry geometry;
+
+    private final Function<Geometry, List<SimplifiedCityGeometry>> simplifiedGeometriesFactory;
+
+    /**
+     * is created lazily, because distances are needed only for part of cities
+     */
+    private volatile IndexedFacetDistance boundaryDistance;
+
+    /**
+     * are created lazily, because only part of cities is tested, and so creating cities, e.g. on restoring of
+     * snapshot, doesn't simplify and buffer each geometry
+     */
+    private volatile List<SimplifiedCityGeometry> simplifiedGeometries;
+
+    public FullCityGeometry(PreparedGeometry geometry,
+                            Function<Geometry, List<SimplifiedCityGeometry>> simplifiedGeometriesFactory) {
+        this.geometry = geometry;
+        this.simplifiedGeometriesFactory = simplifiedGeometriesFactory;
+    }
+
+    public double findDistanceToBoundary(Point point) {
+        IndexedFacetDistance boundaryDistance = this.boundaryDistance;
+        if (boundaryDistance == null) {
+            boundaryDistance = new IndexedFacetDistance(this.geometry.getGeometry());
+            this.boundaryDistance = boundaryDistance;
+        }
+        return boundaryDistance.distance(point);
+    }
+
+    /**
+     * @return simplified geometries from the coarsest to the finest one
+     */
+    public List<SimplifiedCityGeometry> getSimplifiedGeometries() {
+        List<SimplifiedCityGeometry> simplifiedGeometries = this.simplifiedGeometries;
+        if (simplifiedGeometries == null) {
+            simplifiedGeometries = this.simplifiedGeometriesFactory.apply(this.geometry.getGeometry());
+            this.simplifiedGeometries = simplifiedGeometries;
+        }
+        return simplifiedGeometries;
+    }
+}
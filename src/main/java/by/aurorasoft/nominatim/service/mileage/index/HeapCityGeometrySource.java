@@ -0,0 +1,39 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Geometry, which is retained in heap together with its simplified geometries
+ */
+final class HeapCityGeometrySource implements CityGeometrySource {
+    private static final int WKB_DIMENSION = 2;
+    private static final boolean WKB_INCLUDES_SRID = true;
+
+    private final FullCityGeometry geometry;
+
+    public HeapCityGeometrySource(PreparedGeometry geometry,
+                                  Function<Geometry, List<SimplifiedCityGeometry>> simplifiedGeometriesFactory) {
+        this.geometry = new FullCityGeometry(geometry, simplifiedGeometriesFactory);
+    }
+
+    @Override
+    public FullCityGeometry get() {
+        return this.geometry;
+    }
+
+    @Override
+    public void writeWkbTo(DataOutput output)
+            throws IOException {
+        final WKBWriter wkbWriter = new WKBWriter(WKB_DIMENSION, WKB_INCLUDES_SRID);
+        final byte[] wkb = wkbWriter.write(this.geometry.getGeometry().getGeometry());
+        output.writeInt(wkb.length);
+        output.write(wkb);
+    }
+}
@@ -0,0 +1,71 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+@Getter
+public final class IndexedCityGeometry {
+    private final PreparedGeometry boundingBox;
+
+    /**
+     * envelope of geometry, which is available without materializing of geometry
+     */
+    private final Envelope envelope;
+
+    @Getter(AccessLevel.NONE)
+    private final CityGeometrySource geometrySource;
+
+    public IndexedCityGeometry(PreparedGeometry boundingBox, PreparedGeometry geometry) {
+        this(boundingBox, geometry.getGeometry().getEnvelopeInternal(),
+                new HeapCityGeometrySource(geometry, source -> List.of()));
+    }
+
+    IndexedCityGeometry(PreparedGeometry boundingBox, Envelope envelope, CityGeometrySource geometrySource) {
+        this.boundingBox = boundingBox;
+        this.envelope = envelope;
+        this.geometrySource = geometrySource;
+    }
+
+    public PreparedGeometry getGeometry() {
+        return this.geometrySource.get().getGeometry();
+    }
+
+    /**
+     * Full geometry is used only if point is located between buffers of all simplified geometries
+     */
+    public boolean containsPoint(Point point) {
+        final FullCityGeometry geometry = this.geometrySource.get();
+        for (final SimplifiedCityGeometry simplifiedGeometry : geometry.getSimplifiedGeometries()) {
+            if (simplifiedGeometry.getInnerBuffer().contains(point)) {
+                return true;
+            }
+            if (!simplifiedGeometry.getOuterBuffer().covers(point)) {
+                return false;
+            }
+        }
+        return geometry.getGeometry().contains(point);
+    }
+
+    public double findDistanceToBoundary(Point point) {
+        return this.geometrySource.get().findDistanceToBoundary(point);
+    }
+
+    /**
+     * @return simplified geometries from the coarsest to the finest one
+     */
+    List<SimplifiedCityGeometry> getSimplifiedGeometries() {
+        return this.geometrySource.get().getSimplifiedGeometries();
+    }
+
+    void writeGeometryWkbTo(DataOutput output)
+            throws IOException {
+        this.geometrySource.writeWkbTo(output);
+    }
+}
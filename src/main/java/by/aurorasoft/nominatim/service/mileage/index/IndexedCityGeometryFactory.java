@@ -0,0 +1,114 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.crud.model.dto.PreparedGeometryWithBoundingBox;
+import by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.OFF_HEAP;
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.util.Arrays.stream;
+import static java.util.Comparator.reverseOrder;
+import static java.util.stream.Collectors.toList;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Creates cities' geometries to be indexed. In off-heap mode full geometry isn't retained, only its WKB, envelope
+ * and bounding box. Simplified geometries are created on first test of city for each configured tolerance, if they
+ * are cheaper to test than full geometry. In off-heap mode they are cached and weighed together with full geometry.
+ */
+@Component
+public final class IndexedCityGeometryFactory {
+    private static final int WKB_DIMENSION = 2;
+    private static final boolean WKB_INCLUDES_SRID = true;
+
+    private static final int BUFFER_QUADRANT_SEGMENTS = 2;
+
+    /**
+     * Simplified geometry deviates from full one by at most tolerance, but arcs of buffers are approximated by
+     * chords, which are closer to buffered geometry than buffer distance. So distance is increased to compensate
+     * chords and rounding.
+     */
+    private static final double BUFFER_DISTANCE_FACTOR = 1.01 / cos(PI / (4 * BUFFER_QUADRANT_SEGMENTS));
+
+    private final GeometryFactory geometryFactory;
+    private final GeometriesMemoryMode geometriesMemoryMode;
+    private final WeightedLruCache<Object, FullCityGeometry> cache;
+    private final List<Double> simplificationTolerances;
+
+    public IndexedCityGeometryFactory(GeometryFactory geometryFactory,
+                                      @Value("${search-mileage.geometries-memory-mode}")
+                                      GeometriesMemoryMode geometriesMemoryMode,
+                                      @Value("${search-mileage.off-heap.max-cached-points}")
+                                      long maxCachedPoints,
+                                      @Value("${search-mileage.simplification.tolerances}")
+                                      double[] simplificationTolerances) {
+        this.geometryFactory = geometryFactory;
+        this.geometriesMemoryMode = geometriesMemoryMode;
+        this.cache = new WeightedLruCache<>(maxCachedPoints, IndexedCityGeometryFactory::findAmountOfPoints);
+        this.simplificationTolerances = stream(simplificationTolerances)
+                .boxed()
+                .sorted(reverseOrder())
+                .collect(toList());
+    }
+
+    public IndexedCityGeometry create(PreparedGeometryWithBoundingBox geometryWithBoundingBox) {
+        return this.create(geometryWithBoundingBox.getBoundingBox(), geometryWithBoundingBox.getGeometry());
+    }
+
+    public IndexedCityGeometry create(PreparedGeometry boundingBox, PreparedGeometry geometry) {
+        final Geometry source = geometry.getGeometry();
+        if (this.geometriesMemoryMode != OFF_HEAP) {
+            return new IndexedCityGeometry(boundingBox, source.getEnvelopeInternal(),
+                    new HeapCityGeometrySource(geometry, this::createSimplifiedGeometries));
+        }
+        final byte[] wkb = new WKBWriter(WKB_DIMENSION, WKB_INCLUDES_SRID).write(source);
+        return new IndexedCityGeometry(
+                boundingBox,
+                source.getEnvelopeInternal(),
+                new OffHeapCityGeometrySource(wkb, this.geometryFactory, this::createSimplifiedGeometries, this.cache)
+        );
+    }
+
+    private List<SimplifiedCityGeometry> createSimplifiedGeometries(Geometry geometry) {
+        return this.simplificationTolerances.stream()
+                .map(tolerance -> createSimplifiedGeometry(geometry, tolerance))
+                .filter(simplifiedGeometry -> isCheaperThanGeometry(simplifiedGeometry, geometry))
+                .collect(toList());
+    }
+
+    private static SimplifiedCityGeometry createSimplifiedGeometry(Geometry geometry, double tolerance) {
+        final Geometry simplifiedGeometry = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+        final double bufferDistance = tolerance * BUFFER_DISTANCE_FACTOR;
+        return new SimplifiedCityGeometry(
+                tolerance,
+                prepare(simplifiedGeometry.buffer(-bufferDistance, BUFFER_QUADRANT_SEGMENTS)),
+                prepare(simplifiedGeometry.buffer(bufferDistance, BUFFER_QUADRANT_SEGMENTS))
+        );
+    }
+
+    private static boolean isCheaperThanGeometry(SimplifiedCityGeometry simplifiedGeometry, Geometry geometry) {
+        return findAmountOfPoints(simplifiedGeometry.getInnerBuffer())
+                + findAmountOfPoints(simplifiedGeometry.getOuterBuffer()) < geometry.getNumPoints();
+    }
+
+    private static long findAmountOfPoints(FullCityGeometry geometry) {
+        return findAmountOfPoints(geometry.getGeometry()) + geometry.getSimplifiedGeometries()
+                .stream()
+                .mapToLong(simplifiedGeometry -> findAmountOfPoints(simplifiedGeometry.getInnerBuffer())
+                        + findAmountOfPoints(simplifiedGeometry.getOuterBuffer()))
+                .sum();
+    }
+
+    private static long findAmountOfPoints(PreparedGeometry geometry) {
+        return geometry.getGeometry().getNumPoints();
+    }
+}
@@ -0,0 +1,71 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.Math.min;
+import static java.nio.ByteBuffer.allocateDirect;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Geometry, which is held as WKB in direct buffer and is materialized through cache. Simplified geometries are created
+ * on materializing, so they are weighed in cache together with geometry.
+ */
+final class OffHeapCityGeometrySource implements CityGeometrySource {
+    private static final int MAX_SIZE_OF_WRITTEN_CHUNK = 8192;
+
+    private final ByteBuffer wkb;
+    private final GeometryFactory geometryFactory;
+    private final Function<Geometry, List<SimplifiedCityGeometry>> simplifiedGeometriesFactory;
+    private final WeightedLruCache<Object, FullCityGeometry> cache;
+
+    public OffHeapCityGeometrySource(byte[] wkb, GeometryFactory geometryFactory,
+                                     Function<Geometry, List<SimplifiedCityGeometry>> simplifiedGeometriesFactory,
+                                     WeightedLruCache<Object, FullCityGeometry> cache) {
+        this.wkb = allocateDirect(wkb.length).put(wkb).flip();
+        this.geometryFactory = geometryFactory;
+        this.simplifiedGeometriesFactory = simplifiedGeometriesFactory;
+        this.cache = cache;
+    }
+
+    @Override
+    public FullCityGeometry get() {
+        return this.cache.get(this, this::materialize);
+    }
+
+    //WKB is copied by chunks, so geometry isn't materialized and WKB isn't copied to heap at once
+    @Override
+    public void writeWkbTo(DataOutput output)
+            throws IOException {
+        final ByteBuffer wkb = this.wkb.duplicate();
+        output.writeInt(wkb.remaining());
+        final byte[] chunk = new byte[min(wkb.remaining(), MAX_SIZE_OF_WRITTEN_CHUNK)];
+        while (wkb.hasRemaining()) {
+            final int sizeOfChunk = min(wkb.remaining(), chunk.length);
+            wkb.get(chunk, 0, sizeOfChunk);
+            output.write(chunk, 0, sizeOfChunk);
+        }
+    }
+
+    private FullCityGeometry materialize() {
+        final byte[] wkb = new byte[this.wkb.capacity()];
+        this.wkb.duplicate().get(wkb);
+        final FullCityGeometry geometry;
+        try {
+            geometry = new FullCityGeometry(prepare(new WKBReader(this.geometryFactory).read(wkb)),
+                    this.simplifiedGeometriesFactory);
+        } catch (final ParseException exception) {
+            throw new IllegalStateException(exception);
+        }
+        geometry.getSimplifiedGeometries();
+        return geometry;
+    }
+}
@@ -0,0 +1,15 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.Value;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+/**
+ * Simplified geometry of city, shrunk and grown by tolerance of simplification. Inner buffer is located inside
+ * full geometry and outer buffer covers it, so only points between buffers need full geometry to be classified.
+ */
+@Value
+class SimplifiedCityGeometry {
+    double tolerance;
+    PreparedGeometry innerBuffer;
+    PreparedGeometry outerBuffer;
+}
@@ -0,0 +1,13 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+public class StoredCitiesGeometriesSnapshot {
+    String databaseId;
+    long version;
+    Map<Long, IndexedCityGeometry> geometriesByCitiesIds;
+    CitiesGeometriesSnapshot snapshot;
+}
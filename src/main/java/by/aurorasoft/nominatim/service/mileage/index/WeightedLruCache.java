@@ -0,0 +1,199 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.Value;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+
+/**
+ * LRU cache, whose size is bounded by total weight of cached values, so a few heavy values evict many light ones.
+ * Keys are spread among segments with own lock and own part of weight limit, so concurrent lookups of different
+ * segments don't wait for each other. Cache with small limit has one segment, so its eviction order is exact.
+ * Value is loaded outside of lock, so concurrent misses of the same key can load it twice.
+ */
+public final class WeightedLruCache<K, V> {
+    static final String METER_NAME_SIZE = "cities.cache.size";
+    static final String METER_NAME_WEIGHT = "cities.cache.weight";
+    static final String METER_NAME_HIT_RATIO = "cities.cache.hit.ratio";
+    static final String METER_NAME_EVICTIONS = "cities.cache.evictions";
+
+    static final String TAG_KEY_CACHE = "cache";
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75F;
+    private static final boolean ACCESS_ORDER = true;
+    private static final int MAX_AMOUNT_OF_SEGMENTS = 16;
+    private static final long MIN_WEIGHT_OF_SEGMENT = 10000;
+
+    private final ToLongFunction<V> weigher;
+    private final List<Segment> segments;
+    private final LongAdder amountOfHits;
+    private final LongAdder amountOfMisses;
+    private final LongAdder amountOfEvictions;
+
+    public WeightedLruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this(maxWeight, weigher, findAmountOfSegments(maxWeight));
+    }
+
+    /**
+     * @param amountOfSegments - power of two
+     */
+    WeightedLruCache(long maxWeight, ToLongFunction<V> weigher, int amountOfSegments) {
+        this.weigher = weigher;
+        this.segments = range(0, amountOfSegments)
+                .mapToObj(i -> new Segment(maxWeight / amountOfSegments))
+                .collect(toList());
+        this.amountOfHits = new LongAdder();
+        this.amountOfMisses = new LongAdder();
+        this.amountOfEvictions = new LongAdder();
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        final V cachedValue = this.getIfPresent(key);
+        if (cachedValue != null) {
+            return cachedValue;
+        }
+        final V loadedValue = loader.get();
+        this.put(key, loadedValue);
+        return loadedValue;
+    }
+
+    /**
+     * @return cached value or null if there is no value by given key
+     */
+    public V getIfPresent(K key) {
+        final V cachedValue = this.findSegment(key).get(key);
+        if (cachedValue != null) {
+            this.amountOfHits.increment();
+        } else {
+            this.amountOfMisses.increment();
+        }
+        return cachedValue;
+    }
+
+    public void put(K key, V value) {
+        this.findSegment(key).put(key, value);
+    }
+
+    public void clear() {
+        this.segments.forEach(Segment::clear);
+    }
+
+    /**
+     * @return sums of segments, which are read one by one, so they can be not consistent under concurrent access
+     */
+    public Statistics findStatistics() {
+        int size = 0;
+        long weight = 0;
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.valuesByKeys.size();
+                weight += segment.weight;
+            }
+        }
+        return new Statistics(size, weight, this.amountOfHits.sum(), this.amountOfMisses.sum(),
+                this.amountOfEvictions.sum());
+    }
+
+    /**
+     * Registers gauges of size, weight and hit ratio and counter of evictions, which are tagged by name of cache
+     */
+    public void registerMeters(MeterRegistry meterRegistry, String cacheName) {
+        final Tags tags = Tags.of(TAG_KEY_CACHE, cacheName);
+        Gauge.builder(METER_NAME_SIZE, this, cache -> cache.findStatistics().getSize())
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder(METER_NAME_WEIGHT, this, cache -> cache.findStatistics().getWeight())
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder(METER_NAME_HIT_RATIO, this, cache -> cache.findStatistics().findHitRatio())
+                .tags(tags)
+                .register(meterRegistry);
+        FunctionCounter.builder(METER_NAME_EVICTIONS, this, cache -> cache.findStatistics().getAmountOfEvictions())
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    //the greatest power of two, which doesn't make limit of segment less than minimal one
+    private static int findAmountOfSegments(long maxWeight) {
+        int amountOfSegments = 1;
+        while (amountOfSegments < MAX_AMOUNT_OF_SEGMENTS
+                && amountOfSegments * 2 * MIN_WEIGHT_OF_SEGMENT <= maxWeight) {
+            amountOfSegments *= 2;
+        }
+        return amountOfSegments;
+    }
+
+    private Segment findSegment(K key) {
+        final int hash = key.hashCode();
+        return this.segments.get((hash ^ (hash >>> 16)) & (this.segments.size() - 1));
+    }
+
+    private final class Segment {
+        private final long maxWeight;
+        private final Map<K, V> valuesByKeys;
+        private long weight;
+
+        public Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.valuesByKeys = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, ACCESS_ORDER);
+        }
+
+        public synchronized V get(K key) {
+            return this.valuesByKeys.get(key);
+        }
+
+        public synchronized void put(K key, V value) {
+            final V replacedValue = this.valuesByKeys.put(key, value);
+            if (replacedValue != null) {
+                this.weight -= WeightedLruCache.this.weigher.applyAsLong(replacedValue);
+            }
+            this.weight += WeightedLruCache.this.weigher.applyAsLong(value);
+            this.evictEldestValues();
+        }
+
+        public synchronized void clear() {
+            this.valuesByKeys.clear();
+            this.weight = 0;
+        }
+
+        //the latest value is kept even if it alone exceeds limit
+        private void evictEldestValues() {
+            final Iterator<V> iterator = this.valuesByKeys.values().iterator();
+            while (this.weight > this.maxWeight && this.valuesByKeys.size() > 1) {
+                this.weight -= WeightedLruCache.this.weigher.applyAsLong(iterator.next());
+                iterator.remove();
+                WeightedLruCache.this.amountOfEvictions.increment();
+            }
+        }
+    }
+
+    @Value
+    public static class Statistics {
+        int size;
+        long weight;
+        long amountOfHits;
+        long amountOfMisses;
+        long amountOfEvictions;
+
+        /**
+         * @return part of hits among all requests or 0 if there were no requests
+         */
+        public double findHitRatio() {
+            final long amountOfRequests = this.amountOfHits + this.amountOfMisses;
+            return amountOfRequests != 0 ? (double) this.amountOfHits / amountOfRequests : 0;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+import by.aurorasoft.nominatim.service.mileage.GeometryCreatingService;
+import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public final class CandidatesCityPointLocator implements CityPointLocator {
+    private final List<PreparedGeometry> candidatesGeometries;
+    private final GeometryCreatingService geometryCreatingService;
+    private long amountOfGeometriesTests;
+
+    @Override
+    public boolean isLocatedInCity(float latitude, float longitude) {
+        this.amountOfGeometriesTests++;
+        final Point point = this.geometryCreatingService.createPoint(latitude, longitude);
+        return this.candidatesGeometries
+                .stream()
+                .anyMatch(geometry -> geometry.contains(point));
+    }
+
+    @Override
+    public long findAmountOfGeometriesTests() {
+        return this.amountOfGeometriesTests;
+    }
+}
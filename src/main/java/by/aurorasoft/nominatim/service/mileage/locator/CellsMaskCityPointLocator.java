@@ -0,0 +1,28 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+import by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public final class CellsMaskCityPointLocator implements CityPointLocator {
+    private final CitiesCellsMask mask;
+    private final CityPointLocator boundaryCellsLocator;
+
+    @Override
+    public boolean isLocatedInCity(float latitude, float longitude) {
+        switch (this.mask.findCell(latitude, longitude)) {
+            case INSIDE:
+                return true;
+            case BOUNDARY:
+                return this.boundaryCellsLocator.isLocatedInCity(latitude, longitude);
+            case OUTSIDE:
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public long findAmountOfGeometriesTests() {
+        return this.boundaryCellsLocator.findAmountOfGeometriesTests();
+    }
+}
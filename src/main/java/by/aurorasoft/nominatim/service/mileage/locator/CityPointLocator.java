@@ -0,0 +1,10 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+public interface CityPointLocator {
+    boolean isLocatedInCity(float latitude, float longitude);
+
+    /**
+     * @return amount of points, which have been tested by cities' geometries, because cheaper checks weren't enough
+     */
+    long findAmountOfGeometriesTests();
+}
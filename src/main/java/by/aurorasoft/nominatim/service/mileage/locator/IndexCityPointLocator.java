@@ -0,0 +1,25 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+import by.aurorasoft.nominatim.service.mileage.GeometryCreatingService;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.geom.Point;
+
+@RequiredArgsConstructor
+public final class IndexCityPointLocator implements CityPointLocator {
+    private final CitiesGeometriesIndex index;
+    private final GeometryCreatingService geometryCreatingService;
+    private long amountOfGeometriesTests;
+
+    @Override
+    public boolean isLocatedInCity(float latitude, float longitude) {
+        this.amountOfGeometriesTests++;
+        final Point point = this.geometryCreatingService.createPoint(latitude, longitude);
+        return this.index.isAnyGeometryContainPoint(point);
+    }
+
+    @Override
+    public long findAmountOfGeometriesTests() {
+        return this.amountOfGeometriesTests;
+    }
+}
@@ -0,0 +1,92 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+import by.aurorasoft.nominatim.service.mileage.GeometryCreatingService;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import by.aurorasoft.nominatim.service.mileage.index.IndexedCityGeometry;
+import org.locationtech.jts.geom.Point;
+
+import java.util.Optional;
+
+/**
+ * Uses sequential nature of tracks. After each lookup it remembers circle around the point, in which all points
+ * have the same result: distance to boundary of hit city or distance to the nearest city if point is outside.
+ * Points inside this circle are classified without any geometry operations, others are tested against
+ * the last hit city before lookup in index.
+ * Isn't thread-safe, so it should be created for each track.
+ */
+public final class LastHitCachingCityPointLocator implements CityPointLocator {
+    private static final double MAX_RADIUS_OF_CERTAINLY_OUTSIDE_REGION = 0.05;
+
+    //protects from treating point on boundary of certain region as point inside it because of rounding
+    private static final double CERTAIN_REGION_RADIUS_REDUCING_FACTOR = 0.999999;
+
+    private static final double INITIAL_CERTAIN_REGION_RADIUS = 0;
+
+    private final CitiesGeometriesIndex index;
+    private final GeometryCreatingService geometryCreatingService;
+    private IndexedCityGeometry lastHitCityGeometry;
+    private double certainRegionCenterLatitude;
+    private double certainRegionCenterLongitude;
+    private double certainRegionRadius;
+    private boolean certainRegionLocatedInCity;
+    private long amountOfGeometriesTests;
+
+    public LastHitCachingCityPointLocator(CitiesGeometriesIndex index,
+                                          GeometryCreatingService geometryCreatingService) {
+        this.index = index;
+        this.geometryCreatingService = geometryCreatingService;
+        this.lastHitCityGeometry = null;
+        this.certainRegionRadius = INITIAL_CERTAIN_REGION_RADIUS;
+    }
+
+    @Override
+    public boolean isLocatedInCity(float latitude, float longitude) {
+        if (this.isInsideCertainRegion(latitude, longitude)) {
+            return this.certainRegionLocatedInCity;
+        }
+        this.amountOfGeometriesTests++;
+        final Point point = this.geometryCreatingService.createPoint(latitude, longitude);
+        if (this.lastHitCityGeometry != null && this.lastHitCityGeometry.containsPoint(point)) {
+            this.defineCertainRegionInsideCity(point, this.lastHitCityGeometry);
+            return true;
+        }
+        final Optional<IndexedCityGeometry> optionalHitCityGeometry = this.index.findCityGeometryContainingPoint(
+                point);
+        if (optionalHitCityGeometry.isPresent()) {
+            this.lastHitCityGeometry = optionalHitCityGeometry.get();
+            this.defineCertainRegionInsideCity(point, this.lastHitCityGeometry);
+            return true;
+        }
+        this.defineCertainRegionOutsideCities(point);
+        return false;
+    }
+
+    @Override
+    public long findAmountOfGeometriesTests() {
+        return this.amountOfGeometriesTests;
+    }
+
+    private boolean isInsideCertainRegion(float latitude, float longitude) {
+        final double latitudeDelta = latitude - this.certainRegionCenterLatitude;
+        final double longitudeDelta = longitude - this.certainRegionCenterLongitude;
+        return latitudeDelta * latitudeDelta + longitudeDelta * longitudeDelta
+                < this.certainRegionRadius * this.certainRegionRadius;
+    }
+
+    private void defineCertainRegionInsideCity(Point point, IndexedCityGeometry hitCityGeometry) {
+        this.defineCertainRegion(point, hitCityGeometry.findDistanceToBoundary(point), true);
+    }
+
+    private void defineCertainRegionOutsideCities(Point point) {
+        final double distanceToNearestCity = this.index.findDistanceToNearestCityGeometry(
+                point, MAX_RADIUS_OF_CERTAINLY_OUTSIDE_REGION);
+        this.defineCertainRegion(point, distanceToNearestCity, false);
+    }
+
+    private void defineCertainRegion(Point center, double radius, boolean locatedInCity) {
+        this.certainRegionCenterLatitude = center.getY();
+        this.certainRegionCenterLongitude = center.getX();
+        this.certainRegionRadius = radius * CERTAIN_REGION_RADIUS_REDUCING_FACTOR;
+        this.certainRegionLocatedInCity = locatedInCity;
+    }
+}
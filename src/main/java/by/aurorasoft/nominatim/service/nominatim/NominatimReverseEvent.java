@@ -0,0 +1,29 @@
+package by.aurorasoft.nominatim.service.nominatim;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event of one reverse request. Duration of event includes waiting for the rate limit.
+ */
+@Name("by.aurorasoft.nominatim.NominatimReverse")
+@Label("Nominatim Reverse")
+@Category({"Nominatim Adapter", "Nominatim"})
+@StackTrace(false)
+final class NominatimReverseEvent extends Event {
+    @Label("Latitude")
+    double latitude;
+
+    @Label("Longitude")
+    double longitude;
+
+    @Label("Rate Limit Wait Duration")
+    @Timespan
+    long rateLimitWaitDuration;
+
+    @Label("Request Duration")
+    @Timespan
+    long requestDuration;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
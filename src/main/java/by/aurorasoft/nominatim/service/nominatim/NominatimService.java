@@ -3,105 +3,149 @@ package by.aurorasoft.nominatim.service.nominatim;
 import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse;
 import by.aurorasoft.nominatim.service.nominatim.exception.NominatimClientException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static java.lang.Double.NaN;
 import static java.lang.Double.isNaN;
-import static java.lang.Thread.currentThread;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.springframework.http.HttpEntity.EMPTY;
-import static org.springframework.http.HttpMethod.GET;
+import static java.lang.System.nanoTime;
+import static java.lang.String.format;
+import static java.net.URI.create;
+import static java.net.http.HttpResponse.BodyHandlers.ofByteArray;
+import static java.time.Duration.ofMillis;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.springframework.http.HttpStatus.Series.SUCCESSFUL;
+import static org.springframework.http.HttpStatus.Series.resolve;
 import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
 @Service
-public final class NominatimService implements AutoCloseable {
-    private static final ParameterizedTypeReference<NominatimReverseResponse> PARAMETERIZED_TYPE_REFERENCE
-            = new ParameterizedTypeReference<>() {
-    };
-
-    private final RestTemplate restTemplate;
-    private final long millisBetweenRequests;
-    private final ExecutorService executorService;
-    private final Lock lock;
-    private final Condition condition;
-    private boolean durationBetweenRequestsPassed;
-
-    public NominatimService(RestTemplate restTemplate,
-                            @Value("${nominatim.millis-between-requests}") long millisBetweenRequests) {
-        this.restTemplate = restTemplate;
-        this.millisBetweenRequests = millisBetweenRequests;
-        this.executorService = newSingleThreadExecutor();
-        this.lock = new ReentrantLock();
-        this.condition = this.lock.newCondition();
-        this.durationBetweenRequestsPassed = true;
-    }
-
-    @PostConstruct
-    public void runTaskWaitingNecessaryDurationBetweenRequests() {
-        this.executorService.submit(this.createTaskWaitingNecessaryDurationBetweenRequests());
+public final class NominatimService {
+    private static final String EXCEPTION_DESCRIPTION_TEMPLATE_NOT_SUCCESS_STATUS
+            = "Reverse request was failed with status %d.";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final Duration requestTimeout;
+
+    public NominatimService(HttpClient httpClient,
+                            ObjectMapper objectMapper,
+                            @Value("${nominatim.rate-limit.requests-per-second}") double requestsPerSecond,
+                            @Value("${nominatim.rate-limit.burst}") int burst,
+                            @Value("${nominatim.rate-limit.max-requests-in-flight}") int maxRequestsInFlight,
+                            @Value("${nominatim.http-client.request-timeout-millis}") long requestTimeoutMillis) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.rateLimiter = new TokenBucketRateLimiter(requestsPerSecond, burst, maxRequestsInFlight);
+        this.requestTimeout = ofMillis(requestTimeoutMillis);
     }
 
+    /**
+     * Blocks until response of {@link #reverseAsync(Coordinate)} is received. Its unchecked failure is thrown as is,
+     * checked one is wrapped by {@link NominatimClientException}.
+     */
     public NominatimReverseResponse reverse(Coordinate coordinate) {
-        this.lock.lock();
         try {
-            while (!this.durationBetweenRequestsPassed) {
-                this.condition.await();
+            return this.reverseAsync(coordinate).join();
+        } catch (final CompletionException exception) {
+            throw unwrap(exception.getCause());
+        }
+    }
+
+    /**
+     * Doesn't block: waiting for the rate limit and request are done without holding threads, so a lot of requests
+     * can be in flight from a single thread. Future is completed exceptionally by {@link NominatimClientException}
+     * if response isn't successful or can't be read and by {@link java.net.http.HttpTimeoutException} if response
+     * isn't received in time. Request, whose future is cancelled before sending, isn't sent.
+     */
+    public CompletableFuture<NominatimReverseResponse> reverseAsync(Coordinate coordinate) {
+        final HttpRequest request = HttpRequest.newBuilder(create(createUri(coordinate)))
+                .timeout(this.requestTimeout)
+                .GET()
+                .build();
+        final NominatimReverseEvent event = new NominatimReverseEvent();
+        event.begin();
+        final long waitStartNanos = nanoTime();
+        final CompletableFuture<NominatimReverseResponse> result = new CompletableFuture<>();
+        this.rateLimiter.acquireAsync().thenRun(() -> {
+            final long requestStartNanos = nanoTime();
+            //result can be completed before sending only by caller, who cancelled it
+            if (result.isDone()) {
+                this.rateLimiter.release();
+                commitEvent(event, coordinate, waitStartNanos, requestStartNanos, false);
+                return;
             }
-            final NominatimReverseResponse response = this.doRequest(coordinate);
-            this.durationBetweenRequestsPassed = false;
-            this.condition.signalAll();
-            return response;
-        } catch (final InterruptedException cause) {
-            currentThread().interrupt();
-            throw new NominatimClientException(cause);
-        } finally {
-            this.lock.unlock();
+            this.sendAsync(request)
+                    .whenComplete((httpResponse, exception) -> this.rateLimiter.release())
+                    .thenApply(this::readResponse)
+                    .whenComplete((response, exception) -> {
+                        commitEvent(event, coordinate, waitStartNanos, requestStartNanos, exception == null);
+                        complete(result, response, exception);
+                    });
+        });
+        return result;
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
         }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new NominatimClientException((Exception) cause);
     }
 
-    @Override
-    @PreDestroy
-    public void close() {
-        this.executorService.shutdownNow();
+    private static <T> void complete(CompletableFuture<T> future, T value, Throwable exception) {
+        if (exception == null) {
+            future.complete(value);
+        } else {
+            future.completeExceptionally(exception);
+        }
     }
 
-    private Runnable createTaskWaitingNecessaryDurationBetweenRequests() {
-        return () -> {
-            this.lock.lock();
-            try {
-                while (!currentThread().isInterrupted()) {
-                    while (this.durationBetweenRequestsPassed) {
-                        this.condition.await();
-                    }
-                    MILLISECONDS.sleep(this.millisBetweenRequests);
-                    this.durationBetweenRequestsPassed = true;
-                    this.condition.signalAll();
-                }
-            } catch (final InterruptedException cause) {
-                currentThread().interrupt();
-            } finally {
-                this.lock.unlock();
-            }
-        };
+    //place in flight is released only by completion of returned future, so exception isn't thrown from here
+    private CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+        try {
+            return this.httpClient.sendAsync(request, ofByteArray());
+        } catch (final RuntimeException exception) {
+            return failedFuture(exception);
+        }
+    }
+
+    private NominatimReverseResponse readResponse(HttpResponse<byte[]> httpResponse) {
+        if (resolve(httpResponse.statusCode()) != SUCCESSFUL) {
+            throw new NominatimClientException(
+                    format(EXCEPTION_DESCRIPTION_TEMPLATE_NOT_SUCCESS_STATUS, httpResponse.statusCode()));
+        }
+        try {
+            return this.objectMapper.readValue(httpResponse.body(), NominatimReverseResponse.class);
+        } catch (final IOException cause) {
+            throw new NominatimClientException(cause);
+        }
     }
 
-    private NominatimReverseResponse doRequest(Coordinate coordinate) {
-        final String uri = createUri(coordinate);
-        final ResponseEntity<NominatimReverseResponse> responseEntity = this.restTemplate.exchange(
-                uri, GET, EMPTY, PARAMETERIZED_TYPE_REFERENCE);
-        return responseEntity.getBody();
+    private static void commitEvent(NominatimReverseEvent event, Coordinate coordinate,
+                                    long waitStartNanos, long requestStartNanos, boolean succeeded) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.latitude = coordinate.getLatitude();
+        event.longitude = coordinate.getLongitude();
+        event.rateLimitWaitDuration = requestStartNanos - waitStartNanos;
+        event.requestDuration = nanoTime() - requestStartNanos;
+        event.succeeded = succeeded;
+        event.commit();
     }
 
     private static String createUri(Coordinate coordinate) {
@@ -0,0 +1,106 @@
+package by.aurorasoft.nominatim.service.nominatim;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.max;
+import static java.lang.Math.round;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket, which lets requests start with given rate and bursts up to given amount of requests, and limits
+ * amount of requests in flight. Tokens are reserved without locks: bucket is stored as time, when the next token
+ * is available, and each caller moves it by one interval, so callers wait only for own token, not for each other.
+ * Asynchronous callers don't hold threads: they are queued and get places in flight released by others.
+ */
+public final class TokenBucketRateLimiter {
+    private static final String EXCEPTION_DESCRIPTION_NOT_POSITIVE_SETTINGS
+            = "Requests per second, burst and max requests in flight should be positive.";
+
+    private final long nanosBetweenRequests;
+    private final long burstNanos;
+    private final AtomicLong nextTokenNanos;
+    private final Semaphore requestsInFlight;
+    private final Queue<CompletableFuture<Void>> asyncWaitersOfPlaceInFlight;
+
+    public TokenBucketRateLimiter(double requestsPerSecond, int burst, int maxRequestsInFlight) {
+        if (requestsPerSecond <= 0 || burst <= 0 || maxRequestsInFlight <= 0) {
+            throw new IllegalArgumentException(EXCEPTION_DESCRIPTION_NOT_POSITIVE_SETTINGS);
+        }
+        this.nanosBetweenRequests = round(SECONDS.toNanos(1) / requestsPerSecond);
+        this.burstNanos = (burst - 1) * this.nanosBetweenRequests;
+        this.nextTokenNanos = new AtomicLong(nanoTime() - this.burstNanos);
+        this.requestsInFlight = new Semaphore(maxRequestsInFlight);
+        this.asyncWaitersOfPlaceInFlight = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Waits for a free place in flight and for a token. Caller must {@link #release()} after request is done.
+     */
+    public void acquire()
+            throws InterruptedException {
+        this.requestsInFlight.acquire();
+        try {
+            NANOSECONDS.sleep(this.reserveToken());
+        } catch (final InterruptedException cause) {
+            this.requestsInFlight.release();
+            throw cause;
+        }
+    }
+
+    /**
+     * Returned future is completed, when a place in flight is got and a token is available. Caller must
+     * {@link #release()} after request is done.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        final CompletableFuture<Void> placeInFlight = new CompletableFuture<>();
+        this.asyncWaitersOfPlaceInFlight.add(placeInFlight);
+        this.givePlacesInFlightToAsyncWaiters();
+        return placeInFlight.thenCompose(ignored -> delay(this.reserveToken()));
+    }
+
+    public void release() {
+        this.requestsInFlight.release();
+        this.givePlacesInFlightToAsyncWaiters();
+    }
+
+    /**
+     * Waiter is added before trying to get place and place is released before looking for waiters, so either
+     * adding waiter or releasing place sees the other one and waiter isn't lost.
+     */
+    private void givePlacesInFlightToAsyncWaiters() {
+        while (!this.asyncWaitersOfPlaceInFlight.isEmpty() && this.requestsInFlight.tryAcquire()) {
+            final CompletableFuture<Void> waiter = this.asyncWaitersOfPlaceInFlight.poll();
+            if (waiter == null || !waiter.complete(null)) {
+                this.requestsInFlight.release();
+            }
+        }
+    }
+
+    private static CompletableFuture<Void> delay(long nanos) {
+        return nanos > 0
+                ? new CompletableFuture<Void>().completeOnTimeout(null, nanos, NANOSECONDS)
+                : completedFuture(null);
+    }
+
+    /**
+     * @return nanos to wait until reserved token is available
+     */
+    private long reserveToken() {
+        while (true) {
+            final long nowNanos = nanoTime();
+            final long nextTokenNanos = this.nextTokenNanos.get();
+            //unused tokens are accumulated only up to burst
+            final long reservedTokenNanos = max(nextTokenNanos, nowNanos - this.burstNanos);
+            if (this.nextTokenNanos.compareAndSet(nextTokenNanos, reservedTokenNanos + this.nanosBetweenRequests)) {
+                return max(0, reservedTokenNanos - nowNanos);
+            }
+        }
+    }
+}
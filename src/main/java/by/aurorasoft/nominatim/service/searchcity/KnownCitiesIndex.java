@@ -0,0 +1,43 @@
+package by.aurorasoft.nominatim.service.searchcity;
+
+import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
+import org.locationtech.jts.geom.CoordinateXY;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.index.quadtree.Quadtree;
+
+import java.util.List;
+
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+/**
+ * Spatial index of geometries of cities, which are known during searching process, new cities are added as soon as
+ * they are found. Isn't thread safe: it's used by one task searching cities.
+ */
+final class KnownCitiesIndex {
+    private final GeometryFactory geometryFactory;
+    private final Quadtree index;
+
+    public KnownCitiesIndex(GeometryFactory geometryFactory) {
+        this.geometryFactory = geometryFactory;
+        this.index = new Quadtree();
+    }
+
+    public void add(PreparedGeometry geometry) {
+        this.index.insert(geometry.getGeometry().getEnvelopeInternal(), geometry);
+    }
+
+    public void add(Geometry geometry) {
+        this.add(prepare(geometry));
+    }
+
+    public boolean isInKnownCity(Coordinate coordinate) {
+        final Point point = this.geometryFactory.createPoint(
+                new CoordinateXY(coordinate.getLongitude(), coordinate.getLatitude()));
+        @SuppressWarnings("unchecked")
+        final List<PreparedGeometry> candidates = this.index.query(point.getEnvelopeInternal());
+        return candidates.stream().anyMatch(candidate -> candidate.contains(point));
+    }
+}
@@ -0,0 +1,32 @@
+package by.aurorasoft.nominatim.service.searchcity;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event of one subtask of searching cities from sending of its reverse requests to saving of state.
+ * Events of subtasks in flight overlap, reverse requests are recorded by own events.
+ */
+@Name("by.aurorasoft.nominatim.SearchCitiesSubtask")
+@Label("Search Cities Subtask")
+@Category({"Nominatim Adapter", "Search Cities"})
+@StackTrace(false)
+final class SearchCitiesSubtaskEvent extends Event {
+    @Label("Process Id")
+    long processId;
+
+    @Label("Coordinates")
+    int amountOfCoordinates;
+
+    @Label("Skipped Coordinates")
+    int amountOfSkippedCoordinates;
+
+    @Label("Found Cities")
+    int amountOfFoundCities;
+
+    @Label("Database Duration")
+    @Timespan
+    long databaseDuration;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
@@ -4,35 +4,190 @@ import by.aurorasoft.nominatim.crud.model.dto.City;
 import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse.ExtraTags;
+import by.aurorasoft.nominatim.crud.model.dto.ReverseCacheEntry;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.crud.service.ReverseCacheEntryService;
 import by.aurorasoft.nominatim.service.nominatim.NominatimService;
 import by.aurorasoft.nominatim.rest.mapper.NominatimReverseResponseToCityMapper;
-import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.anyOf;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.*;
 
 @Service
-@RequiredArgsConstructor
 public final class SearchCityService {
     private static final String REGEX_PLACE_VALUE_IN_JSON_OF_CITY = "(city)|(town)";
 
     private final NominatimService nominatimService;
     private final NominatimReverseResponseToCityMapper mapper;
+    private final ReverseCacheEntryService reverseCacheEntryService;
+    private final CityService cityService;
+    private final boolean reverseCacheEnabled;
 
+    public SearchCityService(NominatimService nominatimService,
+                             NominatimReverseResponseToCityMapper mapper,
+                             ReverseCacheEntryService reverseCacheEntryService,
+                             CityService cityService,
+                             @Value("${search-cities.reverse-cache.enabled}") boolean reverseCacheEnabled) {
+        this.nominatimService = nominatimService;
+        this.mapper = mapper;
+        this.reverseCacheEntryService = reverseCacheEntryService;
+        this.cityService = cityService;
+        this.reverseCacheEnabled = reverseCacheEnabled;
+    }
+
+    /**
+     * Starts search and waits for its completion
+     *
+     * @see #startFindingByCoordinates(List)
+     */
     public Collection<City> findByCoordinates(List<Coordinate> coordinates) {
-        return coordinates.stream()
-                .map(this.nominatimService::reverse)
-                .filter(SearchCityService::isCity)
-                .map(this.mapper::map)
+        return this.startFindingByCoordinates(coordinates).join();
+    }
+
+    /**
+     * All reverse requests are sent without waiting for responses, so their amount in flight is limited only by
+     * rate limiter of nominatim service, and requests of several started searches can be in flight at once.
+     * Coordinates, whose results are cached, aren't requested: cached cities are taken from saved ones, coordinates
+     * of cached cities, which weren't saved, are requested again.
+     */
+    public PendingSearch startFindingByCoordinates(List<Coordinate> coordinates) {
+        final Map<Coordinate, ReverseCacheEntry> cachedEntries = this.findCachedEntries(coordinates);
+        final Map<String, Map<Integer, City>> savedCities = this.findSavedCitiesByNamesAndGeometryHashes(
+                cachedEntries.values());
+        final List<City> foundCities = new ArrayList<>();
+        final List<Coordinate> coordinatesToBeRequested = new ArrayList<>();
+        coordinates.forEach(coordinate -> {
+            final ReverseCacheEntry cachedEntry = cachedEntries.get(coordinate);
+            if (cachedEntry == null) {
+                coordinatesToBeRequested.add(coordinate);
+            } else if (isCity(cachedEntry.getPlace())) {
+                findSavedCity(savedCities, cachedEntry)
+                        .ifPresentOrElse(foundCities::add, () -> coordinatesToBeRequested.add(coordinate));
+            }
+        });
+        final List<CompletableFuture<NominatimReverseResponse>> responses = coordinatesToBeRequested.stream()
+                .map(this.nominatimService::reverseAsync)
                 .collect(toList());
+        return new PendingSearch(foundCities, coordinatesToBeRequested, responses);
+    }
+
+    /**
+     * Search, whose reverse requests are sent. Failure of one request cancels requests, which aren't completed yet,
+     * instead of waiting for them.
+     */
+    public final class PendingSearch {
+        private final List<City> foundCities;
+        private final List<Coordinate> requestedCoordinates;
+        private final List<CompletableFuture<NominatimReverseResponse>> responses;
+        private final CompletableFuture<Void> firstFailure;
+
+        private PendingSearch(List<City> foundCities, List<Coordinate> requestedCoordinates,
+                              List<CompletableFuture<NominatimReverseResponse>> responses) {
+            this.foundCities = foundCities;
+            this.requestedCoordinates = requestedCoordinates;
+            this.responses = responses;
+            this.firstFailure = new CompletableFuture<>();
+            responses.forEach(response -> response.whenComplete((ignored, exception) -> {
+                if (exception != null && this.firstFailure.completeExceptionally(exception)) {
+                    this.cancel();
+                }
+            }));
+        }
+
+        /**
+         * Waits for responses, caches their results and returns found cities. Exception of the first failed request
+         * is thrown wrapped by {@link java.util.concurrent.CompletionException}.
+         */
+        public Collection<City> join() {
+            //cancelled requests complete all of them, so the first failure is checked before
+            anyOf(this.firstFailure, allOf(this.responses.toArray(CompletableFuture[]::new))).join();
+            final Map<Coordinate, ReverseCacheEntry> entriesToBeCached = new HashMap<>();
+            for (int i = 0; i < this.responses.size(); i++) {
+                final NominatimReverseResponse response = this.responses.get(i).join();
+                final City city = isCity(response) ? mapper.map(response) : null;
+                if (city != null) {
+                    this.foundCities.add(city);
+                }
+                if (reverseCacheEnabled) {
+                    entriesToBeCached.put(this.requestedCoordinates.get(i), createCacheEntry(response, city));
+                }
+            }
+            if (!entriesToBeCached.isEmpty()) {
+                reverseCacheEntryService.save(entriesToBeCached);
+            }
+            return this.foundCities;
+        }
+
+        /**
+         * Cancels requests, which aren't completed yet, e.g. if search isn't needed because of failure of other one
+         */
+        public void cancel() {
+            this.responses.forEach(response -> response.cancel(true));
+        }
+    }
+
+    private Map<Coordinate, ReverseCacheEntry> findCachedEntries(List<Coordinate> coordinates) {
+        return this.reverseCacheEnabled
+                ? this.reverseCacheEntryService.findActualByCoordinates(coordinates)
+                : emptyMap();
+    }
+
+    /**
+     * Saved cities of all cached entries are loaded by one query and geometry of each of them is hashed once
+     */
+    private Map<String, Map<Integer, City>> findSavedCitiesByNamesAndGeometryHashes(
+            Collection<ReverseCacheEntry> cachedEntries) {
+        final Set<String> names = cachedEntries.stream()
+                .filter(entry -> isCity(entry.getPlace()) && entry.getName() != null)
+                .map(ReverseCacheEntry::getName)
+                .collect(toSet());
+        if (names.isEmpty()) {
+            return emptyMap();
+        }
+        return this.cityService.findByNames(names)
+                .stream()
+                .collect(groupingBy(
+                        City::getName,
+                        toMap(city -> hashGeometry(city.getGeometry()), identity(), (first, second) -> first)));
+    }
+
+    private static Optional<City> findSavedCity(Map<String, Map<Integer, City>> savedCities,
+                                                ReverseCacheEntry entry) {
+        return Optional.ofNullable(
+                savedCities.getOrDefault(entry.getName(), emptyMap()).get(entry.getGeometryHash()));
+    }
+
+    private static ReverseCacheEntry createCacheEntry(NominatimReverseResponse response, City city) {
+        final ExtraTags extraTags = response.getExtratags();
+        return ReverseCacheEntry.builder()
+                .place(extraTags != null ? extraTags.getPlace() : null)
+                .name(response.getName())
+                .capital(extraTags != null ? extraTags.getCapital() : null)
+                .geometryHash(city != null ? hashGeometry(city.getGeometry()) : null)
+                .build();
+    }
+
+    //hash of binary representation, which is the same for geometry parsed from response and loaded from database
+    private static int hashGeometry(Geometry geometry) {
+        return Arrays.hashCode(new WKBWriter().write(geometry));
     }
 
     private static boolean isCity(NominatimReverseResponse response) {
         final ExtraTags extraTags = response.getExtratags();
-        return extraTags != null
-                && extraTags.getPlace() != null
-                && extraTags.getPlace().matches(REGEX_PLACE_VALUE_IN_JSON_OF_CITY);
+        return extraTags != null && isCity(extraTags.getPlace());
+    }
+
+    private static boolean isCity(String place) {
+        return place != null && place.matches(REGEX_PLACE_VALUE_IN_JSON_OF_CITY);
     }
 }
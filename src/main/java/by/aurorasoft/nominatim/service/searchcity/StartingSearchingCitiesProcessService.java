@@ -4,9 +4,11 @@ import by.aurorasoft.nominatim.crud.model.dto.AreaCoordinate;
 import by.aurorasoft.nominatim.crud.model.dto.City;
 import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
 import by.aurorasoft.nominatim.crud.model.dto.SearchingCitiesProcess;
+import by.aurorasoft.nominatim.crud.service.CityService;
 import by.aurorasoft.nominatim.service.exception.FindingCitiesException;
-import by.aurorasoft.nominatim.util.StreamUtil;
+import by.aurorasoft.nominatim.service.searchcity.SearchCityService.PendingSearch;
 import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -16,26 +18,42 @@ import java.util.concurrent.ExecutorService;
 
 import static java.lang.Double.compare;
 import static java.lang.Math.ceil;
+import static java.lang.System.nanoTime;
 import static java.util.concurrent.CompletableFuture.runAsync;
+import static by.aurorasoft.nominatim.util.StreamUtil.asStream;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.LongStream.range;
 
 @Slf4j
 @Service
 public class StartingSearchingCitiesProcessService {
+    private static final String EXCEPTION_DESCRIPTION_NOT_POSITIVE_SUBTASKS_IN_FLIGHT
+            = "Amount of subtasks in flight should be positive";
+
     private final SearchCityService searchCityService;
     private final EventHandlingSearchCityProcessService eventHandlingSearchCityProcessService;
+    private final CityService cityService;
+    private final GeometryFactory geometryFactory;
     private final ExecutorService executorService;
     private final int amountHandledPointsToSaveState;
+    private final int subtasksInFlight;
 
     public StartingSearchingCitiesProcessService(SearchCityService searchCityService,
                                                  EventHandlingSearchCityProcessService eventHandlingSearchCityProcessService,
+                                                 CityService cityService,
+                                                 GeometryFactory geometryFactory,
                                                  @Qualifier("executorServiceToSearchCities") ExecutorService executorService,
-                                                 @Value("${search-cities.amount-handled-points-to-save-state}") int amountHandledPointsToSaveState) {
+                                                 @Value("${search-cities.amount-handled-points-to-save-state}") int amountHandledPointsToSaveState,
+                                                 @Value("${search-cities.subtasks-in-flight}") int subtasksInFlight) {
+        if (subtasksInFlight <= 0) {
+            throw new IllegalArgumentException(EXCEPTION_DESCRIPTION_NOT_POSITIVE_SUBTASKS_IN_FLIGHT);
+        }
         this.searchCityService = searchCityService;
         this.eventHandlingSearchCityProcessService = eventHandlingSearchCityProcessService;
+        this.cityService = cityService;
+        this.geometryFactory = geometryFactory;
         this.executorService = executorService;
         this.amountHandledPointsToSaveState = amountHandledPointsToSaveState;
+        this.subtasksInFlight = subtasksInFlight;
     }
 
     public SearchingCitiesProcess start(AreaCoordinate areaCoordinate, double searchStep) {
@@ -56,27 +74,59 @@ public class StartingSearchingCitiesProcessService {
             this.process = process;
         }
 
+        /**
+         * Requests of next subtasks are sent before completion of the eldest one, so reverse requests of up to
+         * subtasks-in-flight subtasks are in flight at once, while state of process is still saved by each subtask in
+         * order. Subtask skips coordinates only in cities, which were known when it was started.
+         */
         @Override
         public void run() {
+            final Deque<SubtaskSearchingCities> startedSubtasks = new ArrayDeque<>();
             try {
                 final Set<String> namesAlreadyFoundCities = new HashSet<>();
+                final List<City> foundUniqueCities = new ArrayList<>();
+                final KnownCitiesIndex knownCitiesIndex = this.createKnownCitiesIndex();
                 final AreaIterator areaIterator = new AreaIterator(this.areaCoordinate, this.searchStep);
                 final long amountOfSubAreas = this.findAmountOfSubAreas();
-                final Collection<City> foundUniqueCities = range(0, amountOfSubAreas)
-                        .mapToObj(i -> new SubAreaIterator(areaIterator))
-                        .map(StreamUtil::asStream)
-                        .map(subAreaCoordinateStream -> subAreaCoordinateStream.collect(toList()))
-                        .map(subAreaCoordinates -> new SubtaskSearchingCities(subAreaCoordinates, this.process))
-                        .map(SubtaskSearchingCities::execute)
-                        .flatMap(Collection::stream)
-                        .filter(city -> namesAlreadyFoundCities.add(city.getName()))
-                        .collect(toList());
+                for (long i = 0; i < amountOfSubAreas; i++) {
+                    if (startedSubtasks.size() == subtasksInFlight) {
+                        completeEldest(startedSubtasks, namesAlreadyFoundCities, foundUniqueCities);
+                    }
+                    final List<Coordinate> subAreaCoordinates = asStream(new SubAreaIterator(areaIterator))
+                            .collect(toList());
+                    startedSubtasks.addLast(
+                            new SubtaskSearchingCities(subAreaCoordinates, this.process, knownCitiesIndex).start());
+                }
+                while (!startedSubtasks.isEmpty()) {
+                    completeEldest(startedSubtasks, namesAlreadyFoundCities, foundUniqueCities);
+                }
                 eventHandlingSearchCityProcessService.onSuccessFindAllCities(this.process, foundUniqueCities);
             } catch (final Exception exception) {
+                startedSubtasks.forEach(SubtaskSearchingCities::cancel);
                 eventHandlingSearchCityProcessService.onFailedFindAllCities(this.process, exception);
             }
         }
 
+        /**
+         * Index initially contains saved cities, whose bounding boxes intersect area of process
+         */
+        private KnownCitiesIndex createKnownCitiesIndex() {
+            final KnownCitiesIndex knownCitiesIndex = new KnownCitiesIndex(geometryFactory);
+            cityService.findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(this.process.getGeometry())
+                    .values()
+                    .forEach(city -> knownCitiesIndex.add(city.getGeometry()));
+            return knownCitiesIndex;
+        }
+
+        private void completeEldest(Deque<SubtaskSearchingCities> startedSubtasks,
+                                    Set<String> namesAlreadyFoundCities, List<City> foundUniqueCities) {
+            startedSubtasks.removeFirst()
+                    .complete()
+                    .stream()
+                    .filter(city -> namesAlreadyFoundCities.add(city.getName()))
+                    .forEach(foundUniqueCities::add);
+        }
+
         private long findAmountOfSubAreas() {
             return (long) ceil(((double) this.process.getTotalPoints()) / amountHandledPointsToSaveState);
         }
@@ -162,22 +212,67 @@ public class StartingSearchingCitiesProcessService {
     private final class SubtaskSearchingCities {
         private final List<Coordinate> coordinates;
         private final SearchingCitiesProcess process;
+        private final KnownCitiesIndex knownCitiesIndex;
 
-        public SubtaskSearchingCities(List<Coordinate> coordinates, SearchingCitiesProcess process) {
+        public SubtaskSearchingCities(List<Coordinate> coordinates, SearchingCitiesProcess process,
+                                      KnownCitiesIndex knownCitiesIndex) {
             this.coordinates = coordinates;
             this.process = process;
+            this.knownCitiesIndex = knownCitiesIndex;
         }
 
-        public Collection<City> execute() {
+        private SearchCitiesSubtaskEvent event;
+        private PendingSearch search;
+
+        /**
+         * Coordinates in known cities aren't requested: reverse request would return the same city
+         */
+        public SubtaskSearchingCities start() {
+            this.event = new SearchCitiesSubtaskEvent();
+            this.event.begin();
+            this.event.processId = this.process.getId();
+            this.event.amountOfCoordinates = this.coordinates.size();
+            try {
+                final List<Coordinate> coordinatesOutsideKnownCities = this.coordinates.stream()
+                        .filter(coordinate -> !this.knownCitiesIndex.isInKnownCity(coordinate))
+                        .collect(toList());
+                this.event.amountOfSkippedCoordinates = this.coordinates.size() - coordinatesOutsideKnownCities.size();
+                this.search = searchCityService.startFindingByCoordinates(coordinatesOutsideKnownCities);
+                return this;
+            } catch (final Exception exception) {
+                throw this.fail(exception);
+            }
+        }
+
+        public Collection<City> complete() {
             try {
-                final Collection<City> foundCities = searchCityService.findByCoordinates(this.coordinates);
+                final Collection<City> foundCities = this.search.join();
+                this.event.amountOfFoundCities = foundCities.size();
+                foundCities.forEach(city -> this.knownCitiesIndex.add(city.getGeometry()));
+                final long databaseStartNanos = nanoTime();
                 eventHandlingSearchCityProcessService.onSuccessFindCitiesBySubtask(
                         this.process, this.coordinates.size());
+                this.event.databaseDuration = nanoTime() - databaseStartNanos;
+                this.event.succeeded = true;
+                this.event.commit();
                 return foundCities;
             } catch (final Exception exception) {
-                eventHandlingSearchCityProcessService.onFailedFindCitiesBySubtask(exception);
-                throw new FindingCitiesException(exception);
+                throw this.fail(exception);
             }
         }
+
+        public Collection<City> execute() {
+            return this.start().complete();
+        }
+
+        public void cancel() {
+            this.search.cancel();
+        }
+
+        private FindingCitiesException fail(Exception exception) {
+            eventHandlingSearchCityProcessService.onFailedFindCitiesBySubtask(exception);
+            this.event.commit();
+            return new FindingCitiesException(exception);
+        }
     }
 }
@@ -0,0 +1,44 @@
+CREATE SEQUENCE city_version_seq;
+
+ALTER TABLE city
+    ADD COLUMN version BIGINT NOT NULL DEFAULT nextval('city_version_seq');
+
+CREATE TABLE deleted_city
+(
+    id      INTEGER PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT nextval('city_version_seq')
+);
+
+CREATE
+OR REPLACE FUNCTION on_update_city() RETURNS TRIGGER AS
+'
+    BEGIN
+        NEW.version = nextval(''city_version_seq'');
+        RETURN NEW;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_on_update_city
+    BEFORE UPDATE
+    ON city
+    FOR EACH ROW
+    EXECUTE PROCEDURE on_update_city();
+
+CREATE
+OR REPLACE FUNCTION on_delete_city() RETURNS TRIGGER AS
+'
+    BEGIN
+        INSERT INTO deleted_city(id) VALUES (OLD.id)
+        ON CONFLICT (id) DO UPDATE SET version = nextval(''city_version_seq'');
+        RETURN OLD;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_on_delete_city
+    AFTER DELETE
+    ON city
+    FOR EACH ROW
+    EXECUTE PROCEDURE on_delete_city();
+
+CREATE INDEX ON city(version);
+CREATE INDEX ON deleted_city(version);
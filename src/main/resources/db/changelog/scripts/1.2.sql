@@ -0,0 +1,14 @@
+CREATE
+OR REPLACE FUNCTION notify_city_changed() RETURNS TRIGGER AS
+'
+    BEGIN
+        PERFORM pg_notify(''city_changed'', '''');
+        RETURN NULL;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_notify_city_changed
+    AFTER INSERT OR UPDATE OR DELETE
+    ON city
+    FOR EACH STATEMENT
+    EXECUTE PROCEDURE notify_city_changed();
@@ -0,0 +1,14 @@
+CREATE TABLE reverse_cache_entry
+(
+    decimal_places  INTEGER   NOT NULL,
+    latitude_key    INTEGER   NOT NULL,
+    longitude_key   INTEGER   NOT NULL,
+    place           VARCHAR(64),
+    name            VARCHAR(256),
+    capital         VARCHAR(16),
+    geometry_hash   INTEGER,
+    expiration_time TIMESTAMP NOT NULL,
+    PRIMARY KEY (decimal_places, latitude_key, longitude_key)
+);
+
+CREATE INDEX ON reverse_cache_entry(expiration_time);
@@ -0,0 +1,28 @@
+ALTER TABLE city
+    ADD COLUMN transaction_id BIGINT NOT NULL DEFAULT txid_current();
+
+ALTER TABLE deleted_city
+    ADD COLUMN transaction_id BIGINT NOT NULL DEFAULT txid_current();
+
+CREATE
+OR REPLACE FUNCTION on_update_city() RETURNS TRIGGER AS
+'
+    BEGIN
+        NEW.version = nextval(''city_version_seq'');
+        NEW.transaction_id = txid_current();
+        RETURN NEW;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE
+OR REPLACE FUNCTION on_delete_city() RETURNS TRIGGER AS
+'
+    BEGIN
+        INSERT INTO deleted_city(id) VALUES (OLD.id)
+        ON CONFLICT (id) DO UPDATE SET version = nextval(''city_version_seq''), transaction_id = txid_current();
+        RETURN OLD;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE INDEX ON city(transaction_id);
+CREATE INDEX ON deleted_city(transaction_id);
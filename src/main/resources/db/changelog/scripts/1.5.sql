@@ -0,0 +1,22 @@
+ALTER TABLE deleted_city
+    ADD COLUMN deleted_time TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE
+OR REPLACE FUNCTION on_delete_city() RETURNS TRIGGER AS
+'
+    BEGIN
+        INSERT INTO deleted_city(id) VALUES (OLD.id)
+        ON CONFLICT (id) DO UPDATE SET version = nextval(''city_version_seq''), transaction_id = txid_current(),
+        deleted_time = CURRENT_TIMESTAMP;
+        RETURN OLD;
+    END;
+' LANGUAGE plpgsql;
+
+CREATE INDEX ON deleted_city(deleted_time);
+
+CREATE TABLE purged_deleted_cities
+(
+    transaction_id BIGINT NOT NULL
+);
+
+INSERT INTO purged_deleted_cities(transaction_id) VALUES (0);
@@ -0,0 +1,6 @@
+CREATE TABLE database_identity
+(
+    id VARCHAR(32) NOT NULL
+);
+
+INSERT INTO database_identity(id) VALUES (md5(random()::text || clock_timestamp()::text));
@@ -0,0 +1,50 @@
+package by.aurorasoft.nominatim.crud.listener;
+
+import by.aurorasoft.nominatim.base.AbstractContextTest;
+import by.aurorasoft.nominatim.service.mileage.LoaderCitiesGeometriesAndBoundingBoxes;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+/**
+ * City is changed by plain jdbc, like by other node, so only notification of database leads to event
+ */
+@Transactional(propagation = NOT_SUPPORTED)
+@TestPropertySource(properties = "search-mileage.cities-changes-listening.enabled=true")
+public final class CitiesChangesNotificationListenerIT extends AbstractContextTest {
+    private static final long TIMEOUT_MILLIS_OF_EVENT = 5000;
+
+    @SpyBean
+    private LoaderCitiesGeometriesAndBoundingBoxes loader;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @After
+    public void deleteCities() {
+        this.jdbcTemplate.update("DELETE FROM city");
+    }
+
+    @Test
+    public void insertingCityByOtherNodeShouldBeListened() {
+        //event of connection
+        verify(this.loader, timeout(TIMEOUT_MILLIS_OF_EVENT).atLeastOnce()).onCitiesChanged(any());
+        clearInvocations(this.loader);
+
+        this.jdbcTemplate.update("INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+                + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+                + "'CAPITAL', "
+                + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+                + ")");
+
+        verify(this.loader, timeout(TIMEOUT_MILLIS_OF_EVENT).times(1)).onCitiesChanged(any());
+    }
+}
@@ -0,0 +1,140 @@
+package by.aurorasoft.nominatim.crud.listener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CitiesChangesNotificationListenerTest {
+    private static final int GIVEN_POLLING_TIMEOUT_MILLIS = 1;
+
+    @Mock
+    private DataSource mockedDataSource;
+
+    @Mock
+    private ApplicationEventPublisher mockedEventPublisher;
+
+    @Mock
+    private ExecutorService mockedExecutorService;
+
+    @Mock
+    private Connection mockedConnection;
+
+    @Mock
+    private Statement mockedStatement;
+
+    @Mock
+    private PGConnection mockedPGConnection;
+
+    private CitiesChangesNotificationListener listener;
+
+    @Before
+    public void initializeListener() {
+        this.listener = this.createListener(true);
+    }
+
+    @Test
+    public void listeningShouldBeStarted() {
+        this.listener.startListening();
+        verify(this.mockedExecutorService, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void listeningShouldNotBeStarted() {
+        final CitiesChangesNotificationListener givenListener = this.createListener(false);
+        givenListener.startListening();
+        verifyNoInteractions(this.mockedExecutorService);
+    }
+
+    @Test
+    public void eventsShouldBePublishedOnConnectionAndOnNotifications()
+            throws SQLException {
+        this.mockConnection();
+        when(this.mockedPGConnection.getNotifications(GIVEN_POLLING_TIMEOUT_MILLIS))
+                .thenReturn(null)
+                .thenReturn(new PGNotification[]{mock(PGNotification.class)})
+                .thenAnswer(invocation -> {
+                    this.listener.stopListening();
+                    return new PGNotification[0];
+                });
+
+        this.listener.startListening();
+        this.listener.listen();
+
+        verify(this.mockedStatement, times(1)).execute("LISTEN city_changed");
+        verify(this.mockedConnection, times(1)).close();
+        verify(this.mockedEventPublisher, times(2)).publishEvent(any(CitiesChangedEvent.class));
+    }
+
+    @Test
+    public void listeningShouldBeContinuedAfterFailedConnection()
+            throws SQLException {
+        when(this.mockedDataSource.getConnection())
+                .thenThrow(SQLException.class)
+                .thenReturn(this.mockedConnection);
+        when(this.mockedConnection.createStatement()).thenReturn(this.mockedStatement);
+        when(this.mockedConnection.unwrap(PGConnection.class)).thenReturn(this.mockedPGConnection);
+        when(this.mockedPGConnection.getNotifications(GIVEN_POLLING_TIMEOUT_MILLIS))
+                .thenAnswer(invocation -> {
+                    this.listener.stopListening();
+                    return null;
+                });
+
+        this.listener.startListening();
+        this.listener.listen();
+
+        verify(this.mockedDataSource, times(2)).getConnection();
+        verify(this.mockedEventPublisher, times(1)).publishEvent(any(CitiesChangedEvent.class));
+    }
+
+    @Test
+    public void listeningShouldBeContinuedAfterFailedPublishingEvent()
+            throws SQLException {
+        this.mockConnection();
+        doThrow(IllegalStateException.class)
+                .doNothing()
+                .when(this.mockedEventPublisher).publishEvent(any(CitiesChangedEvent.class));
+        when(this.mockedPGConnection.getNotifications(GIVEN_POLLING_TIMEOUT_MILLIS))
+                .thenAnswer(invocation -> {
+                    this.listener.stopListening();
+                    return new PGNotification[]{mock(PGNotification.class)};
+                });
+
+        this.listener.startListening();
+        this.listener.listen();
+
+        verify(this.mockedDataSource, times(1)).getConnection();
+        verify(this.mockedEventPublisher, times(2)).publishEvent(any(CitiesChangedEvent.class));
+    }
+
+    private void mockConnection()
+            throws SQLException {
+        when(this.mockedDataSource.getConnection()).thenReturn(this.mockedConnection);
+        when(this.mockedConnection.createStatement()).thenReturn(this.mockedStatement);
+        when(this.mockedConnection.unwrap(PGConnection.class)).thenReturn(this.mockedPGConnection);
+    }
+
+    private CitiesChangesNotificationListener createListener(boolean changesShouldBeListened) {
+        return new CitiesChangesNotificationListener(
+                this.mockedDataSource,
+                this.mockedEventPublisher,
+                this.mockedExecutorService,
+                changesShouldBeListened,
+                GIVEN_POLLING_TIMEOUT_MILLIS
+        );
+    }
+}
@@ -10,15 +10,19 @@ import org.springframework.test.context.jdbc.Sql;
 import javax.persistence.Tuple;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static by.aurorasoft.nominatim.crud.model.entity.CityEntity.Type.CAPITAL;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.Assert.*;
 
 public final class CityRepositoryTest extends AbstractContextTest {
     private static final String TUPLE_ALIAS_OF_BOUNDING_BOX = "boundingBox";
     private static final String TUPLE_ALIAS_OF_GEOMETRY = "geometry";
+    private static final String TUPLE_ALIAS_OF_ID = "id";
+    private static final String TUPLE_ALIAS_OF_VERSION = "version";
 
     @Autowired
     private CityRepository repository;
@@ -60,6 +64,34 @@ public final class CityRepositoryTest extends AbstractContextTest {
         checkEquals(expected, actual);
     }
 
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(257, 'Third', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    public void citiesShouldBeFoundByNames() {
+        super.startQueryCount();
+        final List<CityEntity> actual = this.repository.findByNameIn(Set.of("First", "Third", "Fourth"));
+        super.checkQueryCount(1);
+
+        final Set<Long> actualIds = actual.stream()
+                .map(CityEntity::getId)
+                .collect(toSet());
+        final Set<Long> expectedIds = Set.of(255L, 257L);
+        assertEquals(expectedIds, actualIds);
+    }
+
     @Test
     public void cityShouldBeSaved() {
         final Coordinate[] givenGeometryCoordinates = new Coordinate[]{
@@ -240,7 +272,7 @@ public final class CityRepositoryTest extends AbstractContextTest {
             + "'NOT_DEFINED', "
             + "ST_GeomFromText('POLYGON((3 1, 3 2, 4 2, 4 1, 3 1))', 4326)"
             + ")")
-    public void citiesWhoseBoundingBoxIntersectedByLineStringShouldBeFound() {
+    public void idsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineStringShouldBeFound() {
         final LineString givenLineString = this.geometryFactory.createLineString(new Coordinate[]{
                 new CoordinateXY(1.5, 1.5),
                 new CoordinateXY(3.5, 3.5),
@@ -248,14 +280,21 @@ public final class CityRepositoryTest extends AbstractContextTest {
         });
 
         super.startQueryCount();
-        final List<CityEntity> foundCities = this.repository.findCitiesWhoseBoundingBoxIntersectedByLineString(
-                givenLineString);
+        final List<Tuple> foundTuples = this.repository
+                .findIdsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(givenLineString);
         super.checkQueryCount(1);
 
-        final List<Long> actual = foundCities.stream()
-                .map(CityEntity::getId)
-                .collect(toList());
-        final List<Long> expected = List.of(255L, 256L);
+        final Map<Long, Long> actual = foundTuples.stream()
+                .collect(
+                        toMap(
+                                tuple -> ((Number) tuple.get(TUPLE_ALIAS_OF_ID)).longValue(),
+                                tuple -> ((Number) tuple.get(TUPLE_ALIAS_OF_VERSION)).longValue()
+                        )
+                );
+        final Map<Long, Long> expected = Map.of(
+                255L, this.findVersionOfCity(255L),
+                256L, this.findVersionOfCity(256L)
+        );
         assertEquals(expected, actual);
     }
 
@@ -275,7 +314,7 @@ public final class CityRepositoryTest extends AbstractContextTest {
             + "'NOT_DEFINED', "
             + "ST_GeomFromText('POLYGON((3 1, 3 2, 4 2, 4 1, 3 1))', 4326)"
             + ")")
-    public void citiesWhoseBoundingBoxIntersectedByLineStringShouldNotBeFound() {
+    public void idsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineStringShouldNotBeFound() {
         final LineString givenLineString = this.geometryFactory.createLineString(new Coordinate[]{
                 new CoordinateXY(5.5, 5.5),
                 new CoordinateXY(6.5, 6.5),
@@ -283,11 +322,201 @@ public final class CityRepositoryTest extends AbstractContextTest {
         });
 
         super.startQueryCount();
-        final List<CityEntity> foundCities = this.repository.findCitiesWhoseBoundingBoxIntersectedByLineString(
-                givenLineString);
+        final List<Tuple> foundTuples = this.repository
+                .findIdsWithVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(givenLineString);
+        super.checkQueryCount(1);
+
+        assertTrue(foundTuples.isEmpty());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((3 3, 4 3, 4 4, 3 3))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((3 3, 3 4, 4 4, 4 3, 3 3))', 4326)"
+            + ")")
+    public void geometriesWithVersionsShouldBeFoundByIds() {
+        super.startQueryCount();
+        final List<Tuple> foundTuples = this.repository.findGeometriesWithVersionsByIds(List.of(256L, 257L));
+        super.checkQueryCount(1);
+
+        assertEquals(1, foundTuples.size());
+        final Tuple actual = foundTuples.get(0);
+        assertEquals(256L, actual.get(TUPLE_ALIAS_OF_ID));
+        assertEquals(this.findVersionOfCity(256L), actual.get(TUPLE_ALIAS_OF_VERSION));
+        assertEquals(new Envelope(3, 4, 3, 4),
+                ((Geometry) actual.get(TUPLE_ALIAS_OF_GEOMETRY)).getEnvelopeInternal());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((3 3, 4 3, 4 4, 3 3))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((3 3, 3 4, 4 4, 4 3, 3 3))', 4326)"
+            + ")")
+    public void boundingBoxesWithGeometriesWhoseBoundingBoxIntersectedByGeometryShouldBeFound() {
+        final Geometry givenGeometry = this.geometryFactory.toGeometry(new Envelope(0, 2.5, 0, 2.5));
+
+        super.startQueryCount();
+        final List<Tuple> foundTuples = this.repository
+                .findBoundingBoxesWithGeometriesWhoseBoundingBoxIntersectedByGeometry(givenGeometry);
+        super.checkQueryCount(1);
+
+        assertEquals(1, foundTuples.size());
+        final Tuple actual = foundTuples.get(0);
+        assertEquals(255L, actual.get(TUPLE_ALIAS_OF_ID));
+        assertEquals(new Envelope(1, 2, 1, 2),
+                ((Geometry) actual.get(TUPLE_ALIAS_OF_BOUNDING_BOX)).getEnvelopeInternal());
+        assertNotNull(actual.get(TUPLE_ALIAS_OF_GEOMETRY));
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((4 4, 5 4, 5 5, 4 4))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((4 4, 5 4, 5 5, 4 5, 4 4))', 4326)"
+            + ")")
+    public void boundingBoxesWithGeometriesChangedSinceTransactionShouldBeFound() {
+        final long givenTransactionId = this.findTransactionIdOfCity(255L);
+
+        super.startQueryCount();
+        final List<Tuple> tuplesOfChangedCities = this.repository
+                .findBoundingBoxesWithGeometriesChangedSinceTransaction(givenTransactionId);
+        super.checkQueryCount(1);
+
+        final Set<Long> actualIds = tuplesOfChangedCities.stream()
+                .map(tuple -> (Long) tuple.get(TUPLE_ALIAS_OF_ID))
+                .collect(toSet());
+        final Set<Long> expectedIds = Set.of(255L, 256L);
+        assertEquals(expectedIds, actualIds);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    public void boundingBoxesWithGeometriesChangedSinceNextTransactionShouldNotBeFound() {
+        final long givenTransactionId = this.findTransactionIdOfCity(255L) + 1;
+
+        final List<Tuple> tuplesOfChangedCities = this.repository
+                .findBoundingBoxesWithGeometriesChangedSinceTransaction(givenTransactionId);
+
+        assertTrue(tuplesOfChangedCities.isEmpty());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((4 4, 5 4, 5 5, 4 4))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((4 4, 5 4, 5 5, 4 5, 4 4))', 4326)"
+            + ")")
+    @Sql(statements = "DELETE FROM city WHERE id = 255")
+    public void deletedCitiesSinceTransactionShouldBeFound() {
+        final long givenTransactionId = this.findTransactionIdOfCity(256L);
+
+        super.startQueryCount();
+        final List<Tuple> tuplesOfDeletedCities = this.repository.findDeletedCitiesSinceTransaction(givenTransactionId);
+        super.checkQueryCount(1);
+
+        final List<Long> actualIds = tuplesOfDeletedCities.stream()
+                .map(tuple -> ((Number) tuple.get(TUPLE_ALIAS_OF_ID)).longValue())
+                .collect(toList());
+        final List<Long> expectedIds = List.of(255L);
+        assertEquals(expectedIds, actualIds);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    public void idOfOldestTransactionInProgressShouldBeFound() {
+        final long givenTransactionId = this.findTransactionIdOfCity(255L);
+
+        super.startQueryCount();
+        final long actual = this.repository.findIdOfOldestTransactionInProgress();
+        super.checkQueryCount(1);
+
+        assertTrue(actual <= givenTransactionId);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    public void idOfNextTransactionShouldBeFound() {
+        final long givenTransactionId = this.findTransactionIdOfCity(255L);
+
+        super.startQueryCount();
+        final long actual = this.repository.findIdOfNextTransaction();
+        super.checkQueryCount(1);
+
+        assertTrue(actual > givenTransactionId);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((3 3, 4 3, 4 4, 3 3))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((3 3, 3 4, 4 4, 4 3, 3 3))', 4326)"
+            + ")")
+    public void numbersOfPointsLocatedInCitiesShouldBeFound() {
+        final MultiPoint givenPoints = this.geometryFactory.createMultiPointFromCoords(new Coordinate[]{
+                new CoordinateXY(0.5, 0.5),
+                new CoordinateXY(1.5, 1.5),
+                new CoordinateXY(3.9, 3.1),
+                new CoordinateXY(3.1, 3.9),
+                new CoordinateXY(1.5, 1.5)
+        });
+
+        super.startQueryCount();
+        final List<Integer> actual = this.repository.findNumbersOfPointsLocatedInCities(givenPoints);
         super.checkQueryCount(1);
 
-        assertTrue(foundCities.isEmpty());
+        final Set<Integer> expected = Set.of(2, 3, 5);
+        assertEquals(expected, Set.copyOf(actual));
+    }
+
+    private long findVersionOfCity(long id) {
+        return this.repository.findById(id)
+                .map(CityEntity::getVersion)
+                .orElseThrow();
+    }
+
+    private long findTransactionIdOfCity(long id) {
+        return this.repository.findById(id)
+                .map(CityEntity::getTransactionId)
+                .orElseThrow();
     }
 
     private static void checkEquals(CityEntity expected, CityEntity actual) {
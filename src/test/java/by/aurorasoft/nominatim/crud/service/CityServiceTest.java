@@ -1,7 +1,9 @@
 package by.aurorasoft.nominatim.crud.service;
 
 import by.aurorasoft.nominatim.base.AbstractContextTest;
+import by.aurorasoft.nominatim.crud.model.dto.CitiesGeometriesChanges;
 import by.aurorasoft.nominatim.crud.model.dto.City;
+import by.aurorasoft.nominatim.crud.model.dto.VersionedPreparedGeometry;
 import org.junit.Test;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
@@ -10,6 +12,7 @@ import org.springframework.test.context.jdbc.Sql;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -208,36 +211,17 @@ public final class CityServiceTest extends AbstractContextTest {
             + "'NOT_DEFINED', "
             + "ST_GeomFromText('POLYGON((3 1, 3 2, 4 2, 4 1, 3 1))', 4326)"
             + ")")
-    public void preparedGeometriesWhoseBoundingBoxIntersectedByLineStringShouldBeFound() {
+    public void versionsOfCitiesWhoseBoundingBoxIntersectedByLineStringShouldBeFound() {
         final LineString givenLineString = this.geometryFactory.createLineString(new Coordinate[]{
                 new CoordinateXY(1.5, 1.5),
                 new CoordinateXY(3.5, 3.5),
                 new CoordinateXY(4.5, 4.5)
         });
 
-        final List<PreparedGeometry> foundPreparedGeometries = this.service
-                .findPreparedGeometriesWhoseBoundingBoxIntersectedByLineString(givenLineString);
-        final List<Geometry> actual = foundPreparedGeometries.stream()
-                .map(PreparedGeometry::getGeometry)
-                .collect(toList());
-
-        final List<Geometry> expected = List.of(
-                this.geometryFactory.createPolygon(new Coordinate[]{
-                        new CoordinateXY(1, 1),
-                        new CoordinateXY(1, 2),
-                        new CoordinateXY(2, 2),
-                        new CoordinateXY(2, 1),
-                        new CoordinateXY(1, 1)
-                }),
-                this.geometryFactory.createPolygon(new Coordinate[]{
-                        new CoordinateXY(3, 3),
-                        new CoordinateXY(4, 3),
-                        new CoordinateXY(4, 4),
-                        new CoordinateXY(3, 3)
-                })
-        );
-
-        assertEquals(expected, actual);
+        final Map<Long, Long> actual = this.service.findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(
+                givenLineString);
+        assertEquals(Set.of(255L, 256L), actual.keySet());
+        assertTrue(actual.get(255L) < actual.get(256L));
     }
 
     @Test
@@ -256,15 +240,81 @@ public final class CityServiceTest extends AbstractContextTest {
             + "'NOT_DEFINED', "
             + "ST_GeomFromText('POLYGON((3 1, 3 2, 4 2, 4 1, 3 1))', 4326)"
             + ")")
-    public void preparedGeometriesWhoseBoundingBoxIntersectedByLineStringShouldNotBeFound() {
+    public void versionsOfCitiesWhoseBoundingBoxIntersectedByLineStringShouldNotBeFound() {
         final LineString givenLineString = this.geometryFactory.createLineString(new Coordinate[]{
                 new CoordinateXY(5.5, 5.5),
                 new CoordinateXY(6.5, 6.5),
                 new CoordinateXY(7.5, 7.5)
         });
 
-        final List<PreparedGeometry> foundPreparedGeometries = this.service
-                .findPreparedGeometriesWhoseBoundingBoxIntersectedByLineString(givenLineString);
-        assertTrue(foundPreparedGeometries.isEmpty());
+        final Map<Long, Long> actual = this.service.findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(
+                givenLineString);
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(256, 'Second', "
+            + "ST_GeomFromText('POLYGON((3 3, 4 3, 4 4, 3 3))', 4326), "
+            + "'REGIONAL', "
+            + "ST_GeomFromText('POLYGON((3 3, 3 4, 4 4, 4 3, 3 3))', 4326)"
+            + ")")
+    public void preparedGeometriesShouldBeFoundByIds() {
+        final Map<Long, VersionedPreparedGeometry> actual = this.service.findPreparedGeometriesByIds(
+                List.of(256L, 257L));
+
+        assertEquals(Set.of(256L), actual.keySet());
+        final Geometry expectedGeometry = this.geometryFactory.createPolygon(new Coordinate[]{
+                new CoordinateXY(3, 3),
+                new CoordinateXY(4, 3),
+                new CoordinateXY(4, 4),
+                new CoordinateXY(3, 3)
+        });
+        assertEquals(expectedGeometry, actual.get(256L).getGeometry().getGeometry());
+        assertTrue(actual.get(256L).getVersion() > 0);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'First', "
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 1))', 4326), "
+            + "'CAPITAL',"
+            + "ST_GeomFromText('POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))', 4326)"
+            + ")")
+    @Sql(statements = "INSERT INTO deleted_city(id, transaction_id, deleted_time) "
+            + "VALUES(256, 10, '2000-01-01 00:00:00')")
+    @Sql(statements = "INSERT INTO deleted_city(id, transaction_id, deleted_time) "
+            + "VALUES(257, 20, CURRENT_TIMESTAMP)")
+    public void deletedCitiesOlderThanRetentionShouldBePurgedAndChangesSinceThemShouldBeFull() {
+        this.service.purgeDeletedCities();
+
+        final List<?> actualNotPurgedIds = super.entityManager
+                .createNativeQuery("SELECT id FROM deleted_city")
+                .getResultList();
+        assertEquals(List.of(257), actualNotPurgedIds);
+
+        final CitiesGeometriesChanges actualChangesSincePurged = this.service
+                .findPreparedGeometriesChangedSinceVersion(10);
+        assertTrue(actualChangesSincePurged.isFull());
+        assertEquals(Set.of(255L), actualChangesSincePurged.getChangedGeometriesByCitiesIds().keySet());
+        assertTrue(actualChangesSincePurged.getDeletedCitiesIds().isEmpty());
+
+        final CitiesGeometriesChanges actualChangesSinceNotPurged = this.service
+                .findPreparedGeometriesChangedSinceVersion(11);
+        assertFalse(actualChangesSinceNotPurged.isFull());
+        assertEquals(Set.of(257L), actualChangesSinceNotPurged.getDeletedCitiesIds());
+    }
+
+    @Test
+    public void databaseIdShouldBeFound() {
+        final String actual = this.service.findDatabaseId();
+        final String expected = (String) super.entityManager
+                .createNativeQuery("SELECT id FROM database_identity")
+                .getSingleResult();
+        assertEquals(32, actual.length());
+        assertEquals(expected, actual);
     }
 }
@@ -0,0 +1,93 @@
+package by.aurorasoft.nominatim.crud.service;
+
+import by.aurorasoft.nominatim.base.AbstractContextTest;
+import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
+import by.aurorasoft.nominatim.crud.model.dto.ReverseCacheEntry;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ReverseCacheEntryServiceTest extends AbstractContextTest {
+
+    @Autowired
+    private ReverseCacheEntryService service;
+
+    @Test
+    public void entryShouldBeSavedAndFoundByCloseCoordinate() {
+        final ReverseCacheEntry givenEntry = ReverseCacheEntry.builder()
+                .place("city")
+                .name("Minsk")
+                .capital("yes")
+                .geometryHash(255)
+                .build();
+        this.service.save(Map.of(new Coordinate(53.12341, 27.56781), givenEntry));
+        super.entityManager.flush();
+        super.entityManager.clear();
+
+        final Coordinate givenCloseCoordinate = new Coordinate(53.12344, 27.56779);
+        final Coordinate givenFarCoordinate = new Coordinate(53.2, 27.2);
+        final Map<Coordinate, ReverseCacheEntry> actual = this.service.findActualByCoordinates(
+                List.of(givenCloseCoordinate, givenFarCoordinate));
+        final Map<Coordinate, ReverseCacheEntry> expected = Map.of(givenCloseCoordinate, givenEntry);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO reverse_cache_entry"
+            + "(decimal_places, latitude_key, longitude_key, place, name, expiration_time) "
+            + "VALUES(4, 531234, 275678, 'village', 'Village', '2000-01-01 00:00:00')")
+    public void existingEntryShouldBeReplacedBySavedOneWithTheSameKey() {
+        final ReverseCacheEntry givenEntry = ReverseCacheEntry.builder()
+                .place("city")
+                .name("Minsk")
+                .capital("yes")
+                .geometryHash(255)
+                .build();
+        final Coordinate givenCoordinate = new Coordinate(53.1234, 27.5678);
+        this.service.save(Map.of(givenCoordinate, givenEntry));
+        super.entityManager.flush();
+        super.entityManager.clear();
+
+        final Map<Coordinate, ReverseCacheEntry> actual = this.service.findActualByCoordinates(
+                List.of(givenCoordinate));
+        final Map<Coordinate, ReverseCacheEntry> expected = Map.of(givenCoordinate, givenEntry);
+        assertEquals(expected, actual);
+
+        final Number actualAmountOfEntries = (Number) super.entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM reverse_cache_entry")
+                .getSingleResult();
+        assertEquals(1, actualAmountOfEntries.intValue());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO reverse_cache_entry"
+            + "(decimal_places, latitude_key, longitude_key, place, name, expiration_time) "
+            + "VALUES(4, 531234, 275678, 'village', 'Village', '2000-01-01 00:00:00')")
+    public void expiredEntryShouldNotBeFound() {
+        final Map<Coordinate, ReverseCacheEntry> actual = this.service.findActualByCoordinates(
+                List.of(new Coordinate(53.1234, 27.5678)));
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    @Sql(statements = "INSERT INTO reverse_cache_entry"
+            + "(decimal_places, latitude_key, longitude_key, place, name, expiration_time) "
+            + "VALUES(4, 531234, 275678, 'village', 'Village', '2000-01-01 00:00:00')")
+    @Sql(statements = "INSERT INTO reverse_cache_entry"
+            + "(decimal_places, latitude_key, longitude_key, place, name, expiration_time) "
+            + "VALUES(4, 531235, 275679, 'village', 'Village', '2100-01-01 00:00:00')")
+    public void expiredEntriesShouldBeDeleted() {
+        this.service.deleteExpired();
+
+        final Number actual = (Number) super.entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM reverse_cache_entry")
+                .getSingleResult();
+        assertEquals(1, actual.intValue());
+    }
+}
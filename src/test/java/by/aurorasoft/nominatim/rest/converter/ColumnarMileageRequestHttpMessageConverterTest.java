@@ -0,0 +1,282 @@
+package by.aurorasoft.nominatim.rest.converter;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.rest.controller.exception.CustomValidationException;
+import by.aurorasoft.nominatim.rest.model.ColumnarBatchMileageRequest;
+import by.aurorasoft.nominatim.rest.model.ColumnarMileageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+
+import static by.aurorasoft.nominatim.service.mileage.MileageEngine.POSTGIS;
+import static com.fasterxml.jackson.core.json.JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.Instant.parse;
+import static javax.validation.Validation.buildDefaultValidatorFactory;
+import static org.junit.Assert.*;
+
+public final class ColumnarMileageRequestHttpMessageConverterTest {
+    private static ValidatorFactory validatorFactory;
+
+    @BeforeClass
+    public static void createValidatorFactory() {
+        validatorFactory = buildDefaultValidatorFactory();
+    }
+
+    @AfterClass
+    public static void closeValidatorFactory() {
+        validatorFactory.close();
+    }
+
+    @Test
+    public void requestShouldBeRead()
+            throws IOException {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00.576033Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true,\"unknown\":[1]},"
+                + "{\"datetime\":1676456590,\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        final ColumnarMileageRequest actual = this.read(givenJson);
+        assertEquals(1, actual.getMinDetectionSpeed());
+        assertEquals(15, actual.getMaxMessageTimeout());
+        assertNull(actual.getEngine());
+
+        final Track actualTrack = actual.getTrack();
+        assertEquals(2, actualTrack.getSize());
+        assertEquals(parse("2023-02-15T10:23:00.576Z").toEpochMilli(), actualTrack.getEpochMillis(0));
+        assertEquals(1.5F, actualTrack.getLatitude(0), 0.F);
+        assertEquals(1.6F, actualTrack.getLongitude(0), 0.F);
+        assertEquals(15, actualTrack.getAltitude(0));
+        assertEquals(20, actualTrack.getSpeed(0));
+        assertTrue(actualTrack.isValid(0));
+        assertEquals(1676456590000L, actualTrack.getEpochMillis(1));
+        assertEquals(3.5F, actualTrack.getLatitude(1), 0.F);
+        assertFalse(actualTrack.isValid(1));
+    }
+
+    @Test
+    public void requestWithValuesOfTrackPointsInStringsShouldBeRead()
+            throws IOException {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":\"53.9\",\"longitude\":\"27.5\",\"altitude\":\"15\",\"speed\":\"20\","
+                + "\"valid\":\"true\"},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        final Track actual = this.read(givenJson).getTrack();
+        assertEquals(53.9F, actual.getLatitude(0), 0.F);
+        assertEquals(27.5F, actual.getLongitude(0), 0.F);
+        assertEquals(15, actual.getAltitude(0));
+        assertEquals(20, actual.getSpeed(0));
+        assertTrue(actual.isValid(0));
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfTrackPointLatitudeInStringIsNotNumber() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":\"NaN\",\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        this.readNotValid(givenJson, "trackPoints[0].latitude : ");
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfTrackPointDatetimeIsNull() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":null,"
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        this.readNotValid(givenJson, "trackPoints[0].datetime : ");
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfTrackPointLatitudeIsBiggerThanMaximalAllowable() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":90.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        this.readNotValid(givenJson, "trackPoints[1].latitude : ");
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfTrackPointLongitudeIsNotNumber()
+            throws IOException {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":NaN,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+        final ObjectMapper givenObjectMapper = JsonMapper.builder()
+                .enable(ALLOW_NON_NUMERIC_NUMBERS)
+                .build();
+
+        try {
+            read(givenObjectMapper, ColumnarMileageRequest.class, givenJson);
+            fail();
+        } catch (final CustomValidationException exception) {
+            assertTrue(exception.getMessage().startsWith("trackPoints[0].longitude : "));
+        }
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfAmountTrackPointsIsLessThanMinimalAllowable() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15}";
+
+        this.readNotValid(givenJson, "trackPoints : ");
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfMaxMessageTimeoutIsNull() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1}";
+
+        this.readNotValid(givenJson, "maxMessageTimeout : ");
+    }
+
+    @Test
+    public void requestWithEngineShouldBeRead()
+            throws IOException {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15,\"engine\":\"POSTGIS\"}";
+
+        final ColumnarMileageRequest actual = this.read(givenJson);
+        assertSame(POSTGIS, actual.getEngine());
+    }
+
+    @Test
+    public void requestShouldNotBeReadBecauseOfEngineIsUnknown() {
+        final String givenJson = "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15,\"engine\":\"UNKNOWN\"}";
+
+        this.readNotValid(givenJson, "engine : ");
+    }
+
+    @Test
+    public void batchRequestShouldBeRead()
+            throws IOException {
+        final String givenJson = "{\"requests\":["
+                + "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15},"
+                + "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":4.5,\"longitude\":4.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":2,\"maxMessageTimeout\":16}"
+                + "]}";
+
+        final ColumnarBatchMileageRequest actual = (ColumnarBatchMileageRequest) read(
+                ColumnarBatchMileageRequest.class, givenJson);
+        assertEquals(2, actual.getRequests().size());
+        assertEquals(2, actual.getRequests().get(0).getTrack().getSize());
+        assertEquals(1, actual.getRequests().get(0).getMinDetectionSpeed());
+        assertEquals(3, actual.getRequests().get(1).getTrack().getSize());
+        assertEquals(16, actual.getRequests().get(1).getMaxMessageTimeout());
+    }
+
+    @Test
+    public void batchRequestShouldNotBeReadBecauseOfTrackPointSpeedIsLessThanMinimalAllowable()
+            throws IOException {
+        final String givenJson = "{\"requests\":["
+                + "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15},"
+                + "{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":-20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":2,\"maxMessageTimeout\":16}"
+                + "]}";
+
+        try {
+            read(ColumnarBatchMileageRequest.class, givenJson);
+            fail();
+        } catch (final CustomValidationException exception) {
+            assertTrue(exception.getMessage().startsWith("requests[1].trackPoints[0].speed : "));
+        }
+    }
+
+    @Test(expected = HttpMessageNotReadableException.class)
+    public void requestShouldNotBeReadBecauseOfNotValidJson()
+            throws IOException {
+        this.read("{\"trackPoints\":[{\"latitude\":\"abc\"}]}");
+    }
+
+    @Test(expected = HttpMessageNotReadableException.class)
+    public void requestShouldNotBeReadBecauseOfContentAfterRequest()
+            throws IOException {
+        this.read("{\"trackPoints\":[{\"datetime\":\"2023-02-15T10:23:00Z\","
+                + "\"latitude\":1.5,\"longitude\":1.6,\"altitude\":15,\"speed\":20,\"valid\":true},"
+                + "{\"datetime\":\"2023-02-15T10:23:00Z\",\"latitude\":3.5,\"longitude\":3.6,"
+                + "\"altitude\":16,\"speed\":21,\"valid\":false}],"
+                + "\"minDetectionSpeed\":1,\"maxMessageTimeout\":15} {}");
+    }
+
+    @Test
+    public void converterShouldNotWrite() {
+        final ColumnarMileageRequestHttpMessageConverter givenConverter
+                = new ColumnarMileageRequestHttpMessageConverter(new ObjectMapper(), validatorFactory.getValidator());
+        assertFalse(givenConverter.canWrite(ColumnarMileageRequest.class, null));
+    }
+
+    private void readNotValid(String json, String expectedMessagePrefix) {
+        try {
+            this.read(json);
+            fail();
+        } catch (final CustomValidationException exception) {
+            assertTrue(exception.getMessage().startsWith(expectedMessagePrefix));
+            assertTrue(exception.getMessage().length() > expectedMessagePrefix.length());
+        } catch (final IOException exception) {
+            fail();
+        }
+    }
+
+    private ColumnarMileageRequest read(String json)
+            throws IOException {
+        return (ColumnarMileageRequest) read(ColumnarMileageRequest.class, json);
+    }
+
+    private static Object read(Class<?> requestType, String json)
+            throws IOException {
+        return read(new ObjectMapper(), requestType, json);
+    }
+
+    private static Object read(ObjectMapper objectMapper, Class<?> requestType, String json)
+            throws IOException {
+        final ColumnarMileageRequestHttpMessageConverter givenConverter
+                = new ColumnarMileageRequestHttpMessageConverter(objectMapper, validatorFactory.getValidator());
+        return givenConverter.read(requestType, new MockHttpInputMessage(json.getBytes(UTF_8)));
+    }
+}
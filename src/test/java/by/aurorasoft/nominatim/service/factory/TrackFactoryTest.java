@@ -0,0 +1,72 @@
+package by.aurorasoft.nominatim.service.factory;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.crud.model.dto.Track.PointView;
+import by.aurorasoft.nominatim.rest.model.MileageRequest.TrackPoint;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static java.time.Instant.parse;
+import static org.junit.Assert.*;
+
+public final class TrackFactoryTest {
+    private final TrackFactory trackFactory = new TrackFactory();
+
+    @Test
+    public void trackShouldBeCreated() {
+        final List<TrackPoint> givenPoints = List.of(
+                createTrackPoint(parse("2022-01-01T10:00:00Z"), 53.1F, 27.1F, 100, 10, true),
+                createTrackPoint(parse("2022-01-01T10:00:05Z"), 53.2F, 27.2F, 110, 20, false)
+        );
+
+        final Track actual = this.trackFactory.create(givenPoints);
+        assertEquals(2, actual.getSize());
+        assertEquals(53.1F, actual.getLatitude(0), 0.F);
+        assertEquals(27.2F, actual.getLongitude(1), 0.F);
+        assertEquals(100, actual.getAltitude(0));
+        assertEquals(20, actual.getSpeed(1));
+        assertEquals(parse("2022-01-01T10:00:05Z").toEpochMilli(), actual.getEpochMillis(1));
+        assertTrue(actual.isValid(0));
+        assertFalse(actual.isValid(1));
+    }
+
+    @Test
+    public void pointsOfTrackShouldBeViewed() {
+        final List<TrackPoint> givenPoints = List.of(
+                createTrackPoint(parse("2022-01-01T10:00:00Z"), 53.1F, 27.1F, 100, 10, true),
+                createTrackPoint(parse("2022-01-01T10:00:05Z"), 53.2F, 27.2F, 110, 20, false)
+        );
+        final Track givenTrack = this.trackFactory.create(givenPoints);
+
+        final List<PointView> actual = givenTrack.asPoints();
+        assertEquals(2, actual.size());
+        assertEquals(parse("2022-01-01T10:00:05Z"), actual.get(1).getDatetime());
+        assertEquals(53.2F, actual.get(1).getLatitude(), 0.F);
+        assertFalse(actual.get(1).isValid());
+
+        final PointView givenMovedPoint = givenTrack.createPointView(1);
+        givenMovedPoint.moveTo(0);
+        assertEquals(27.1F, givenMovedPoint.getLongitude(), 0.F);
+        assertEquals(10, givenMovedPoint.getSpeed());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void pointOutOfTrackShouldNotBeViewed() {
+        final Track givenTrack = this.trackFactory.create(List.of());
+        givenTrack.asPoints().get(0);
+    }
+
+    private static TrackPoint createTrackPoint(Instant datetime, float latitude, float longitude,
+                                               int altitude, int speed, boolean valid) {
+        return TrackPoint.builder()
+                .datetime(datetime)
+                .latitude(latitude)
+                .longitude(longitude)
+                .altitude(altitude)
+                .speed(speed)
+                .valid(valid)
+                .build();
+    }
+}
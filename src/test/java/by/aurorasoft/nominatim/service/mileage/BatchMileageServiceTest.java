@@ -0,0 +1,60 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.rest.model.BatchMileageResponse;
+import by.aurorasoft.nominatim.rest.model.ColumnarBatchMileageRequest;
+import by.aurorasoft.nominatim.rest.model.ColumnarMileageRequest;
+import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class BatchMileageServiceTest {
+    private static final int POOL_PARALLELISM = 2;
+
+    @Mock
+    private MileageService mockedMileageService;
+
+    private ForkJoinPool forkJoinPool;
+    private BatchMileageService batchMileageService;
+
+    @Before
+    public void initializeBatchMileageService() {
+        this.forkJoinPool = new ForkJoinPool(POOL_PARALLELISM);
+        this.batchMileageService = new BatchMileageService(this.mockedMileageService, this.forkJoinPool);
+    }
+
+    @After
+    public void shutdownPool() {
+        this.forkJoinPool.shutdown();
+    }
+
+    @Test
+    public void mileagesShouldBeFoundInOrderOfRequests() {
+        final List<ColumnarMileageRequest> givenRequests = range(0, 50)
+                .mapToObj(i -> mock(ColumnarMileageRequest.class))
+                .collect(toList());
+        final List<MileageResponse> givenResponses = range(0, 50)
+                .mapToObj(i -> new MileageResponse(i, i + 1))
+                .collect(toList());
+        range(0, 50).forEach(i -> when(this.mockedMileageService.findMileage(givenRequests.get(i)))
+                .thenReturn(givenResponses.get(i)));
+
+        final BatchMileageResponse actual = this.batchMileageService.findMileages(
+                new ColumnarBatchMileageRequest(givenRequests));
+        final BatchMileageResponse expected = new BatchMileageResponse(givenResponses);
+        assertEquals(expected, actual);
+    }
+}
@@ -1,21 +1,35 @@
 package by.aurorasoft.nominatim.service.mileage;
 
+import by.aurorasoft.nominatim.crud.listener.CitiesChangedEvent;
+import by.aurorasoft.nominatim.crud.model.dto.CitiesGeometriesChanges;
+import by.aurorasoft.nominatim.crud.model.dto.PreparedGeometryWithBoundingBox;
 import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshot;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotStorage;
+import by.aurorasoft.nominatim.service.mileage.index.IndexedCityGeometry;
+import by.aurorasoft.nominatim.service.mileage.index.IndexedCityGeometryFactory;
+import by.aurorasoft.nominatim.service.mileage.index.StoredCitiesGeometriesSnapshot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
-import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public final class LoaderCitiesGeometriesAndBoundingBoxesTest {
+    private static final String GIVEN_DATABASE_ID = "database-id";
 
     @Mock
     private MileageService mockedMileageService;
@@ -23,45 +37,296 @@ public final class LoaderCitiesGeometriesAndBoundingBoxesTest {
     @Mock
     private CityService mockedCityService;
 
-    @Captor
-    private ArgumentCaptor<Map<PreparedGeometry, PreparedGeometry>> geometriesByGeometriesArgumentCaptor;
+    @Mock
+    private CitiesGeometriesSnapshotFactory mockedSnapshotFactory;
+
+    @Mock
+    private CitiesGeometriesSnapshotStorage mockedSnapshotStorage;
+
+    @Mock
+    private IndexedCityGeometryFactory mockedIndexedCityGeometryFactory;
+
+    @Mock
+    private ExecutorService mockedExecutorService;
+
+    private final Map<PreparedGeometryWithBoundingBox, IndexedCityGeometry> indexedGeometriesBySourceGeometries
+            = new HashMap<>();
 
     @Test
-    @SuppressWarnings("unchecked")
     public void cityGeometriesShouldBeLoaded() {
         final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
 
-        final Map<PreparedGeometry, PreparedGeometry> givenGeometriesByBoundingBoxes = mock(Map.class);
-        when(this.mockedCityService.findPreparedGeometriesByPreparedBoundingBoxes())
-                .thenReturn(givenGeometriesByBoundingBoxes);
+        final PreparedGeometryWithBoundingBox givenGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(5, Map.of(255L, givenGeometry), Set.of(), true));
+
+        final CitiesGeometriesSnapshot givenSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        when(this.mockedSnapshotFactory.create(geometriesEqualTo(this.findIndexedGeometry(givenGeometry))))
+                .thenReturn(givenSnapshot);
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesChangedSinceVersion(anyLong());
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(givenSnapshot);
+    }
+
+    @Test
+    public void storedSnapshotShouldBeInjectedAndBeUpdatedByChanges() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+
+        final IndexedCityGeometry givenStoredGeometry = mock(IndexedCityGeometry.class);
+        final CitiesGeometriesSnapshot givenStoredSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        when(this.mockedSnapshotStorage.read()).thenReturn(Optional.of(
+                new StoredCitiesGeometriesSnapshot(
+                        GIVEN_DATABASE_ID, 5, Map.of(255L, givenStoredGeometry), givenStoredSnapshot
+                )
+        ));
+        when(this.mockedCityService.findDatabaseId()).thenReturn(GIVEN_DATABASE_ID);
+        when(this.mockedCityService.findNextVersion()).thenReturn(6L);
+
+        final PreparedGeometryWithBoundingBox givenChangedGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(5))
+                .thenReturn(new CitiesGeometriesChanges(6, Map.of(256L, givenChangedGeometry), Set.of(), false));
+
+        final CitiesGeometriesSnapshot givenSnapshot = mock(CitiesGeometriesSnapshot.class);
+        when(this.mockedSnapshotFactory.create(
+                geometriesEqualTo(givenStoredGeometry, this.findIndexedGeometry(givenChangedGeometry))
+        )).thenReturn(givenSnapshot);
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(same(givenStoredSnapshot));
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(same(givenSnapshot));
+        verify(this.mockedSnapshotStorage, times(1))
+                .write(eq(GIVEN_DATABASE_ID), eq(6L), anyMap(), same(givenSnapshot));
+    }
+
+    @Test
+    public void actualStoredSnapshotShouldBeInjectedWithoutRebuilding() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+
+        final CitiesGeometriesSnapshot givenStoredSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        final Map<Long, IndexedCityGeometry> givenStoredGeometriesByCitiesIds = Map.of(
+                255L, mock(IndexedCityGeometry.class)
+        );
+        when(this.mockedSnapshotStorage.read()).thenReturn(Optional.of(
+                new StoredCitiesGeometriesSnapshot(
+                        GIVEN_DATABASE_ID, 5, givenStoredGeometriesByCitiesIds, givenStoredSnapshot
+                )
+        ));
+        when(this.mockedCityService.findDatabaseId()).thenReturn(GIVEN_DATABASE_ID);
+        when(this.mockedCityService.findNextVersion()).thenReturn(5L);
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(5))
+                .thenReturn(new CitiesGeometriesChanges(5, Map.of(), Set.of(), false));
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(givenStoredSnapshot);
+        verifyNoInteractions(this.mockedSnapshotFactory);
+        verify(this.mockedSnapshotStorage, times(0)).write(anyString(), anyLong(), anyMap(), any());
+    }
+
+    @Test
+    public void storedSnapshotNewerThanCitiesShouldBeIgnored() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+
+        final CitiesGeometriesSnapshot givenStoredSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        final Map<Long, IndexedCityGeometry> givenStoredGeometriesByCitiesIds = Map.of(
+                255L, mock(IndexedCityGeometry.class)
+        );
+        when(this.mockedSnapshotStorage.read()).thenReturn(Optional.of(
+                new StoredCitiesGeometriesSnapshot(
+                        GIVEN_DATABASE_ID, 5, givenStoredGeometriesByCitiesIds, givenStoredSnapshot
+                )
+        ));
+        when(this.mockedCityService.findDatabaseId()).thenReturn(GIVEN_DATABASE_ID);
+        when(this.mockedCityService.findNextVersion()).thenReturn(4L);
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(4, Map.of(), Set.of(), true));
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+
+        verify(this.mockedMileageService, times(0)).setCitiesGeometriesSnapshot(givenStoredSnapshot);
+        verify(this.mockedSnapshotFactory, times(1)).create(List.of());
+    }
+
+    @Test
+    public void storedSnapshotOfOtherDatabaseShouldBeIgnored() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+
+        final CitiesGeometriesSnapshot givenStoredSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        final Map<Long, IndexedCityGeometry> givenStoredGeometriesByCitiesIds = Map.of(
+                255L, mock(IndexedCityGeometry.class)
+        );
+        when(this.mockedSnapshotStorage.read()).thenReturn(Optional.of(
+                new StoredCitiesGeometriesSnapshot("other-database-id", 5, givenStoredGeometriesByCitiesIds,
+                        givenStoredSnapshot)
+        ));
+        when(this.mockedCityService.findDatabaseId()).thenReturn(GIVEN_DATABASE_ID);
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(6, Map.of(), Set.of(), true));
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+
+        verify(this.mockedMileageService, times(0)).setCitiesGeometriesSnapshot(givenStoredSnapshot);
+        verify(this.mockedCityService, times(0)).findNextVersion();
+        verify(this.mockedSnapshotFactory, times(1)).create(List.of());
+        verify(this.mockedSnapshotStorage, times(1)).write(eq(GIVEN_DATABASE_ID), eq(6L), anyMap(), any());
+    }
+
+    @Test
+    public void changesOfCitiesShouldBeAppliedToLoadedOnes() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+        this.executeTasksInCallingThread();
+
+        final PreparedGeometryWithBoundingBox givenFirstGeometry = this.createGeometryWithBoundingBox();
+        final PreparedGeometryWithBoundingBox givenSecondGeometry = this.createGeometryWithBoundingBox();
+        final PreparedGeometryWithBoundingBox givenUpdatedSecondGeometry = this.createGeometryWithBoundingBox();
+        final PreparedGeometryWithBoundingBox givenThirdGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(
+                        5, Map.of(255L, givenFirstGeometry, 256L, givenSecondGeometry), Set.of(), true
+                ));
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(5))
+                .thenReturn(new CitiesGeometriesChanges(
+                        8, Map.of(256L, givenUpdatedSecondGeometry, 257L, givenThirdGeometry), Set.of(255L), false
+                ));
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(8))
+                .thenReturn(new CitiesGeometriesChanges(8, Map.of(), Set.of(), false));
 
         givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
 
-        verify(this.mockedCityService, times(1))
-                .findPreparedGeometriesByPreparedBoundingBoxes();
-        verify(this.mockedMileageService, times(1))
-                .setCitiesGeometriesByBoundingBoxes(this.geometriesByGeometriesArgumentCaptor.capture());
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesChangedSinceVersion(0);
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesChangedSinceVersion(5);
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesChangedSinceVersion(8);
 
-        assertSame(givenGeometriesByBoundingBoxes, this.geometriesByGeometriesArgumentCaptor.getValue());
+        verify(this.mockedSnapshotFactory, times(2)).create(anyCollection());
+        verify(this.mockedSnapshotFactory, times(1)).create(geometriesEqualTo(
+                this.findIndexedGeometry(givenFirstGeometry), this.findIndexedGeometry(givenSecondGeometry)
+        ));
+        verify(this.mockedSnapshotFactory, times(1)).create(geometriesEqualTo(
+                this.findIndexedGeometry(givenUpdatedSecondGeometry), this.findIndexedGeometry(givenThirdGeometry)
+        ));
+        verify(this.mockedMileageService, times(2)).setCitiesGeometriesSnapshot(any());
+    }
+
+    @Test
+    public void loadedCitiesShouldBeReplacedByFullChanges() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+        this.executeTasksInCallingThread();
+
+        final PreparedGeometryWithBoundingBox givenFirstGeometry = this.createGeometryWithBoundingBox();
+        final PreparedGeometryWithBoundingBox givenSecondGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(5, Map.of(255L, givenFirstGeometry), Set.of(), true));
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(5))
+                .thenReturn(new CitiesGeometriesChanges(8, Map.of(256L, givenSecondGeometry), Set.of(), true));
+
+        givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+        givenLoader.reloadBySchedule();
+
+        verify(this.mockedSnapshotFactory, times(1)).create(geometriesEqualTo(
+                this.findIndexedGeometry(givenSecondGeometry)
+        ));
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void cityGeometriesShouldNotBeLoaded() {
         final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(false);
 
         givenLoader.injectCitiesGeometriesAndBoundingBoxes();
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
+        givenLoader.reloadBySchedule();
 
-        verify(this.mockedCityService, times(0))
-                .findPreparedGeometriesByPreparedBoundingBoxes();
+        verify(this.mockedCityService, times(0)).findPreparedGeometriesChangedSinceVersion(anyLong());
         verify(this.mockedMileageService, times(0))
-                .setCitiesGeometriesByBoundingBoxes(any(Map.class));
+                .setCitiesGeometriesSnapshot(any(CitiesGeometriesSnapshot.class));
+        verifyNoInteractions(this.mockedExecutorService);
+    }
+
+    @Test
+    public void requestsOfReloadingShouldBeHandledByOneReloading() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
+        givenLoader.reloadBySchedule();
+
+        verify(this.mockedExecutorService, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void cityGeometriesShouldBeReloadedInBackground() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+        this.executeTasksInCallingThread();
+
+        final PreparedGeometryWithBoundingBox givenGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(5, Map.of(255L, givenGeometry), Set.of(), true));
+
+        final CitiesGeometriesSnapshot givenSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        when(this.mockedSnapshotFactory.create(anyCollection())).thenReturn(givenSnapshot);
+
+        givenLoader.onCitiesChanged(new CitiesChangedEvent(this));
+
+        verify(this.mockedExecutorService, times(1)).execute(any(Runnable.class));
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(givenSnapshot);
+    }
+
+    @Test
+    public void failedReloadingShouldBeRepeatedWithTheSameChanges() {
+        final LoaderCitiesGeometriesAndBoundingBoxes givenLoader = this.createLoader(true);
+        this.executeTasksInCallingThread();
+
+        final PreparedGeometryWithBoundingBox givenGeometry = this.createGeometryWithBoundingBox();
+        when(this.mockedCityService.findPreparedGeometriesChangedSinceVersion(0))
+                .thenReturn(new CitiesGeometriesChanges(5, Map.of(255L, givenGeometry), Set.of(), true));
+        when(this.mockedSnapshotFactory.create(anyCollection()))
+                .thenThrow(IllegalStateException.class)
+                .thenReturn(new CitiesGeometriesSnapshot(null, null, null));
+
+        givenLoader.reloadBySchedule();
+        givenLoader.reloadBySchedule();
+
+        verify(this.mockedCityService, times(2)).findPreparedGeometriesChangedSinceVersion(0);
+        verify(this.mockedMileageService, times(1)).setCitiesGeometriesSnapshot(any());
+    }
+
+    private void executeTasksInCallingThread() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(this.mockedExecutorService).execute(any(Runnable.class));
+    }
+
+    private PreparedGeometryWithBoundingBox createGeometryWithBoundingBox() {
+        final PreparedGeometryWithBoundingBox geometry = new PreparedGeometryWithBoundingBox(
+                mock(PreparedGeometry.class), mock(PreparedGeometry.class)
+        );
+        final IndexedCityGeometry indexedGeometry = mock(IndexedCityGeometry.class);
+        lenient().when(this.mockedIndexedCityGeometryFactory.create(geometry)).thenReturn(indexedGeometry);
+        this.indexedGeometriesBySourceGeometries.put(geometry, indexedGeometry);
+        return geometry;
+    }
+
+    private IndexedCityGeometry findIndexedGeometry(PreparedGeometryWithBoundingBox geometry) {
+        return this.indexedGeometriesBySourceGeometries.get(geometry);
+    }
+
+    private static Collection<IndexedCityGeometry> geometriesEqualTo(IndexedCityGeometry... expected) {
+        return argThat(actual -> Set.copyOf(actual).equals(Set.of(expected)));
     }
 
     private LoaderCitiesGeometriesAndBoundingBoxes createLoader(boolean cityGeometriesShouldBeLoaded) {
         return new LoaderCitiesGeometriesAndBoundingBoxes(
                 this.mockedMileageService,
                 this.mockedCityService,
+                this.mockedSnapshotFactory,
+                this.mockedSnapshotStorage,
+                this.mockedIndexedCityGeometryFactory,
+                this.mockedExecutorService,
                 cityGeometriesShouldBeLoaded
         );
     }
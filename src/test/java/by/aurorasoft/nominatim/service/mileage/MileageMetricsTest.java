@@ -0,0 +1,123 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static by.aurorasoft.nominatim.service.mileage.MileageMetrics.*;
+import static by.aurorasoft.nominatim.service.mileage.MileagePhase.*;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+
+public final class MileageMetricsTest {
+    private static final double ALLOWABLE_INACCURACY = 0.00001;
+
+    private MeterRegistry meterRegistry;
+    private MileageMetrics metrics;
+
+    @Before
+    public void initializeMetrics() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.metrics = new MileageMetrics(this.meterRegistry);
+    }
+
+    @Test
+    public void durationsOfExecutedPhasesShouldBeRecorded() {
+        final MileageStatistics givenStatistics = new MileageStatistics();
+        givenStatistics.addPhase(TRACK_FILTERING, 100, 10);
+        givenStatistics.addPhase(POINTS_CLASSIFICATION, 200, 20);
+        givenStatistics.addPhase(POINTS_CLASSIFICATION, 300, 30);
+
+        this.metrics.record(givenStatistics);
+
+        final Timer actualFilteringTimer = this.findDurationTimer(TRACK_FILTERING);
+        assertEquals(1, actualFilteringTimer.count());
+        assertEquals(100, actualFilteringTimer.totalTime(NANOSECONDS), ALLOWABLE_INACCURACY);
+
+        final Timer actualClassificationTimer = this.findDurationTimer(POINTS_CLASSIFICATION);
+        assertEquals(1, actualClassificationTimer.count());
+        assertEquals(500, actualClassificationTimer.totalTime(NANOSECONDS), ALLOWABLE_INACCURACY);
+
+        assertEquals(0, this.findDurationTimer(DATABASE_QUERY).count());
+    }
+
+    @Test
+    public void elapsedTimeOfComputingShouldBeRecordedSeparatelyFromSummedDurationsOfPhases() {
+        final MileageStatistics givenFirstStatistics = new MileageStatistics();
+        givenFirstStatistics.addPhase(POINTS_CLASSIFICATION, 200, 20);
+        final MileageStatistics givenSecondStatistics = new MileageStatistics();
+        givenSecondStatistics.addPhase(POINTS_CLASSIFICATION, 300, 30);
+        final MileageStatistics givenStatistics = new MileageStatistics();
+        givenStatistics.setComputingDurationNanos(350);
+
+        this.metrics.record(givenStatistics.combine(givenFirstStatistics).combine(givenSecondStatistics));
+
+        final Timer actualComputingTimer = this.meterRegistry.get(METER_NAME_COMPUTING_DURATION).timer();
+        assertEquals(1, actualComputingTimer.count());
+        assertEquals(350, actualComputingTimer.totalTime(NANOSECONDS), ALLOWABLE_INACCURACY);
+        assertEquals(500, this.findDurationTimer(POINTS_CLASSIFICATION).totalTime(NANOSECONDS), ALLOWABLE_INACCURACY);
+    }
+
+    @Test
+    public void amountsOfRequestShouldBeRecorded() {
+        final MileageStatistics givenStatistics = new MileageStatistics();
+        givenStatistics.setAmountOfPoints(1000);
+        givenStatistics.setAmountOfFilteredPoints(100);
+        givenStatistics.setAmountOfConsideredCities(3);
+        givenStatistics.addGeometriesTests(400);
+        givenStatistics.addGeometriesTests(500);
+
+        this.metrics.record(givenStatistics);
+
+        assertEquals(1000, this.findSummary(METER_NAME_POINTS).totalAmount(), ALLOWABLE_INACCURACY);
+        assertEquals(100, this.findSummary(METER_NAME_FILTERED_POINTS).totalAmount(), ALLOWABLE_INACCURACY);
+        assertEquals(3, this.findSummary(METER_NAME_CONSIDERED_CITIES).totalAmount(), ALLOWABLE_INACCURACY);
+        assertEquals(900, this.findSummary(METER_NAME_GEOMETRIES_TESTS).totalAmount(), ALLOWABLE_INACCURACY);
+    }
+
+    @Test
+    public void notDefinedAmountsOfRequestShouldNotBeRecorded() {
+        final MileageStatistics givenStatistics = new MileageStatistics();
+        givenStatistics.setAmountOfPoints(1000);
+
+        this.metrics.record(givenStatistics);
+
+        assertEquals(1, this.findSummary(METER_NAME_POINTS).count());
+        assertEquals(0, this.findSummary(METER_NAME_FILTERED_POINTS).count());
+        assertEquals(0, this.findSummary(METER_NAME_CONSIDERED_CITIES).count());
+    }
+
+    @Test
+    public void statisticsOfChunksShouldBeCombined() {
+        final MileageStatistics givenFirstStatistics = new MileageStatistics();
+        givenFirstStatistics.addPhase(DISTANCES_SUMMATION, 100, 10);
+        givenFirstStatistics.addGeometriesTests(5);
+        givenFirstStatistics.addClassifiedPoints(3, 4);
+        final MileageStatistics givenSecondStatistics = new MileageStatistics();
+        givenSecondStatistics.addPhase(DISTANCES_SUMMATION, 200, 20);
+        givenSecondStatistics.addGeometriesTests(6);
+        givenSecondStatistics.addClassifiedPoints(5, 6);
+
+        this.metrics.record(givenFirstStatistics.combine(givenSecondStatistics));
+
+        final Timer actualTimer = this.findDurationTimer(DISTANCES_SUMMATION);
+        assertEquals(1, actualTimer.count());
+        assertEquals(300, actualTimer.totalTime(NANOSECONDS), ALLOWABLE_INACCURACY);
+        assertEquals(11, this.findSummary(METER_NAME_GEOMETRIES_TESTS).totalAmount(), ALLOWABLE_INACCURACY);
+        assertEquals(8, this.findSummary(METER_NAME_URBAN_POINTS).totalAmount(), ALLOWABLE_INACCURACY);
+        assertEquals(10, this.findSummary(METER_NAME_COUNTRY_POINTS).totalAmount(), ALLOWABLE_INACCURACY);
+    }
+
+    private Timer findDurationTimer(MileagePhase phase) {
+        return this.meterRegistry.get(METER_NAME_PHASE_DURATION)
+                .tag(TAG_KEY_PHASE, findTagValue(phase))
+                .timer();
+    }
+
+    private DistributionSummary findSummary(String name) {
+        return this.meterRegistry.get(name).summary();
+    }
+}
@@ -5,6 +5,7 @@ import by.aurorasoft.nominatim.crud.service.CityService;
 import by.aurorasoft.nominatim.rest.model.MileageRequest;
 import by.aurorasoft.nominatim.rest.model.MileageRequest.TrackPoint;
 import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshotFactory;
 import by.nhorushko.distancecalculator.*;
 import com.opencsv.CSVReader;
 import org.junit.After;
@@ -30,7 +31,7 @@ import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 
 public final class MileageServiceIT extends AbstractContextTest {
-    private static final String FIELD_NAME_CITIES_GEOMETRIES_BY_BOUNDING_BOX = "citiesGeometriesByBoundingBoxes";
+    private static final String FIELD_NAME_CITIES_GEOMETRIES_SNAPSHOT = "citiesGeometriesSnapshot";
 
     private static final String FOLDER_PATH_WITH_TRACK_POINTS = "./src/test/resources/tracks";
     private static final String SLASH = "/";
@@ -59,6 +60,9 @@ public final class MileageServiceIT extends AbstractContextTest {
     @Autowired
     private CityService cityService;
 
+    @Autowired
+    private CitiesGeometriesSnapshotFactory citiesGeometriesSnapshotFactory;
+
     private final TrackPointFactory trackPointFactory;
 
     public MileageServiceIT() {
@@ -66,9 +70,9 @@ public final class MileageServiceIT extends AbstractContextTest {
     }
 
     @After
-    public void setCitiesGeometriesByBoundingBoxesAsNull()
+    public void setCitiesGeometriesSnapshotAsNull()
             throws Exception {
-        final Field field = MileageService.class.getDeclaredField(FIELD_NAME_CITIES_GEOMETRIES_BY_BOUNDING_BOX);
+        final Field field = MileageService.class.getDeclaredField(FIELD_NAME_CITIES_GEOMETRIES_SNAPSHOT);
         field.setAccessible(true);
         try {
             field.set(this.mileageService, null);
@@ -877,7 +881,8 @@ public final class MileageServiceIT extends AbstractContextTest {
     private void loadCitiesBoundingBoxesAndGeometries() {
         final Map<PreparedGeometry, PreparedGeometry> geometriesByBoundingBoxes = this.cityService
                 .findPreparedGeometriesByPreparedBoundingBoxes();
-        this.mileageService.setCitiesGeometriesByBoundingBoxes(geometriesByBoundingBoxes);
+        this.mileageService.setCitiesGeometriesSnapshot(
+                this.citiesGeometriesSnapshotFactory.create(geometriesByBoundingBoxes));
     }
 
     private static TrackPoint createTrackPoint(float latitude, float longitude) {
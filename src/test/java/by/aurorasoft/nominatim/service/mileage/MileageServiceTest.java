@@ -0,0 +1,300 @@
+package by.aurorasoft.nominatim.service.mileage;
+
+import by.aurorasoft.nominatim.crud.model.dto.Track;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.rest.model.MileageResponse;
+import by.aurorasoft.nominatim.service.factory.TrackFactory;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesSnapshot;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesTilesCache;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesPreparedGeometriesCache;
+import by.nhorushko.distancecalculator.DistanceCalculator;
+import by.nhorushko.distancecalculator.DistanceCalculatorSettings;
+import by.nhorushko.distancecalculator.LatLngAlt;
+import by.nhorushko.trackfilter.TrackFilter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.POINT;
+import static by.aurorasoft.nominatim.service.mileage.MileageEngine.JVM;
+import static by.aurorasoft.nominatim.service.mileage.MileageEngine.POSTGIS;
+import static by.aurorasoft.nominatim.service.mileage.MileagePhase.*;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.util.List.of;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.junit.Assert.*;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class MileageServiceTest {
+    private static final int POOL_PARALLELISM = 4;
+    private static final int AMOUNT_OF_TRACK_POINTS = 1000;
+    private static final int POINTS_IN_CHUNK = 7;
+    private static final int POINTS_IN_QUERY_OF_POSTGIS_ENGINE = 300;
+
+    private static final String RECORDING_FILE_PREFIX = "mileage";
+    private static final String RECORDING_FILE_SUFFIX = ".jfr";
+
+    @Mock
+    private TrackFilter mockedTrackFilter;
+
+    @Mock
+    private DistanceCalculator mockedDistanceCalculator;
+
+    @Mock
+    private CitiesPreparedGeometriesCache mockedCitiesPreparedGeometriesCache;
+
+    @Mock
+    private CitiesGeometriesTilesCache mockedCitiesGeometriesTilesCache;
+
+    @Mock
+    private CityService mockedCityService;
+
+    @Mock
+    private DistanceCalculatorSettings mockedDistanceCalculatorSettings;
+
+    @Mock
+    private MileageMetrics mockedMetrics;
+
+    @Captor
+    private ArgumentCaptor<MileageStatistics> statisticsArgumentCaptor;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private ForkJoinPool forkJoinPool;
+
+    @Before
+    public void createPool() {
+        this.forkJoinPool = new ForkJoinPool(POOL_PARALLELISM);
+    }
+
+    @After
+    public void shutdownPool() {
+        this.forkJoinPool.shutdown();
+    }
+
+    @Test
+    public void mileageOfLongTrackShouldBeFoundInParallelAsSequentially()
+            throws ParseException {
+        //distance of slice is index of its second point
+        when(this.mockedDistanceCalculator.calculateDistance(any(LatLngAlt.class), any(LatLngAlt.class),
+                any(DistanceCalculatorSettings.class)))
+                .thenAnswer(invocation -> (double) invocation.<LatLngAlt>getArgument(1).getAltitude());
+        final Track givenTrack = createTrack();
+
+        final MileageResponse actualInParallel = this.createService(AMOUNT_OF_TRACK_POINTS)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings);
+        final MileageResponse actualSequentially = this.createService(AMOUNT_OF_TRACK_POINTS + 1)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings);
+
+        final MileageResponse expected = findExpectedMileage();
+        assertEquals(expected, actualInParallel);
+        assertEquals(expected, actualSequentially);
+    }
+
+    @Test
+    public void mileageShouldBeFoundByPostgisEngine()
+            throws ParseException {
+        when(this.mockedDistanceCalculator.calculateDistance(any(LatLngAlt.class), any(LatLngAlt.class),
+                any(DistanceCalculatorSettings.class)))
+                .thenAnswer(invocation -> (double) invocation.<LatLngAlt>getArgument(1).getAltitude());
+        when(this.mockedCityService.findNumbersOfPointsLocatedInCities(any(MultiPoint.class)))
+                .thenAnswer(invocation -> findNumbersOfPointsLocatedInCity(invocation.getArgument(0)));
+        final Track givenTrack = createTrack();
+
+        final MileageResponse actualInParallel = this.createService(AMOUNT_OF_TRACK_POINTS)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings, POSTGIS);
+        final MileageResponse actualSequentially = this.createService(AMOUNT_OF_TRACK_POINTS + 1)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings, POSTGIS);
+
+        final MileageResponse expected = findExpectedMileage();
+        assertEquals(expected, actualInParallel);
+        assertEquals(expected, actualSequentially);
+        verify(this.mockedCityService, times(8)).findNumbersOfPointsLocatedInCities(any(MultiPoint.class));
+    }
+
+    @Test
+    public void mileageOfEmptyTrackShouldBeZero()
+            throws ParseException {
+        final Track givenTrack = Track.builder().build();
+
+        final MileageResponse actual = this.createService(AMOUNT_OF_TRACK_POINTS)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings);
+
+        assertEquals(new MileageResponse(0, 0), actual);
+        verifyNoInteractions(this.mockedDistanceCalculator);
+    }
+
+    @Test
+    public void mileageOfTrackWithOnePointShouldBeZero()
+            throws ParseException {
+        final Track givenTrack = Track.builder()
+                .point(0.5F, 0.5F, 0, 0, 0, true)
+                .build();
+
+        final MileageResponse actual = this.createService(AMOUNT_OF_TRACK_POINTS)
+                .findMileage(givenTrack, this.mockedDistanceCalculatorSettings, POSTGIS);
+
+        assertEquals(new MileageResponse(0, 0), actual);
+        verifyNoInteractions(this.mockedDistanceCalculator, this.mockedCityService);
+    }
+
+    @Test
+    public void statisticsOfMileageShouldBeRecorded()
+            throws ParseException {
+        final Track givenTrack = createTrack();
+
+        this.createService(AMOUNT_OF_TRACK_POINTS).findMileage(givenTrack, this.mockedDistanceCalculatorSettings);
+
+        verify(this.mockedMetrics, times(1)).record(this.statisticsArgumentCaptor.capture());
+        final MileageStatistics actual = this.statisticsArgumentCaptor.getValue();
+        assertEquals(AMOUNT_OF_TRACK_POINTS, actual.getAmountOfPoints());
+        assertEquals(OptionalInt.of(1), actual.findAmountOfConsideredCities());
+        assertTrue(actual.findAmountOfFilteredPoints().isEmpty());
+        assertEquals(AMOUNT_OF_TRACK_POINTS - 1, actual.getAmountOfGeometriesTests());
+        assertEquals(AMOUNT_OF_TRACK_POINTS / 2, actual.getAmountOfUrbanPoints());
+        assertEquals(AMOUNT_OF_TRACK_POINTS / 2 - 1, actual.getAmountOfCountryPoints());
+        assertTrue(actual.getComputingDurationNanos() > 0);
+        assertTrue(actual.isExecuted(POINTS_CLASSIFICATION));
+        assertTrue(actual.isExecuted(DISTANCES_SUMMATION));
+        assertFalse(actual.isExecuted(TRACK_FILTERING));
+        assertFalse(actual.isExecuted(DATABASE_QUERY));
+    }
+
+    @Test
+    public void eventOfMileageShouldBeRecorded()
+            throws Exception {
+        final Track givenTrack = createTrack();
+
+        final Path recordingFilePath = createTempFile(RECORDING_FILE_PREFIX, RECORDING_FILE_SUFFIX);
+        try (final Recording recording = new Recording()) {
+            recording.enable(MileageEvent.class);
+            recording.start();
+            this.createService(AMOUNT_OF_TRACK_POINTS).findMileage(givenTrack, this.mockedDistanceCalculatorSettings);
+            recording.stop();
+            recording.dump(recordingFilePath);
+
+            final List<RecordedEvent> actual = RecordingFile.readAllEvents(recordingFilePath);
+            assertEquals(1, actual.size());
+            final RecordedEvent actualEvent = actual.get(0);
+            assertEquals(JVM.name(), actualEvent.getString("engine"));
+            assertEquals(POINT.name(), actualEvent.getString("classificationMode"));
+            assertEquals(AMOUNT_OF_TRACK_POINTS, actualEvent.getInt("amountOfPoints"));
+            assertEquals(-1, actualEvent.getInt("amountOfFilteredPoints"));
+            assertEquals(1, actualEvent.getInt("amountOfConsideredCities"));
+            assertEquals(AMOUNT_OF_TRACK_POINTS - 1, actualEvent.getLong("amountOfGeometriesTests"));
+            assertEquals(AMOUNT_OF_TRACK_POINTS / 2, actualEvent.getInt("amountOfUrbanPoints"));
+            assertEquals(AMOUNT_OF_TRACK_POINTS / 2 - 1, actualEvent.getInt("amountOfCountryPoints"));
+            assertTrue(actualEvent.getBoolean("succeeded"));
+        } finally {
+            deleteIfExists(recordingFilePath);
+        }
+    }
+
+    @Test
+    public void eventOfFailedMileageShouldBeRecorded()
+            throws Exception {
+        when(this.mockedDistanceCalculator.calculateDistance(any(LatLngAlt.class), any(LatLngAlt.class),
+                any(DistanceCalculatorSettings.class)))
+                .thenThrow(IllegalStateException.class);
+        final Track givenTrack = createTrack();
+        final MileageService givenService = this.createService(AMOUNT_OF_TRACK_POINTS + 1);
+
+        final Path recordingFilePath = createTempFile(RECORDING_FILE_PREFIX, RECORDING_FILE_SUFFIX);
+        try (final Recording recording = new Recording()) {
+            recording.enable(MileageEvent.class);
+            recording.start();
+            assertThrows(IllegalStateException.class,
+                    () -> givenService.findMileage(givenTrack, this.mockedDistanceCalculatorSettings));
+            recording.stop();
+            recording.dump(recordingFilePath);
+
+            final List<RecordedEvent> actual = RecordingFile.readAllEvents(recordingFilePath);
+            assertEquals(1, actual.size());
+            assertFalse(actual.get(0).getBoolean("succeeded"));
+        } finally {
+            deleteIfExists(recordingFilePath);
+        }
+    }
+
+    private MileageService createService(int minPointsToFindMileageInParallel)
+            throws ParseException {
+        final MileageService service = new MileageService(
+                this.mockedTrackFilter,
+                this.mockedDistanceCalculator,
+                new GeometryCreatingService(this.geometryFactory),
+                this.mockedCitiesPreparedGeometriesCache,
+                this.mockedCityService,
+                this.mockedCitiesGeometriesTilesCache,
+                new TrackFactory(),
+                this.mockedMetrics,
+                POINT,
+                JVM,
+                POINTS_IN_QUERY_OF_POSTGIS_ENGINE,
+                this.forkJoinPool,
+                minPointsToFindMileageInParallel,
+                POINTS_IN_CHUNK
+        );
+        final CitiesGeometriesIndex givenIndex = CitiesGeometriesIndex.createByGeometries(of(
+                prepare(new WKTReader(this.geometryFactory).read("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))"))
+        ));
+        service.setCitiesGeometriesSnapshot(new CitiesGeometriesSnapshot(givenIndex, null, null));
+        return service;
+    }
+
+    //points with odd indexes are located in city
+    private static Track createTrack() {
+        final float[] latitudes = new float[AMOUNT_OF_TRACK_POINTS];
+        final float[] longitudes = new float[AMOUNT_OF_TRACK_POINTS];
+        final int[] altitudes = new int[AMOUNT_OF_TRACK_POINTS];
+        for (int i = 0; i < AMOUNT_OF_TRACK_POINTS; i++) {
+            latitudes[i] = i % 2 == 1 ? 0.5F : 2F;
+            longitudes[i] = 0.5F;
+            altitudes[i] = i;
+        }
+        return new Track(latitudes, longitudes, altitudes, new int[AMOUNT_OF_TRACK_POINTS],
+                new long[AMOUNT_OF_TRACK_POINTS], new BitSet());
+    }
+
+    private static List<Integer> findNumbersOfPointsLocatedInCity(MultiPoint points) {
+        return range(0, points.getNumGeometries())
+                .filter(i -> points.getGeometryN(i).getCoordinate().getY() < 1)
+                .mapToObj(i -> i + 1)
+                .collect(toList());
+    }
+
+    private static MileageResponse findExpectedMileage() {
+        double urban = 0;
+        double country = 0;
+        for (int i = 1; i < AMOUNT_OF_TRACK_POINTS; i++) {
+            if (i % 2 == 1) {
+                urban += i;
+            } else {
+                country += i;
+            }
+        }
+        return new MileageResponse(urban, country);
+    }
+}
@@ -0,0 +1,64 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.*;
+import java.util.List;
+
+import static by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell.*;
+import static org.junit.Assert.assertEquals;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class CitiesCellCoveringFactoryTest {
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final WKTReader wktReader = new WKTReader(this.geometryFactory);
+
+    @Test
+    public void coveringShouldBeCreated()
+            throws ParseException {
+        final CitiesCellCovering actual = this.createCovering();
+
+        assertEquals(INSIDE, actual.findCell(53.9F, 27.5F));
+        assertEquals(INSIDE, actual.findCell(52.2F, 23.8F));
+        assertEquals(BOUNDARY, actual.findCell(53.5F, 27.5F));
+        assertEquals(BOUNDARY, actual.findCell(53.9F, 27.001F));
+        assertEquals(OUTSIDE, actual.findCell(53.1F, 27.5F));
+        assertEquals(OUTSIDE, actual.findCell(-53.9F, -27.5F));
+    }
+
+    @Test
+    public void coveringShouldBeWrittenAndRead()
+            throws ParseException, IOException {
+        final CitiesCellCovering givenCovering = this.createCovering();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        givenCovering.writeTo(new DataOutputStream(outputStream));
+        final CitiesCellCovering actual = CitiesCellCovering.readFrom(
+                new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray())));
+
+        assertEquals(givenCovering.findAmountOfCells(), actual.findAmountOfCells());
+        assertEquals(INSIDE, actual.findCell(53.9F, 27.5F));
+        assertEquals(BOUNDARY, actual.findCell(53.5F, 27.5F));
+        assertEquals(OUTSIDE, actual.findCell(53.1F, 27.5F));
+    }
+
+    private CitiesCellCovering createCovering()
+            throws ParseException {
+        final CitiesCellCoveringFactory givenFactory = new CitiesCellCoveringFactory(this.geometryFactory, 12);
+        final List<PreparedGeometry> givenGeometries = List.of(
+                this.createPreparedGeometry("POLYGON((27 53.5, 27 54.5, 28 54.5, 28 53.5, 27 53.5))"),
+                this.createPreparedGeometry("POLYGON((27.2 53.7, 27.2 54.2, 27.8 54.2, 27.8 53.7, 27.2 53.7))"),
+                this.createPreparedGeometry("POLYGON((23.5 52, 24 52, 24 52.5, 23.5 52, 23.5 52))")
+        );
+        return givenFactory.create(givenGeometries);
+    }
+
+    private PreparedGeometry createPreparedGeometry(String wkt)
+            throws ParseException {
+        return prepare(this.wktReader.read(wkt));
+    }
+}
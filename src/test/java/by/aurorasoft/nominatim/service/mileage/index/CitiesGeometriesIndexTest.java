@@ -0,0 +1,100 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class CitiesGeometriesIndexTest {
+    private final WKTReader wktReader = new WKTReader(new GeometryFactory());
+
+    @Test
+    public void geometriesWhoseBoundingBoxIntersectedByLineStringShouldBeFound()
+            throws ParseException {
+        final PreparedGeometry givenFirstGeometry = this.createPreparedGeometry(
+                "POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))");
+        final PreparedGeometry givenSecondGeometry = this.createPreparedGeometry(
+                "POLYGON((3 3, 4 3, 4 4, 3 3))");
+        final PreparedGeometry givenThirdGeometry = this.createPreparedGeometry(
+                "POLYGON((5 5, 5 6, 6 6, 6 5, 5 5))");
+        final CitiesGeometriesIndex givenIndex = new CitiesGeometriesIndex(Map.of(
+                this.createPreparedGeometry("POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))"), givenFirstGeometry,
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 4, 3 3))"), givenSecondGeometry,
+                this.createPreparedGeometry("POLYGON((5 5, 5 6, 6 6, 6 5, 5 5))"), givenThirdGeometry
+        ));
+        final LineString givenLineString = (LineString) this.wktReader.read("LINESTRING(1.5 1.5, 3.5 3.5)");
+
+        final List<PreparedGeometry> actual = givenIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                givenLineString);
+        assertEquals(2, actual.size());
+        assertTrue(actual.contains(givenFirstGeometry));
+        assertTrue(actual.contains(givenSecondGeometry));
+    }
+
+    @Test
+    public void geometriesShouldNotBeFoundIfOnlyEnvelopeOfBoundingBoxIsIntersected()
+            throws ParseException {
+        final CitiesGeometriesIndex givenIndex = new CitiesGeometriesIndex(Map.of(
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))"),
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))")
+        ));
+        final Geometry givenPoint = this.wktReader.read("POINT(3.1 3.9)");
+
+        final List<PreparedGeometry> actual = givenIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                givenPoint);
+        assertEquals(emptyList(), actual);
+    }
+
+    @Test
+    public void geometriesShouldNotBeFoundInEmptyIndex()
+            throws ParseException {
+        final CitiesGeometriesIndex givenIndex = new CitiesGeometriesIndex(Map.of());
+        final Geometry givenPoint = this.wktReader.read("POINT(3.1 3.9)");
+
+        final List<PreparedGeometry> actual = givenIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                givenPoint);
+        assertEquals(emptyList(), actual);
+    }
+
+    @Test
+    public void pointShouldBeContainedByAnyGeometry()
+            throws ParseException {
+        final CitiesGeometriesIndex givenIndex = CitiesGeometriesIndex.createByGeometries(List.of(
+                this.createPreparedGeometry("POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))"),
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))")
+        ));
+        final Point givenPoint = (Point) this.wktReader.read("POINT(3.9 3.1)");
+
+        assertTrue(givenIndex.isAnyGeometryContainPoint(givenPoint));
+    }
+
+    @Test
+    public void pointShouldNotBeContainedByAnyGeometryIfOnlyBoundingBoxContainsIt()
+            throws ParseException {
+        final CitiesGeometriesIndex givenIndex = new CitiesGeometriesIndex(Map.of(
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 4, 3 3))"),
+                this.createPreparedGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))")
+        ));
+        final Point givenPoint = (Point) this.wktReader.read("POINT(3.1 3.9)");
+
+        assertFalse(givenIndex.isAnyGeometryContainPoint(givenPoint));
+    }
+
+    private PreparedGeometry createPreparedGeometry(String wkt)
+            throws ParseException {
+        return prepare(this.wktReader.read(wkt));
+    }
+}
@@ -0,0 +1,66 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Map;
+
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.CELL_COVERING;
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.LINE_STRING;
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.RASTER_MASK;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CitiesGeometriesSnapshotFactoryTest {
+
+    @Mock
+    private CitiesRasterMaskFactory mockedRasterMaskFactory;
+
+    @Mock
+    private CitiesCellCoveringFactory mockedCellCoveringFactory;
+
+    @Test
+    public void snapshotWithOnlyIndexShouldBeCreated() {
+        final CitiesGeometriesSnapshotFactory givenFactory = new CitiesGeometriesSnapshotFactory(
+                this.mockedRasterMaskFactory, this.mockedCellCoveringFactory, LINE_STRING);
+
+        final CitiesGeometriesSnapshot actual = givenFactory.create(Map.of());
+        assertNotNull(actual.getIndex());
+        assertNull(actual.getRasterMask());
+        assertNull(actual.getCellCovering());
+        verifyNoInteractions(this.mockedRasterMaskFactory, this.mockedCellCoveringFactory);
+    }
+
+    @Test
+    public void snapshotWithRasterMaskShouldBeCreated() {
+        final CitiesGeometriesSnapshotFactory givenFactory = new CitiesGeometriesSnapshotFactory(
+                this.mockedRasterMaskFactory, this.mockedCellCoveringFactory, RASTER_MASK);
+        final Map<PreparedGeometry, PreparedGeometry> givenGeometriesByBoundingBoxes = Map.of();
+
+        final CitiesRasterMask givenMask = mock(CitiesRasterMask.class);
+        when(this.mockedRasterMaskFactory.create(anyCollection())).thenReturn(givenMask);
+
+        final CitiesGeometriesSnapshot actual = givenFactory.create(givenGeometriesByBoundingBoxes);
+        assertSame(givenMask, actual.getRasterMask());
+        assertNull(actual.getCellCovering());
+    }
+
+    @Test
+    public void snapshotWithCellCoveringShouldBeCreated() {
+        final CitiesGeometriesSnapshotFactory givenFactory = new CitiesGeometriesSnapshotFactory(
+                this.mockedRasterMaskFactory, this.mockedCellCoveringFactory, CELL_COVERING);
+        final Map<PreparedGeometry, PreparedGeometry> givenGeometriesByBoundingBoxes = Map.of();
+
+        final CitiesCellCovering givenCovering = mock(CitiesCellCovering.class);
+        when(this.mockedCellCoveringFactory.create(anyCollection())).thenReturn(givenCovering);
+
+        final CitiesGeometriesSnapshot actual = givenFactory.create(givenGeometriesByBoundingBoxes);
+        assertNull(actual.getRasterMask());
+        assertSame(givenCovering, actual.getCellCovering());
+    }
+}
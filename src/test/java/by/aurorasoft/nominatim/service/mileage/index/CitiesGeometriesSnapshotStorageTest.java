@@ -0,0 +1,188 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.ClassificationMode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Optional;
+
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.CELL_COVERING;
+import static by.aurorasoft.nominatim.service.mileage.ClassificationMode.RASTER_MASK;
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.HEAP;
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.OFF_HEAP;
+import static by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell.INSIDE;
+import static org.junit.Assert.*;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CitiesGeometriesSnapshotStorageTest {
+    private static final int SRID = 4326;
+    private static final long GIVEN_MAX_CACHED_POINTS = 1000;
+    private static final String GIVEN_DATABASE_ID = "database-id";
+    private static final double GIVEN_RASTER_MASK_CELL_SIZE = 0.01;
+    private static final int GIVEN_CELL_COVERING_MAX_LEVEL = 18;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), SRID);
+
+    @Mock
+    private CitiesGeometriesSnapshotFactory mockedSnapshotFactory;
+
+    @Test
+    public void snapshotShouldBeWrittenAndRead()
+            throws Exception {
+        final CitiesGeometriesSnapshotStorage givenStorage = this.createStorage(true);
+
+        final IndexedCityGeometry givenGeometry = new IndexedCityGeometry(
+                this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))"),
+                this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))")
+        );
+        final CitiesRasterMask givenRasterMask = new CitiesRasterMask(
+                1, 1, 1, 1, 1, new byte[]{(byte) INSIDE.ordinal()}
+        );
+        final CitiesGeometriesSnapshot givenSnapshot = new CitiesGeometriesSnapshot(null, givenRasterMask, null);
+        givenStorage.write(GIVEN_DATABASE_ID, 5, Map.of(255L, givenGeometry), givenSnapshot);
+
+        final CitiesGeometriesSnapshot givenRestoredSnapshot = new CitiesGeometriesSnapshot(null, null, null);
+        when(this.mockedSnapshotFactory.create(anyCollection(), any(CitiesRasterMask.class), isNull()))
+                .thenReturn(givenRestoredSnapshot);
+
+        final Optional<StoredCitiesGeometriesSnapshot> optionalActual = givenStorage.read();
+        assertTrue(optionalActual.isPresent());
+        final StoredCitiesGeometriesSnapshot actual = optionalActual.get();
+        assertEquals(GIVEN_DATABASE_ID, actual.getDatabaseId());
+        assertEquals(5, actual.getVersion());
+        assertSame(givenRestoredSnapshot, actual.getSnapshot());
+
+        final IndexedCityGeometry actualGeometry = actual.getGeometriesByCitiesIds().get(255L);
+        assertEquals(givenGeometry.getGeometry().getGeometry(), actualGeometry.getGeometry().getGeometry());
+        assertEquals(givenGeometry.getBoundingBox().getGeometry(), actualGeometry.getBoundingBox().getGeometry());
+        assertEquals(SRID, actualGeometry.getGeometry().getGeometry().getSRID());
+
+        final ArgumentCaptor<CitiesRasterMask> rasterMaskCaptor = ArgumentCaptor.forClass(CitiesRasterMask.class);
+        verify(this.mockedSnapshotFactory, times(1)).create(anyCollection(), rasterMaskCaptor.capture(), isNull());
+        assertSame(INSIDE, rasterMaskCaptor.getValue().findCell(1.5F, 1.5F));
+    }
+
+    @Test
+    public void snapshotWithOffHeapGeometriesShouldBeWrittenAndRead()
+            throws Exception {
+        final CitiesGeometriesSnapshotStorage givenStorage = this.createStorage(true);
+
+        final IndexedCityGeometryFactory givenOffHeapFactory = new IndexedCityGeometryFactory(
+                this.geometryFactory, OFF_HEAP, GIVEN_MAX_CACHED_POINTS, new double[0]);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))");
+        final PreparedGeometry givenGeometry = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))");
+        givenStorage.write(
+                GIVEN_DATABASE_ID,
+                5,
+                Map.of(255L, givenOffHeapFactory.create(givenBoundingBox, givenGeometry)),
+                new CitiesGeometriesSnapshot(null, null, null)
+        );
+
+        final Optional<StoredCitiesGeometriesSnapshot> optionalActual = givenStorage.read();
+        assertTrue(optionalActual.isPresent());
+        final IndexedCityGeometry actualGeometry = optionalActual.get().getGeometriesByCitiesIds().get(255L);
+        assertEquals(givenGeometry.getGeometry(), actualGeometry.getGeometry().getGeometry());
+        assertEquals(SRID, actualGeometry.getGeometry().getGeometry().getSRID());
+    }
+
+    @Test
+    public void snapshotShouldNotBeReadIfFileDoesNotExist() {
+        final CitiesGeometriesSnapshotStorage givenStorage = this.createStorage(true);
+        assertTrue(givenStorage.read().isEmpty());
+    }
+
+    @Test
+    public void snapshotShouldNotBeReadIfFileIsCorrupted()
+            throws IOException {
+        final CitiesGeometriesSnapshotStorage givenStorage = this.createStorage(true);
+        Files.write(this.findPath().toPath(), new byte[]{0, 0, 0, 1, 0});
+        assertTrue(givenStorage.read().isEmpty());
+    }
+
+    @Test
+    public void snapshotShouldNotBeStored() {
+        final CitiesGeometriesSnapshotStorage givenStorage = this.createStorage(false);
+
+        givenStorage.write(GIVEN_DATABASE_ID, 5, Map.of(), new CitiesGeometriesSnapshot(null, null, null));
+
+        assertFalse(this.findPath().exists());
+        assertTrue(givenStorage.read().isEmpty());
+    }
+
+    @Test
+    public void snapshotWrittenWithOtherSettingsShouldNotBeRead() {
+        this.createStorage(true).write(
+                GIVEN_DATABASE_ID, 5, Map.of(), new CitiesGeometriesSnapshot(null, null, null)
+        );
+        final CitiesGeometriesSnapshotStorage givenStorageWithOtherCellSize = this.createStorage(
+                true, this.findPath().getPath(), RASTER_MASK, GIVEN_RASTER_MASK_CELL_SIZE / 2
+        );
+        final CitiesGeometriesSnapshotStorage givenStorageWithOtherMode = this.createStorage(
+                true, this.findPath().getPath(), CELL_COVERING, GIVEN_RASTER_MASK_CELL_SIZE
+        );
+
+        assertTrue(givenStorageWithOtherCellSize.read().isEmpty());
+        assertTrue(givenStorageWithOtherMode.read().isEmpty());
+        verifyNoInteractions(this.mockedSnapshotFactory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void storageShouldNotBeCreatedBecauseOfNotAbsolutePath() {
+        this.createStorage(true, "cities-geometries.snapshot", RASTER_MASK, GIVEN_RASTER_MASK_CELL_SIZE);
+    }
+
+    @Test
+    public void storageWithNotAbsolutePathShouldBeCreatedIfSnapshotShouldNotBeStored() {
+        this.createStorage(false, "cities-geometries.snapshot", RASTER_MASK, GIVEN_RASTER_MASK_CELL_SIZE);
+    }
+
+    private CitiesGeometriesSnapshotStorage createStorage(boolean snapshotShouldBeStored) {
+        return this.createStorage(
+                snapshotShouldBeStored, this.findPath().getPath(), RASTER_MASK, GIVEN_RASTER_MASK_CELL_SIZE
+        );
+    }
+
+    private CitiesGeometriesSnapshotStorage createStorage(boolean snapshotShouldBeStored, String path,
+                                                          ClassificationMode classificationMode,
+                                                          double rasterMaskCellSize) {
+        return new CitiesGeometriesSnapshotStorage(
+                this.mockedSnapshotFactory,
+                new IndexedCityGeometryFactory(this.geometryFactory, HEAP, GIVEN_MAX_CACHED_POINTS, new double[0]),
+                this.geometryFactory,
+                snapshotShouldBeStored,
+                path,
+                classificationMode,
+                rasterMaskCellSize,
+                GIVEN_CELL_COVERING_MAX_LEVEL
+        );
+    }
+
+    private File findPath() {
+        return new File(this.temporaryFolder.getRoot(), "cities-geometries.snapshot");
+    }
+
+    private PreparedGeometry createGeometry(String wkt)
+            throws ParseException {
+        return prepare(new WKTReader(this.geometryFactory).read(wkt));
+    }
+}
@@ -0,0 +1,185 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.crud.listener.CitiesChangedEvent;
+import by.aurorasoft.nominatim.crud.model.dto.PreparedGeometryWithBoundingBox;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.service.mileage.index.WeightedLruCache.Statistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.HEAP;
+import static org.junit.Assert.*;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CitiesGeometriesTilesCacheTest {
+    private static final int SRID = 4326;
+    private static final double GIVEN_TILE_SIZE = 1;
+    private static final long GIVEN_MAX_CACHED_POINTS = 1000;
+    private static final long MAX_CACHED_POINTS_TO_EVICT = 1;
+    private static final long GIVEN_MAX_CACHED_POINTS_OF_GEOMETRIES = 10;
+
+    //points of city geometry and minimal weight of tile
+    private static final long EXPECTED_WEIGHT_OF_TILE_WITH_CITY = 5;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), SRID);
+
+    @Mock
+    private CityService mockedCityService;
+
+    private PreparedGeometryWithBoundingBox givenCityGeometry;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Before
+    public void mockCities()
+            throws ParseException {
+        this.givenCityGeometry = new PreparedGeometryWithBoundingBox(
+                this.createGeometry("POLYGON((0.2 0.2, 0.8 0.2, 0.8 0.8, 0.2 0.2))"),
+                this.createGeometry("POLYGON((0.2 0.2, 0.8 0.2, 0.8 0.8, 0.2 0.8, 0.2 0.2))")
+        );
+        when(this.mockedCityService.findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class)))
+                .thenAnswer(invocation -> invocation.<Geometry>getArgument(0)
+                        .getEnvelopeInternal()
+                        .equals(new Envelope(0, 1, 0, 1)) ? Map.of(255L, this.givenCityGeometry) : Map.of());
+    }
+
+    @Test
+    public void touchedTilesShouldBeLoadedOnceAndIndexed()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(GIVEN_MAX_CACHED_POINTS);
+        final Geometry givenLineString = new WKTReader(this.geometryFactory).read("LINESTRING(0.5 0.1, 1.5 0.1)");
+
+        final CitiesGeometriesIndex firstIndex = givenCache.findIndex(givenLineString);
+        final CitiesGeometriesIndex secondIndex = givenCache.findIndex(givenLineString);
+
+        final List<PreparedGeometry> expected = List.of(this.givenCityGeometry.getGeometry());
+        final Geometry cityBoundingBox = this.givenCityGeometry.getBoundingBox().getGeometry();
+        assertEquals(expected, firstIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(cityBoundingBox));
+        assertEquals(expected, secondIndex.findGeometriesWhoseBoundingBoxIntersectedByGeometry(cityBoundingBox));
+        verify(this.mockedCityService, times(2))
+                .findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class));
+
+        final Statistics actualStatistics = givenCache.findStatistics();
+        assertEquals(2, actualStatistics.getSize());
+        assertEquals(2, actualStatistics.getAmountOfHits());
+        assertEquals(2, actualStatistics.getAmountOfMisses());
+        assertEquals(0.5, actualStatistics.findHitRatio(), 0.);
+    }
+
+    @Test
+    public void tilesNotTouchedByGeometryShouldNotBeLoaded()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(GIVEN_MAX_CACHED_POINTS);
+        final Geometry givenLineString = new WKTReader(this.geometryFactory).read("LINESTRING(0.5 0.2, 1.5 1.7)");
+
+        givenCache.findIndex(givenLineString);
+
+        verify(this.mockedCityService, times(3))
+                .findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class));
+        verify(this.mockedCityService, never()).findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                argThat(geometry -> geometry.getEnvelopeInternal().equals(new Envelope(0, 1, 1, 2))));
+    }
+
+    @Test
+    public void coldTilesShouldBeEvicted()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(MAX_CACHED_POINTS_TO_EVICT);
+        final WKTReader reader = new WKTReader(this.geometryFactory);
+
+        givenCache.findIndex(reader.read("LINESTRING(0.5 0.5, 0.6 0.6)"));
+        givenCache.findIndex(reader.read("LINESTRING(2.5 2.5, 2.6 2.6)"));
+        givenCache.findIndex(reader.read("LINESTRING(0.5 0.5, 0.6 0.6)"));
+
+        assertEquals(0, givenCache.findStatistics().getAmountOfHits());
+        assertEquals(1, givenCache.findStatistics().getSize());
+        assertEquals(2, givenCache.findStatistics().getAmountOfEvictions());
+    }
+
+    @Test
+    public void tileLoadedWhileCitiesAreChangedShouldNotBeFound()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(GIVEN_MAX_CACHED_POINTS);
+        final Geometry givenLineString = new WKTReader(this.geometryFactory).read("LINESTRING(0.5 0.5, 0.6 0.6)");
+        when(this.mockedCityService.findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class)))
+                .thenAnswer(invocation -> {
+                    givenCache.onCitiesChanged(new CitiesChangedEvent(this));
+                    return Map.of(255L, this.givenCityGeometry);
+                })
+                .thenReturn(Map.of(255L, this.givenCityGeometry));
+
+        givenCache.findIndex(givenLineString);
+        givenCache.findIndex(givenLineString);
+        givenCache.findIndex(givenLineString);
+
+        verify(this.mockedCityService, times(2))
+                .findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class));
+    }
+
+    @Test
+    public void metersOfCacheShouldBeRegistered()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(GIVEN_MAX_CACHED_POINTS);
+        final Geometry givenLineString = new WKTReader(this.geometryFactory).read("LINESTRING(0.5 0.5, 0.6 0.6)");
+
+        givenCache.findIndex(givenLineString);
+        givenCache.findIndex(givenLineString);
+
+        assertEquals(1, this.meterRegistry.get("cities.cache.size").tag("cache", "tiles").gauge().value(), 0.);
+        assertEquals(0.5, this.meterRegistry.get("cities.cache.hit.ratio").tag("cache", "tiles").gauge().value(), 0.);
+        assertEquals(0, this.meterRegistry.get("cities.cache.evictions").tag("cache", "tiles").functionCounter()
+                .count(), 0.);
+    }
+
+    @Test
+    public void tilesShouldBeClearedWhenCitiesAreChanged()
+            throws ParseException {
+        final CitiesGeometriesTilesCache givenCache = this.createCache(GIVEN_MAX_CACHED_POINTS);
+        final Geometry givenLineString = new WKTReader(this.geometryFactory).read("LINESTRING(0.5 0.5, 0.6 0.6)");
+
+        givenCache.findIndex(givenLineString);
+        givenCache.onCitiesChanged(new CitiesChangedEvent(this));
+        givenCache.findIndex(givenLineString);
+
+        verify(this.mockedCityService, times(2))
+                .findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(any(Geometry.class));
+        assertEquals(EXPECTED_WEIGHT_OF_TILE_WITH_CITY, givenCache.findStatistics().getWeight());
+    }
+
+    private CitiesGeometriesTilesCache createCache(long maxCachedPoints) {
+        return new CitiesGeometriesTilesCache(
+                this.mockedCityService,
+                new IndexedCityGeometryFactory(
+                        this.geometryFactory, HEAP, GIVEN_MAX_CACHED_POINTS_OF_GEOMETRIES, new double[0]
+                ),
+                this.geometryFactory,
+                true,
+                GIVEN_TILE_SIZE,
+                maxCachedPoints,
+                this.meterRegistry
+        );
+    }
+
+    private PreparedGeometry createGeometry(String wkt)
+            throws ParseException {
+        return prepare(new WKTReader(this.geometryFactory).read(wkt));
+    }
+}
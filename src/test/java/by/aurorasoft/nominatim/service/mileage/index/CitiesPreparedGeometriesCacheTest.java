@@ -0,0 +1,112 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.crud.model.dto.VersionedPreparedGeometry;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class CitiesPreparedGeometriesCacheTest {
+    private static final long GIVEN_MAX_CACHED_POINTS = 1000;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private CityService mockedCityService;
+
+    @Mock
+    private LineString mockedLineString;
+
+    @Test
+    public void geometriesShouldBeFetchedOnlyForNotCachedCities()
+            throws ParseException {
+        final CitiesPreparedGeometriesCache givenCache = this.createCache();
+        final VersionedPreparedGeometry givenFirstGeometry = this.createGeometry(
+                1, "POLYGON((1 1, 2 1, 2 2, 1 1))");
+        final VersionedPreparedGeometry givenSecondGeometry = this.createGeometry(
+                2, "POLYGON((3 3, 4 3, 4 4, 3 3))");
+
+        when(this.mockedCityService.findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(
+                same(this.mockedLineString)))
+                .thenReturn(Map.of(255L, 1L))
+                .thenReturn(Map.of(255L, 1L, 256L, 2L));
+        when(this.mockedCityService.findPreparedGeometriesByIds(List.of(255L)))
+                .thenReturn(Map.of(255L, givenFirstGeometry));
+        when(this.mockedCityService.findPreparedGeometriesByIds(List.of(256L)))
+                .thenReturn(Map.of(256L, givenSecondGeometry));
+
+        final List<PreparedGeometry> firstActual = givenCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(
+                this.mockedLineString);
+        final List<PreparedGeometry> secondActual = givenCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(
+                this.mockedLineString);
+
+        assertEquals(List.of(givenFirstGeometry.getGeometry()), firstActual);
+        assertEquals(Set.of(givenFirstGeometry.getGeometry(), givenSecondGeometry.getGeometry()),
+                Set.copyOf(secondActual));
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesByIds(List.of(255L));
+        verify(this.mockedCityService, times(1)).findPreparedGeometriesByIds(List.of(256L));
+
+        final double actualHitRatio = this.meterRegistry.get("cities.cache.hit.ratio")
+                .tag("cache", "prepared-geometries")
+                .gauge()
+                .value();
+        assertEquals(1. / 3, actualHitRatio, 0.);
+        final double actualSize = this.meterRegistry.get("cities.cache.size")
+                .tag("cache", "prepared-geometries")
+                .gauge()
+                .value();
+        assertEquals(2, actualSize, 0.);
+    }
+
+    @Test
+    public void geometryShouldBeFetchedAgainIfVersionIsChanged()
+            throws ParseException {
+        final CitiesPreparedGeometriesCache givenCache = this.createCache();
+        final VersionedPreparedGeometry givenOldGeometry = this.createGeometry(1, "POLYGON((1 1, 2 1, 2 2, 1 1))");
+        final VersionedPreparedGeometry givenNewGeometry = this.createGeometry(3, "POLYGON((1 1, 3 1, 3 3, 1 1))");
+
+        when(this.mockedCityService.findVersionsOfCitiesWhoseBoundingBoxIntersectedByLineString(
+                same(this.mockedLineString)))
+                .thenReturn(Map.of(255L, 1L))
+                .thenReturn(Map.of(255L, 3L));
+        when(this.mockedCityService.findPreparedGeometriesByIds(List.of(255L)))
+                .thenReturn(Map.of(255L, givenOldGeometry))
+                .thenReturn(Map.of(255L, givenNewGeometry));
+
+        givenCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(this.mockedLineString);
+        final List<PreparedGeometry> actual = givenCache.findGeometriesWhoseBoundingBoxIntersectedByLineString(
+                this.mockedLineString);
+
+        assertEquals(1, actual.size());
+        assertSame(givenNewGeometry.getGeometry(), actual.get(0));
+        verify(this.mockedCityService, times(2)).findPreparedGeometriesByIds(List.of(255L));
+    }
+
+    private CitiesPreparedGeometriesCache createCache() {
+        return new CitiesPreparedGeometriesCache(this.mockedCityService, GIVEN_MAX_CACHED_POINTS, this.meterRegistry);
+    }
+
+    private VersionedPreparedGeometry createGeometry(long version, String wkt)
+            throws ParseException {
+        return new VersionedPreparedGeometry(version, prepare(new WKTReader(this.geometryFactory).read(wkt)));
+    }
+}
@@ -0,0 +1,58 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.List;
+
+import static by.aurorasoft.nominatim.service.mileage.index.CitiesCellsMask.Cell.*;
+import static org.junit.Assert.assertEquals;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class CitiesRasterMaskFactoryTest {
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final WKTReader wktReader = new WKTReader(this.geometryFactory);
+
+    @Test
+    public void maskShouldBeCreated()
+            throws ParseException {
+        final CitiesRasterMaskFactory givenFactory = new CitiesRasterMaskFactory(
+                this.geometryFactory, 0.1, Long.MAX_VALUE);
+        final List<PreparedGeometry> givenGeometries = List.of(
+                this.createPreparedGeometry("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))"),
+                this.createPreparedGeometry("POLYGON((2 2, 3 2, 2 3, 2 2))")
+        );
+
+        final CitiesRasterMask actual = givenFactory.create(givenGeometries);
+        assertEquals(0.1, actual.getCellSize(), 0.);
+        assertEquals(INSIDE, actual.findCell(0.55F, 0.55F));
+        assertEquals(BOUNDARY, actual.findCell(0.05F, 0.55F));
+        assertEquals(BOUNDARY, actual.findCell(2.45F, 2.55F));
+        assertEquals(INSIDE, actual.findCell(2.25F, 2.25F));
+        assertEquals(OUTSIDE, actual.findCell(2.85F, 2.85F));
+        assertEquals(OUTSIDE, actual.findCell(1.55F, 1.55F));
+        assertEquals(OUTSIDE, actual.findCell(-1F, 0.5F));
+        assertEquals(OUTSIDE, actual.findCell(0.5F, 4F));
+    }
+
+    @Test
+    public void cellSizeShouldBeIncreasedToFitMemory()
+            throws ParseException {
+        final CitiesRasterMaskFactory givenFactory = new CitiesRasterMaskFactory(
+                this.geometryFactory, 0.1, 100);
+        final List<PreparedGeometry> givenGeometries = List.of(
+                this.createPreparedGeometry("POLYGON((0 0, 0 1, 1 1, 1 0, 0 0))")
+        );
+
+        final CitiesRasterMask actual = givenFactory.create(givenGeometries);
+        assertEquals(0.2, actual.getCellSize(), 0.);
+    }
+
+    private PreparedGeometry createPreparedGeometry(String wkt)
+            throws ParseException {
+        return prepare(this.wktReader.read(wkt));
+    }
+}
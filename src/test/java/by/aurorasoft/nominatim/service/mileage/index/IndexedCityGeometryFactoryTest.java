@@ -0,0 +1,175 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode;
+import org.junit.Test;
+import org.locationtech.jts.geom.CoordinateXY;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.List;
+
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.HEAP;
+import static by.aurorasoft.nominatim.service.mileage.GeometriesMemoryMode.OFF_HEAP;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class IndexedCityGeometryFactoryTest {
+    private static final int SRID = 4326;
+    private static final long GIVEN_MAX_CACHED_POINTS = 4;
+    private static final double[] GIVEN_SIMPLIFICATION_TOLERANCES = {0.001, 0.01};
+    private static final double GIVEN_RADIUS_OF_DETAILED_GEOMETRY = 1;
+    private static final int QUADRANT_SEGMENTS_OF_DETAILED_GEOMETRY = 1000;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), SRID);
+
+    @Test
+    public void heapGeometryShouldBeCreated()
+            throws ParseException {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(HEAP);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))");
+        final PreparedGeometry givenGeometry = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))");
+
+        final IndexedCityGeometry actual = givenFactory.create(givenBoundingBox, givenGeometry);
+        assertSame(givenBoundingBox, actual.getBoundingBox());
+        assertSame(givenGeometry, actual.getGeometry());
+        assertEquals(new Envelope(1, 2, 1, 2), actual.getEnvelope());
+    }
+
+    @Test
+    public void offHeapGeometryShouldBeMaterializedAndBeCached()
+            throws ParseException {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(OFF_HEAP);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))");
+        final PreparedGeometry givenGeometry = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))");
+
+        final IndexedCityGeometry actual = givenFactory.create(givenBoundingBox, givenGeometry);
+        assertSame(givenBoundingBox, actual.getBoundingBox());
+        assertEquals(new Envelope(1, 2, 1, 2), actual.getEnvelope());
+
+        final PreparedGeometry actualGeometry = actual.getGeometry();
+        assertNotSame(givenGeometry, actualGeometry);
+        assertEquals(givenGeometry.getGeometry(), actualGeometry.getGeometry());
+        assertEquals(SRID, actualGeometry.getGeometry().getSRID());
+        assertSame(actualGeometry, actual.getGeometry());
+    }
+
+    @Test
+    public void leastRecentlyUsedOffHeapGeometryShouldBeEvicted()
+            throws ParseException {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(OFF_HEAP);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((0 0, 5 0, 5 5, 0 5, 0 0))");
+        final IndexedCityGeometry givenFirstGeometry = givenFactory.create(
+                givenBoundingBox, this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))"));
+        final IndexedCityGeometry givenSecondGeometry = givenFactory.create(
+                givenBoundingBox, this.createGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))"));
+
+        final PreparedGeometry firstMaterializedGeometry = givenFirstGeometry.getGeometry();
+        final PreparedGeometry secondMaterializedGeometry = givenSecondGeometry.getGeometry();
+
+        assertSame(secondMaterializedGeometry, givenSecondGeometry.getGeometry());
+        assertNotSame(firstMaterializedGeometry, givenFirstGeometry.getGeometry());
+    }
+
+    @Test
+    public void distanceToBoundaryOfEvictedOffHeapGeometryShouldBeFound()
+            throws ParseException {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(OFF_HEAP);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((0 0, 5 0, 5 5, 0 5, 0 0))");
+        final IndexedCityGeometry givenFirstGeometry = givenFactory.create(
+                givenBoundingBox, this.createGeometry("POLYGON((1 1, 3 1, 3 3, 1 1))"));
+        final IndexedCityGeometry givenSecondGeometry = givenFactory.create(
+                givenBoundingBox, this.createGeometry("POLYGON((3 3, 4 3, 4 4, 3 3))"));
+        final Point givenPoint = this.geometryFactory.createPoint(new CoordinateXY(2, 0));
+
+        assertEquals(1, givenFirstGeometry.findDistanceToBoundary(givenPoint), 0.);
+        givenSecondGeometry.getGeometry();
+        assertEquals(1, givenFirstGeometry.findDistanceToBoundary(givenPoint), 0.);
+    }
+
+    @Test
+    public void simplifiedGeometriesShouldBeCreatedFromCoarsestAndShouldNotChangeContainment() {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(OFF_HEAP, GIVEN_SIMPLIFICATION_TOLERANCES);
+        final Geometry givenGeometry = this.geometryFactory.createPoint(new CoordinateXY(0, 0))
+                .buffer(GIVEN_RADIUS_OF_DETAILED_GEOMETRY, QUADRANT_SEGMENTS_OF_DETAILED_GEOMETRY);
+        final PreparedGeometry givenPreparedGeometry = prepare(givenGeometry);
+
+        final IndexedCityGeometry actual = givenFactory.create(prepare(givenGeometry.getEnvelope()),
+                givenPreparedGeometry);
+
+        final List<Double> actualTolerances = actual.getSimplifiedGeometries()
+                .stream()
+                .map(SimplifiedCityGeometry::getTolerance)
+                .collect(toList());
+        assertEquals(List.of(0.01, 0.001), actualTolerances);
+        for (double x = -1.1; x <= 1.1; x += 0.0123) {
+            for (double y = -1.1; y <= 1.1; y += 0.0123) {
+                final Point givenPoint = this.geometryFactory.createPoint(new CoordinateXY(x, y));
+                assertEquals(givenPreparedGeometry.contains(givenPoint), actual.containsPoint(givenPoint));
+            }
+        }
+    }
+
+    @Test
+    public void simplifiedGeometriesShouldBeCreatedOnce() {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(HEAP, GIVEN_SIMPLIFICATION_TOLERANCES);
+        final Geometry givenGeometry = this.geometryFactory.createPoint(new CoordinateXY(0, 0))
+                .buffer(GIVEN_RADIUS_OF_DETAILED_GEOMETRY, QUADRANT_SEGMENTS_OF_DETAILED_GEOMETRY);
+
+        final IndexedCityGeometry actual = givenFactory.create(prepare(givenGeometry.getEnvelope()),
+                prepare(givenGeometry));
+
+        final List<SimplifiedCityGeometry> firstSimplifiedGeometries = actual.getSimplifiedGeometries();
+        assertSame(firstSimplifiedGeometries, actual.getSimplifiedGeometries());
+    }
+
+    @Test
+    public void simplifiedOffHeapGeometriesShouldBeEvictedTogetherWithGeometry() {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(OFF_HEAP, GIVEN_SIMPLIFICATION_TOLERANCES);
+        final Geometry givenGeometry = this.geometryFactory.createPoint(new CoordinateXY(0, 0))
+                .buffer(GIVEN_RADIUS_OF_DETAILED_GEOMETRY, QUADRANT_SEGMENTS_OF_DETAILED_GEOMETRY);
+        final IndexedCityGeometry givenFirstGeometry = givenFactory.create(prepare(givenGeometry.getEnvelope()),
+                prepare(givenGeometry));
+        final IndexedCityGeometry givenSecondGeometry = givenFactory.create(prepare(givenGeometry.getEnvelope()),
+                prepare(givenGeometry));
+
+        final List<SimplifiedCityGeometry> firstSimplifiedGeometries = givenFirstGeometry.getSimplifiedGeometries();
+        assertSame(firstSimplifiedGeometries, givenFirstGeometry.getSimplifiedGeometries());
+        givenSecondGeometry.getSimplifiedGeometries();
+
+        final List<SimplifiedCityGeometry> actual = givenFirstGeometry.getSimplifiedGeometries();
+        assertNotSame(firstSimplifiedGeometries, actual);
+        assertEquals(2, actual.size());
+    }
+
+    @Test
+    public void simplifiedGeometriesShouldNotBeCreatedIfTheyAreNotCheaperThanGeometry()
+            throws ParseException {
+        final IndexedCityGeometryFactory givenFactory = this.createFactory(HEAP, GIVEN_SIMPLIFICATION_TOLERANCES);
+        final PreparedGeometry givenBoundingBox = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 2, 1 1))");
+        final PreparedGeometry givenGeometry = this.createGeometry("POLYGON((1 1, 2 1, 2 2, 1 1))");
+
+        final IndexedCityGeometry actual = givenFactory.create(givenBoundingBox, givenGeometry);
+        assertTrue(actual.getSimplifiedGeometries().isEmpty());
+    }
+
+    private IndexedCityGeometryFactory createFactory(GeometriesMemoryMode mode) {
+        return this.createFactory(mode, new double[0]);
+    }
+
+    private IndexedCityGeometryFactory createFactory(GeometriesMemoryMode mode, double[] simplificationTolerances) {
+        return new IndexedCityGeometryFactory(this.geometryFactory, mode, GIVEN_MAX_CACHED_POINTS,
+                simplificationTolerances);
+    }
+
+    private PreparedGeometry createGeometry(String wkt)
+            throws ParseException {
+        return prepare(new WKTReader(this.geometryFactory).read(wkt));
+    }
+}
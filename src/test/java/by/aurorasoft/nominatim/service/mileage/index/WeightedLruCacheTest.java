@@ -0,0 +1,127 @@
+package by.aurorasoft.nominatim.service.mileage.index;
+
+import by.aurorasoft.nominatim.service.mileage.index.WeightedLruCache.Statistics;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.junit.Assert.*;
+
+public final class WeightedLruCacheTest {
+
+    @Test
+    public void eldestValuesShouldBeEvictedByWeight() {
+        final WeightedLruCache<Integer, String> givenCache = new WeightedLruCache<>(5, String::length);
+        givenCache.put(1, "aa");
+        givenCache.put(2, "bb");
+        givenCache.getIfPresent(1);
+        givenCache.put(3, "ccc");
+
+        assertEquals("aa", givenCache.getIfPresent(1));
+        assertNull(givenCache.getIfPresent(2));
+        assertEquals("ccc", givenCache.getIfPresent(3));
+
+        final Statistics actual = givenCache.findStatistics();
+        final Statistics expected = new Statistics(2, 5, 3, 1, 1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void latestValueShouldBeKeptEvenIfItExceedsLimit() {
+        final WeightedLruCache<Integer, String> givenCache = new WeightedLruCache<>(2, String::length);
+        givenCache.put(1, "a");
+        givenCache.put(2, "bbb");
+
+        assertNull(givenCache.getIfPresent(1));
+        assertEquals("bbb", givenCache.getIfPresent(2));
+    }
+
+    @Test
+    public void valuesShouldBeBoundedByLimitsOfSegments() {
+        final WeightedLruCache<Integer, String> givenCache = new WeightedLruCache<>(4, String::length, 2);
+        range(0, 8).forEach(i -> givenCache.put(i, "a"));
+
+        final List<Integer> actualCachedKeys = range(0, 8)
+                .filter(i -> givenCache.getIfPresent(i) != null)
+                .boxed()
+                .collect(toList());
+        final List<Integer> expectedCachedKeys = List.of(4, 5, 6, 7);
+        assertEquals(expectedCachedKeys, actualCachedKeys);
+
+        final Statistics actualStatistics = givenCache.findStatistics();
+        final Statistics expectedStatistics = new Statistics(4, 4, 4, 4, 4);
+        assertEquals(expectedStatistics, actualStatistics);
+    }
+
+    @Test
+    public void valueOfOneSegmentShouldBeGotWhileOtherSegmentIsLocked()
+            throws Exception {
+        final CountDownLatch givenWeighingStartedLatch = new CountDownLatch(1);
+        final CountDownLatch givenWeighingAllowedLatch = new CountDownLatch(1);
+        final WeightedLruCache<Integer, String> givenCache = new WeightedLruCache<>(
+                4,
+                value -> {
+                    if (value.equals("blocking")) {
+                        givenWeighingStartedLatch.countDown();
+                        awaitUninterruptibly(givenWeighingAllowedLatch);
+                    }
+                    return 1;
+                },
+                2
+        );
+        givenCache.put(1, "a");
+
+        final ExecutorService givenExecutorService = newFixedThreadPool(2);
+        try {
+            final Future<?> puttingToLockedSegment = givenExecutorService.submit(() -> givenCache.put(0, "blocking"));
+            assertTrue(givenWeighingStartedLatch.await(1, SECONDS));
+
+            final String actual = givenExecutorService.submit(() -> givenCache.getIfPresent(1)).get(1, SECONDS);
+            assertEquals("a", actual);
+            assertFalse(puttingToLockedSegment.isDone());
+
+            givenWeighingAllowedLatch.countDown();
+            puttingToLockedSegment.get(1, SECONDS);
+            assertEquals("blocking", givenCache.getIfPresent(0));
+        } finally {
+            givenWeighingAllowedLatch.countDown();
+            givenExecutorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void statisticsShouldBeConsistentAfterConcurrentAccess() {
+        final WeightedLruCache<Integer, String> givenCache = new WeightedLruCache<>(100, String::length, 4);
+        final int givenAmountOfThreads = 8;
+        final int givenAmountOfRequestsByThread = 10000;
+
+        final List<CompletableFuture<Void>> futures = range(0, givenAmountOfThreads)
+                .mapToObj(thread -> runAsync(() -> range(0, givenAmountOfRequestsByThread)
+                        .forEach(i -> givenCache.get((i * 31 + thread) % 300, () -> "a"))))
+                .collect(toList());
+        futures.forEach(CompletableFuture::join);
+
+        final Statistics actual = givenCache.findStatistics();
+        assertEquals(givenAmountOfThreads * givenAmountOfRequestsByThread,
+                actual.getAmountOfHits() + actual.getAmountOfMisses());
+        assertEquals(actual.getSize(), actual.getWeight());
+        assertTrue(actual.getWeight() <= 100);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
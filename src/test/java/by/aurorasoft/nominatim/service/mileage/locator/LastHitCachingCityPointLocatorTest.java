@@ -0,0 +1,78 @@
+package by.aurorasoft.nominatim.service.mileage.locator;
+
+import by.aurorasoft.nominatim.service.mileage.GeometryCreatingService;
+import by.aurorasoft.nominatim.service.mileage.index.CitiesGeometriesIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class LastHitCachingCityPointLocatorTest {
+    private LastHitCachingCityPointLocator locator;
+
+    @Before
+    public void initializeLocator()
+            throws ParseException {
+        final GeometryFactory geometryFactory = new GeometryFactory();
+        final WKTReader wktReader = new WKTReader(geometryFactory);
+        final CitiesGeometriesIndex index = CitiesGeometriesIndex.createByGeometries(List.of(
+                prepare(wktReader.read("POLYGON((1 1, 1 2, 2 2, 2 1, 1 1))")),
+                prepare(wktReader.read("POLYGON((2 1, 2 2, 3 2, 3 1, 2 1))")),
+                prepare(wktReader.read("POLYGON((3 3, 4 3, 4 4, 3 3))"))
+        ));
+        this.locator = new LastHitCachingCityPointLocator(index, new GeometryCreatingService(geometryFactory));
+    }
+
+    @Test
+    public void pointsShouldBeLocatedInTheSameCity() {
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.5F));
+        assertTrue(this.locator.isLocatedInCity(1.6F, 1.6F));
+        assertTrue(this.locator.isLocatedInCity(1.99F, 1.99F));
+    }
+
+    @Test
+    public void pointsShouldBeLocatedInNeighbourCities() {
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.5F));
+        assertTrue(this.locator.isLocatedInCity(1.5F, 2.5F));
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.1F));
+    }
+
+    @Test
+    public void pointOnBoundaryOfCityShouldNotBeLocatedInCity() {
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.5F));
+        assertFalse(this.locator.isLocatedInCity(1F, 1.5F));
+    }
+
+    @Test
+    public void pointsShouldLeaveCityAndEnterItAgain() {
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.5F));
+        assertFalse(this.locator.isLocatedInCity(0.5F, 1.5F));
+        assertFalse(this.locator.isLocatedInCity(0.6F, 1.5F));
+        assertFalse(this.locator.isLocatedInCity(0.99F, 1.5F));
+        assertTrue(this.locator.isLocatedInCity(1.01F, 1.5F));
+    }
+
+    @Test
+    public void pointsShouldNotBeLocatedInCityIfOnlyBoundingBoxContainsThem() {
+        assertFalse(this.locator.isLocatedInCity(3.9F, 3.1F));
+        assertTrue(this.locator.isLocatedInCity(3.1F, 3.9F));
+        assertFalse(this.locator.isLocatedInCity(3.9F, 3.2F));
+    }
+
+    @Test
+    public void pointInsideCertainRegionShouldNotBeTestedByGeometries() {
+        assertTrue(this.locator.isLocatedInCity(1.5F, 1.5F));
+        assertTrue(this.locator.isLocatedInCity(1.6F, 1.6F));
+
+        final long actual = this.locator.findAmountOfGeometriesTests();
+        assertEquals(1, actual);
+    }
+}
@@ -1,67 +1,65 @@
 package by.aurorasoft.nominatim.service.nominatim;
 
+import by.aurorasoft.nominatim.config.HttpClientConfig;
 import by.aurorasoft.nominatim.config.RestTemplateConfig;
 import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse.ExtraTags;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import by.aurorasoft.nominatim.service.nominatim.exception.NominatimClientException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.client.RestClientTest;
 import org.springframework.context.annotation.Import;
-import org.springframework.http.HttpRequest;
-import org.springframework.http.client.ClientHttpRequestExecution;
-import org.springframework.http.client.ClientHttpRequestInterceptor;
-import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.springframework.test.web.client.MockRestServiceServer;
-import org.springframework.web.client.RestTemplate;
 
-import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import static java.lang.Math.round;
 import static java.lang.String.format;
-import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.time.Duration.ofMillis;
 import static java.util.Locale.ROOT;
-import static org.hamcrest.Matchers.oneOf;
-import static org.junit.Assert.assertTrue;
-import static org.springframework.http.MediaType.APPLICATION_JSON;
-import static org.springframework.test.web.client.ExpectedCount.times;
-import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
-import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
-@Import(RestTemplateConfig.class)
+@Import({RestTemplateConfig.class, HttpClientConfig.class})
 @RestClientTest(NominatimService.class)
 public class NominatimServiceTest {
     private static final String TEMPLATE_REVERSE_URI
             = "http://geo.aurora-soft.by:8081/reverse?lat=%f&lon=%f&zoom=10&format=jsonv2&polygon_geojson=1&extratags=1";
 
-    @Autowired
-    private NominatimService service;
-
-    @Autowired
-    private MockRestServiceServer server;
-
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Autowired
-    private RestTemplate restTemplate;
-
-    @Value("${nominatim.millis-between-requests}")
-    private long millisBetweenRequests;
+    @Value("${nominatim.rate-limit.requests-per-second}")
+    private double requestsPerSecond;
 
     @Test
-    public void reverseOperationShouldBeSuccessForEachCoordinateAndDurationBetweenRequestShouldBeRespected()
-            throws JsonProcessingException {
-        final TimeSendingRequestControllingInterceptor interceptor = new TimeSendingRequestControllingInterceptor();
-        this.restTemplate.getInterceptors().add(interceptor);
-
+    @SuppressWarnings("unchecked")
+    public void asyncReverseOperationShouldBeSuccessForEachCoordinateAndDurationBetweenRequestShouldBeRespected()
+            throws Exception {
         final List<Coordinate> givenCoordinates = List.of(
                 new Coordinate(53.881033, 27.544367),
                 new Coordinate(54.881033, 27.544367),
@@ -73,56 +71,205 @@ public class NominatimServiceTest {
                         .place("city")
                         .capital("yes")
                         .build())
-                .geojson("geojson")
                 .build();
-        final String givenJsonResponse = this.objectMapper.writeValueAsString(givenResponse);
-
-        this.server.expect(
-                        times(givenCoordinates.size()),
-                        requestTo(
-                                oneOf(
-                                        createReverseUriByCoordinate(givenCoordinates.get(0)),
-                                        createReverseUriByCoordinate(givenCoordinates.get(1)),
-                                        createReverseUriByCoordinate(givenCoordinates.get(2))
-                                )
-                        )
-                )
-                .andRespond(withSuccess(givenJsonResponse, APPLICATION_JSON));
-
-        givenCoordinates.forEach(this.service::reverse);
-
-        assertTrue(interceptor.isDurationBetweenRequestsRespected);
+        final HttpResponse<byte[]> givenHttpResponse = mock(HttpResponse.class);
+        when(givenHttpResponse.statusCode()).thenReturn(200);
+        when(givenHttpResponse.body()).thenReturn(this.objectMapper.writeValueAsBytes(givenResponse));
+        final TimeSendingRequestControllingAnswer givenAnswer = new TimeSendingRequestControllingAnswer(
+                givenHttpResponse);
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any())).thenAnswer(givenAnswer);
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, this.requestsPerSecond, 1, givenCoordinates.size(), 1000);
+
+        final List<CompletableFuture<NominatimReverseResponse>> responses = givenCoordinates.stream()
+                .map(givenService::reverseAsync)
+                .collect(toList());
+        for (final CompletableFuture<NominatimReverseResponse> response : responses) {
+            assertEquals(givenResponse, response.get(givenCoordinates.size() * 2L, SECONDS));
+        }
+
+        assertTrue(givenAnswer.isDurationBetweenRequestsRespected);
+        final ArgumentCaptor<java.net.http.HttpRequest> requestArgumentCaptor
+                = ArgumentCaptor.forClass(java.net.http.HttpRequest.class);
+        verify(givenHttpClient, times(givenCoordinates.size()))
+                .sendAsync(requestArgumentCaptor.capture(), any());
+        final Set<String> actualUris = requestArgumentCaptor.getAllValues()
+                .stream()
+                .map(request -> request.uri().toString())
+                .collect(toSet());
+        final Set<String> expectedUris = givenCoordinates.stream()
+                .map(NominatimServiceTest::createReverseUriByCoordinate)
+                .collect(toSet());
+        assertEquals(expectedUris, actualUris);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reverseOperationShouldThrowCauseOfFailedAsyncRequest() {
+        final HttpResponse<byte[]> givenHttpResponse = mock(HttpResponse.class);
+        when(givenHttpResponse.statusCode()).thenReturn(503);
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenReturn(completedFuture(givenHttpResponse));
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        assertThrows(NominatimClientException.class,
+                () -> givenService.reverse(new Coordinate(53.881033, 27.544367)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reverseOperationShouldWrapCheckedCauseOfFailedAsyncRequest() {
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenReturn(failedFuture(new HttpTimeoutException("timeout")));
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        final NominatimClientException actual = assertThrows(NominatimClientException.class,
+                () -> givenService.reverse(new Coordinate(53.881033, 27.544367)));
+        assertTrue(actual.getCause() instanceof HttpTimeoutException);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reverseAsyncOperationShouldBeSuccess()
+            throws Exception {
+        final Coordinate givenCoordinate = new Coordinate(53.881033, 27.544367);
+        final NominatimReverseResponse givenResponse = NominatimReverseResponse.builder()
+                .name("Minsk")
+                .extratags(ExtraTags.builder()
+                        .place("city")
+                        .build())
+                .build();
+
+        final HttpResponse<byte[]> givenHttpResponse = mock(HttpResponse.class);
+        when(givenHttpResponse.statusCode()).thenReturn(200);
+        when(givenHttpResponse.body()).thenReturn(this.objectMapper.writeValueAsBytes(givenResponse));
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenReturn(completedFuture(givenHttpResponse));
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        final NominatimReverseResponse actual = givenService.reverseAsync(givenCoordinate).get();
+        assertEquals(givenResponse, actual);
+
+        final ArgumentCaptor<java.net.http.HttpRequest> requestArgumentCaptor
+                = ArgumentCaptor.forClass(java.net.http.HttpRequest.class);
+        verify(givenHttpClient).sendAsync(requestArgumentCaptor.capture(), any());
+        assertEquals(
+                createReverseUriByCoordinate(givenCoordinate),
+                requestArgumentCaptor.getValue().uri().toString());
+        assertEquals(Optional.of(ofMillis(1000)), requestArgumentCaptor.getValue().timeout());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void asyncRequestCancelledBeforeSendingShouldNotBeSent() {
+        final CompletableFuture<HttpResponse<byte[]>> givenHttpResponse = new CompletableFuture<>();
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenReturn(givenHttpResponse);
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        final Coordinate givenCoordinate = new Coordinate(53.881033, 27.544367);
+        givenService.reverseAsync(givenCoordinate);
+        givenService.reverseAsync(givenCoordinate).cancel(true);
+        givenHttpResponse.completeExceptionally(new IllegalStateException());
+
+        verify(givenHttpClient, after(200).times(1)).sendAsync(any(java.net.http.HttpRequest.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reverseAsyncOperationShouldFailByNotSuccessStatus()
+            throws InterruptedException {
+        final HttpResponse<byte[]> givenHttpResponse = mock(HttpResponse.class);
+        when(givenHttpResponse.statusCode()).thenReturn(503);
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenReturn(completedFuture(givenHttpResponse));
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        try {
+            givenService.reverseAsync(new Coordinate(53.881033, 27.544367)).get();
+            fail();
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof NominatimClientException);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void placeInFlightShouldBeReleasedIfSendingOfAsyncRequestThrowsException()
+            throws Exception {
+        final NominatimReverseResponse givenResponse = NominatimReverseResponse.builder()
+                .name("Minsk")
+                .build();
+        final HttpResponse<byte[]> givenHttpResponse = mock(HttpResponse.class);
+        when(givenHttpResponse.statusCode()).thenReturn(200);
+        when(givenHttpResponse.body()).thenReturn(this.objectMapper.writeValueAsBytes(givenResponse));
+        final HttpClient givenHttpClient = mock(HttpClient.class);
+        when(givenHttpClient.<byte[]>sendAsync(any(java.net.http.HttpRequest.class), any()))
+                .thenThrow(IllegalStateException.class)
+                .thenReturn(completedFuture(givenHttpResponse));
+        final NominatimService givenService = new NominatimService(
+                givenHttpClient, this.objectMapper, 1000, 1, 1, 1000);
+
+        final Coordinate givenCoordinate = new Coordinate(53.881033, 27.544367);
+        try {
+            givenService.reverseAsync(givenCoordinate).get(1, SECONDS);
+            fail();
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof IllegalStateException);
+        }
+
+        final NominatimReverseResponse actual = givenService.reverseAsync(givenCoordinate).get(1, SECONDS);
+        assertEquals(givenResponse, actual);
+    }
+
+    private long findNanosBetweenRequests() {
+        return round(SECONDS.toNanos(1) / this.requestsPerSecond);
     }
 
     private static String createReverseUriByCoordinate(Coordinate coordinate) {
         return format(ROOT, TEMPLATE_REVERSE_URI, coordinate.getLatitude(), coordinate.getLongitude());
     }
 
-    private final class TimeSendingRequestControllingInterceptor implements ClientHttpRequestInterceptor {
-        private static final long INITIAL_TIME_MILLIS_PREVIOUS_REQUEST = 0;
+    /**
+     * Time from start of request to its sending varies, so duration between two neighbouring requests can be less
+     * than interval of rate limit. But n-th request can't be sent before n intervals from creation of answer.
+     */
+    private final class TimeSendingRequestControllingAnswer
+            implements Answer<CompletableFuture<HttpResponse<byte[]>>> {
+        private static final int INITIAL_AMOUNT_OF_SENT_REQUESTS = 0;
         private static final boolean INITIAL_IS_DURATION_BETWEEN_REQUESTS_RESPECTED = true;
 
-        private long timeMillisPreviousRequest;
+        private final HttpResponse<byte[]> response;
+        private final long startNanos;
+        private int amountOfSentRequests;
         private boolean isDurationBetweenRequestsRespected;
 
-        public TimeSendingRequestControllingInterceptor() {
-            this.timeMillisPreviousRequest = INITIAL_TIME_MILLIS_PREVIOUS_REQUEST;
+        public TimeSendingRequestControllingAnswer(HttpResponse<byte[]> response) {
+            this.response = response;
+            this.startNanos = nanoTime();
+            this.amountOfSentRequests = INITIAL_AMOUNT_OF_SENT_REQUESTS;
             this.isDurationBetweenRequestsRespected = INITIAL_IS_DURATION_BETWEEN_REQUESTS_RESPECTED;
         }
 
         @Override
-        public synchronized @NotNull ClientHttpResponse intercept(@NotNull HttpRequest request,
-                                                                  byte @NotNull [] body,
-                                                                  @NotNull ClientHttpRequestExecution execution)
-                throws IOException {
-            final long currentTimeMillis = currentTimeMillis();
-            if (this.isDurationBetweenRequestsRespected
-                    && currentTimeMillis - this.timeMillisPreviousRequest < NominatimServiceTest.this.millisBetweenRequests) {
+        public synchronized CompletableFuture<HttpResponse<byte[]>> answer(InvocationOnMock invocation) {
+            final long nanosFromStart = nanoTime() - this.startNanos;
+            if (nanosFromStart < this.amountOfSentRequests * findNanosBetweenRequests()) {
                 this.isDurationBetweenRequestsRespected = false;
-            } else if (this.isDurationBetweenRequestsRespected) {
-                this.timeMillisPreviousRequest = currentTimeMillis;
             }
-            return execution.execute(request, body);
+            this.amountOfSentRequests++;
+            return completedFuture(this.response);
         }
     }
 }
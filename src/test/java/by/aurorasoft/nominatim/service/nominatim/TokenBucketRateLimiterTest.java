@@ -0,0 +1,95 @@
+package by.aurorasoft.nominatim.service.nominatim;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.*;
+
+public final class TokenBucketRateLimiterTest {
+
+    @Test
+    public void requestsOfBurstShouldStartWithoutWaitingAndNextOneShouldWaitInterval()
+            throws InterruptedException {
+        final TokenBucketRateLimiter givenRateLimiter = new TokenBucketRateLimiter(10, 3, 10);
+
+        final long startNanos = nanoTime();
+        givenRateLimiter.acquire();
+        givenRateLimiter.acquire();
+        givenRateLimiter.acquire();
+        final long actualBurstMillis = NANOSECONDS.toMillis(nanoTime() - startNanos);
+        givenRateLimiter.acquire();
+        final long actualAllMillis = NANOSECONDS.toMillis(nanoTime() - startNanos);
+
+        assertTrue(actualBurstMillis < 100);
+        assertTrue(actualAllMillis >= 100);
+    }
+
+    @Test
+    public void requestShouldWaitFreePlaceInFlight()
+            throws InterruptedException {
+        final TokenBucketRateLimiter givenRateLimiter = new TokenBucketRateLimiter(1000, 10, 1);
+        givenRateLimiter.acquire();
+
+        final CountDownLatch acquiredLatch = new CountDownLatch(1);
+        final Thread waitingThread = new Thread(() -> {
+            try {
+                givenRateLimiter.acquire();
+                acquiredLatch.countDown();
+            } catch (final InterruptedException cause) {
+                currentThread().interrupt();
+            }
+        });
+        waitingThread.start();
+
+        assertFalse(acquiredLatch.await(100, MILLISECONDS));
+        givenRateLimiter.release();
+        assertTrue(acquiredLatch.await(1000, MILLISECONDS));
+        waitingThread.join();
+    }
+
+    @Test
+    public void asyncRequestShouldWaitFreePlaceInFlightWithoutHoldingThread()
+            throws Exception {
+        final TokenBucketRateLimiter givenRateLimiter = new TokenBucketRateLimiter(1000, 10, 1);
+        givenRateLimiter.acquireAsync().get(1000, MILLISECONDS);
+
+        final CompletableFuture<Void> actual = givenRateLimiter.acquireAsync();
+        MILLISECONDS.sleep(100);
+        assertFalse(actual.isDone());
+
+        givenRateLimiter.release();
+        actual.get(1000, MILLISECONDS);
+    }
+
+    @Test
+    public void asyncRequestOverBurstShouldWaitInterval()
+            throws Exception {
+        final TokenBucketRateLimiter givenRateLimiter = new TokenBucketRateLimiter(10, 1, 10);
+
+        final long startNanos = nanoTime();
+        final CompletableFuture<Void> givenFirstRequest = givenRateLimiter.acquireAsync();
+        final CompletableFuture<Void> givenSecondRequest = givenRateLimiter.acquireAsync();
+        assertTrue(givenFirstRequest.isDone());
+        assertFalse(givenSecondRequest.isDone());
+
+        givenSecondRequest.get(1000, MILLISECONDS);
+        final long actualMillis = NANOSECONDS.toMillis(nanoTime() - startNanos);
+        assertTrue(actualMillis >= 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateLimiterShouldNotBeCreatedByNotPositiveRequestsPerSecond() {
+        new TokenBucketRateLimiter(0, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateLimiterShouldNotBeCreatedByNotPositiveMaxRequestsInFlight() {
+        new TokenBucketRateLimiter(1, 1, 0);
+    }
+}
@@ -0,0 +1,69 @@
+package by.aurorasoft.nominatim.service.searchcity;
+
+import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.CoordinateXY;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.locationtech.jts.geom.prep.PreparedGeometryFactory.prepare;
+
+public final class KnownCitiesIndexTest {
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private KnownCitiesIndex knownCitiesIndex;
+
+    @Before
+    public void initializeKnownCitiesIndex() {
+        this.knownCitiesIndex = new KnownCitiesIndex(this.geometryFactory);
+    }
+
+    @Test
+    public void coordinateShouldBeInKnownCity() {
+        this.knownCitiesIndex.add(this.createSquare(1, 1, 2));
+        this.knownCitiesIndex.add(prepare(this.createSquare(5, 5, 1)));
+
+        assertTrue(this.knownCitiesIndex.isInKnownCity(new Coordinate(2., 2.)));
+        assertTrue(this.knownCitiesIndex.isInKnownCity(new Coordinate(5.5, 5.5)));
+    }
+
+    @Test
+    public void coordinateShouldNotBeInKnownCity() {
+        this.knownCitiesIndex.add(this.createSquare(1, 1, 2));
+
+        assertFalse(this.knownCitiesIndex.isInKnownCity(new Coordinate(4., 4.)));
+        assertFalse(this.knownCitiesIndex.isInKnownCity(new Coordinate(1., 2.)));
+    }
+
+    @Test
+    public void latitudeShouldBeMappedToYAndLongitudeToX() {
+        this.knownCitiesIndex.add(this.geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[]{
+                new CoordinateXY(20, 50),
+                new CoordinateXY(30, 50),
+                new CoordinateXY(30, 60),
+                new CoordinateXY(20, 60),
+                new CoordinateXY(20, 50)
+        }));
+
+        assertTrue(this.knownCitiesIndex.isInKnownCity(new Coordinate(53.9, 27.5)));
+        assertFalse(this.knownCitiesIndex.isInKnownCity(new Coordinate(27.5, 53.9)));
+    }
+
+    @Test
+    public void coordinateShouldNotBeInKnownCityIfThereAreNoKnownCities() {
+        assertFalse(this.knownCitiesIndex.isInKnownCity(new Coordinate(2., 2.)));
+    }
+
+    private Geometry createSquare(double minX, double minY, double size) {
+        return this.geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[]{
+                new CoordinateXY(minX, minY),
+                new CoordinateXY(minX + size, minY),
+                new CoordinateXY(minX + size, minY + size),
+                new CoordinateXY(minX, minY + size),
+                new CoordinateXY(minX, minY)
+        });
+    }
+}
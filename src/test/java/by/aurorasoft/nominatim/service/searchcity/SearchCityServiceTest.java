@@ -4,20 +4,35 @@ import by.aurorasoft.nominatim.crud.model.dto.City;
 import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse;
 import by.aurorasoft.nominatim.crud.model.dto.NominatimReverseResponse.ExtraTags;
+import by.aurorasoft.nominatim.crud.model.dto.ReverseCacheEntry;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.crud.service.ReverseCacheEntryService;
 import by.aurorasoft.nominatim.service.nominatim.NominatimService;
+import by.aurorasoft.nominatim.service.nominatim.exception.NominatimClientException;
 import by.aurorasoft.nominatim.rest.mapper.NominatimReverseResponseToCityMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.CoordinateXY;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import static org.junit.Assert.assertEquals;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -29,6 +44,12 @@ public final class SearchCityServiceTest {
     @Mock
     private NominatimReverseResponseToCityMapper mockedMapper;
 
+    @Mock
+    private ReverseCacheEntryService mockedReverseCacheEntryService;
+
+    @Mock
+    private CityService mockedCityService;
+
     private SearchCityService searchCityService;
 
     @Captor
@@ -37,9 +58,17 @@ public final class SearchCityServiceTest {
     @Captor
     private ArgumentCaptor<NominatimReverseResponse> responseArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<Map<Coordinate, ReverseCacheEntry>> entriesArgumentCaptor;
+
     @Before
     public void initializeSearchCityService() {
-        this.searchCityService = new SearchCityService(this.mockedNominatimService, this.mockedMapper);
+        this.searchCityService = new SearchCityService(
+                this.mockedNominatimService,
+                this.mockedMapper,
+                this.mockedReverseCacheEntryService,
+                this.mockedCityService,
+                false);
     }
 
     @Test
@@ -58,12 +87,12 @@ public final class SearchCityServiceTest {
                 createResponseByPlace(null),
                 createResponseByPlace("not defined"),
                 createResponseByExtraTags(null));
-        when(this.mockedNominatimService.reverse(any(Coordinate.class)))
-                .thenReturn(givenResponses.get(0))
-                .thenReturn(givenResponses.get(1))
-                .thenReturn(givenResponses.get(2))
-                .thenReturn(givenResponses.get(3))
-                .thenReturn(givenResponses.get(4));
+        when(this.mockedNominatimService.reverseAsync(any(Coordinate.class)))
+                .thenReturn(completedFuture(givenResponses.get(0)))
+                .thenReturn(completedFuture(givenResponses.get(1)))
+                .thenReturn(completedFuture(givenResponses.get(2)))
+                .thenReturn(completedFuture(givenResponses.get(3)))
+                .thenReturn(completedFuture(givenResponses.get(4)));
 
         final List<City> expected = List.of(createCity("Minsk"), createCity("Mogilev"));
         when(this.mockedMapper.map(any(NominatimReverseResponse.class)))
@@ -74,7 +103,7 @@ public final class SearchCityServiceTest {
         assertEquals(expected, actual);
 
         verify(this.mockedNominatimService, times(5))
-                .reverse(this.coordinateArgumentCaptor.capture());
+                .reverseAsync(this.coordinateArgumentCaptor.capture());
         verify(this.mockedMapper, times(2)).map(this.responseArgumentCaptor.capture());
 
         assertEquals(givenCoordinates, this.coordinateArgumentCaptor.getAllValues());
@@ -83,6 +112,203 @@ public final class SearchCityServiceTest {
                 this.responseArgumentCaptor.getAllValues());
     }
 
+    @Test
+    public void allReverseRequestsShouldBeSentBeforeWaitingForResponses() {
+        final List<Coordinate> givenCoordinates = List.of(
+                mock(Coordinate.class),
+                mock(Coordinate.class),
+                mock(Coordinate.class));
+
+        final List<CompletableFuture<NominatimReverseResponse>> givenResponses = List.of(
+                new CompletableFuture<>(),
+                new CompletableFuture<>(),
+                new CompletableFuture<>());
+        when(this.mockedNominatimService.reverseAsync(any(Coordinate.class)))
+                .thenReturn(givenResponses.get(0))
+                .thenReturn(givenResponses.get(1))
+                .thenReturn(givenResponses.get(2));
+
+        final City givenCity = createCity("Minsk");
+        when(this.mockedMapper.map(any(NominatimReverseResponse.class))).thenReturn(givenCity);
+
+        final CompletableFuture<Collection<City>> actualFuture = supplyAsync(
+                () -> this.searchCityService.findByCoordinates(givenCoordinates));
+
+        verify(this.mockedNominatimService, timeout(1000).times(3)).reverseAsync(any(Coordinate.class));
+        assertFalse(actualFuture.isDone());
+
+        givenResponses.forEach(response -> response.complete(createResponseByPlace("city")));
+        final Collection<City> actual = actualFuture.join();
+        final List<City> expected = List.of(givenCity, givenCity, givenCity);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void notCompletedReverseRequestsShouldBeCancelledByFailureOfOneOfThem() {
+        final List<Coordinate> givenCoordinates = List.of(
+                mock(Coordinate.class),
+                mock(Coordinate.class),
+                mock(Coordinate.class));
+
+        final CompletableFuture<NominatimReverseResponse> givenNotCompletedResponse = new CompletableFuture<>();
+        final CompletableFuture<NominatimReverseResponse> givenFailedResponse = new CompletableFuture<>();
+        givenFailedResponse.completeExceptionally(new NominatimClientException());
+        when(this.mockedNominatimService.reverseAsync(any(Coordinate.class)))
+                .thenReturn(givenNotCompletedResponse)
+                .thenReturn(givenFailedResponse)
+                .thenReturn(completedFuture(createResponseByPlace("city")));
+
+        try {
+            this.searchCityService.findByCoordinates(givenCoordinates);
+            fail();
+        } catch (final CompletionException exception) {
+            assertTrue(exception.getCause() instanceof NominatimClientException);
+        }
+        assertTrue(givenNotCompletedResponse.isCancelled());
+    }
+
+    @Test
+    public void reverseRequestsOfSeveralStartedSearchesShouldBeInFlightAtOnce() {
+        final List<Coordinate> givenFirstCoordinates = List.of(mock(Coordinate.class), mock(Coordinate.class));
+        final List<Coordinate> givenSecondCoordinates = List.of(mock(Coordinate.class), mock(Coordinate.class));
+
+        final List<CompletableFuture<NominatimReverseResponse>> givenResponses = List.of(
+                new CompletableFuture<>(),
+                new CompletableFuture<>(),
+                new CompletableFuture<>(),
+                new CompletableFuture<>());
+        when(this.mockedNominatimService.reverseAsync(any(Coordinate.class)))
+                .thenReturn(givenResponses.get(0))
+                .thenReturn(givenResponses.get(1))
+                .thenReturn(givenResponses.get(2))
+                .thenReturn(givenResponses.get(3));
+
+        final City givenCity = createCity("Minsk");
+        when(this.mockedMapper.map(any(NominatimReverseResponse.class))).thenReturn(givenCity);
+
+        final SearchCityService.PendingSearch givenFirstSearch = this.searchCityService
+                .startFindingByCoordinates(givenFirstCoordinates);
+        final SearchCityService.PendingSearch givenSecondSearch = this.searchCityService
+                .startFindingByCoordinates(givenSecondCoordinates);
+
+        verify(this.mockedNominatimService, times(4)).reverseAsync(any(Coordinate.class));
+        assertTrue(givenResponses.stream().noneMatch(CompletableFuture::isDone));
+
+        givenResponses.forEach(response -> response.complete(createResponseByPlace("city")));
+        final List<City> expected = List.of(givenCity, givenCity);
+        assertEquals(expected, givenFirstSearch.join());
+        assertEquals(expected, givenSecondSearch.join());
+    }
+
+    @Test
+    public void notCompletedReverseRequestsShouldBeCancelledByCancellingOfSearch() {
+        final List<Coordinate> givenCoordinates = List.of(mock(Coordinate.class), mock(Coordinate.class));
+
+        final CompletableFuture<NominatimReverseResponse> givenCompletedResponse = completedFuture(
+                createResponseByPlace("city"));
+        final CompletableFuture<NominatimReverseResponse> givenNotCompletedResponse = new CompletableFuture<>();
+        when(this.mockedNominatimService.reverseAsync(any(Coordinate.class)))
+                .thenReturn(givenCompletedResponse)
+                .thenReturn(givenNotCompletedResponse);
+
+        this.searchCityService.startFindingByCoordinates(givenCoordinates).cancel();
+
+        assertFalse(givenCompletedResponse.isCancelled());
+        assertTrue(givenNotCompletedResponse.isCancelled());
+    }
+
+    @Test
+    public void citiesShouldBeFoundByCoordinatesUsingReverseCache() {
+        final SearchCityService givenSearchCityService = new SearchCityService(
+                this.mockedNominatimService,
+                this.mockedMapper,
+                this.mockedReverseCacheEntryService,
+                this.mockedCityService,
+                true);
+
+        final Coordinate givenCachedNotCityCoordinate = new Coordinate(53.1, 27.1);
+        final Coordinate givenCachedSavedCityCoordinate = new Coordinate(53.2, 27.2);
+        final Coordinate givenCachedNotSavedCityCoordinate = new Coordinate(53.3, 27.3);
+        final Coordinate givenNotCachedCoordinate = new Coordinate(53.4, 27.4);
+        final List<Coordinate> givenCoordinates = List.of(
+                givenCachedNotCityCoordinate,
+                givenCachedSavedCityCoordinate,
+                givenCachedNotSavedCityCoordinate,
+                givenNotCachedCoordinate);
+
+        final Geometry givenSavedCityGeometry = createPolygon(1);
+        final Geometry givenNotSavedCityGeometry = createPolygon(2);
+        final Geometry givenNotCachedCityGeometry = createPolygon(3);
+        when(this.mockedReverseCacheEntryService.findActualByCoordinates(givenCoordinates))
+                .thenReturn(Map.of(
+                        givenCachedNotCityCoordinate, createCacheEntry("village", "Village", null),
+                        givenCachedSavedCityCoordinate, createCacheEntry("city", "Minsk", givenSavedCityGeometry),
+                        givenCachedNotSavedCityCoordinate,
+                        createCacheEntry("town", "Borisov", givenNotSavedCityGeometry)
+                ));
+
+        final City givenSavedCity = createCity("Minsk", givenSavedCityGeometry);
+        when(this.mockedCityService.findByNames(Set.of("Minsk", "Borisov")))
+                .thenReturn(List.of(createCity("Minsk", givenNotSavedCityGeometry), givenSavedCity));
+
+        final NominatimReverseResponse givenNotSavedCityResponse = createResponse("town", "Borisov");
+        final NominatimReverseResponse givenNotCachedCityResponse = createResponse("city", "Mogilev");
+        when(this.mockedNominatimService.reverseAsync(givenCachedNotSavedCityCoordinate))
+                .thenReturn(completedFuture(givenNotSavedCityResponse));
+        when(this.mockedNominatimService.reverseAsync(givenNotCachedCoordinate))
+                .thenReturn(completedFuture(givenNotCachedCityResponse));
+
+        final City givenNotSavedCity = createCity("Borisov", givenNotSavedCityGeometry);
+        final City givenNotCachedCity = createCity("Mogilev", givenNotCachedCityGeometry);
+        when(this.mockedMapper.map(givenNotSavedCityResponse)).thenReturn(givenNotSavedCity);
+        when(this.mockedMapper.map(givenNotCachedCityResponse)).thenReturn(givenNotCachedCity);
+
+        final Collection<City> actual = givenSearchCityService.findByCoordinates(givenCoordinates);
+        final List<City> expected = List.of(givenSavedCity, givenNotSavedCity, givenNotCachedCity);
+        assertEquals(expected, actual);
+
+        verify(this.mockedNominatimService, times(2)).reverseAsync(any(Coordinate.class));
+        verify(this.mockedCityService, times(1)).findByNames(anyCollection());
+        verify(this.mockedReverseCacheEntryService, times(1)).save(this.entriesArgumentCaptor.capture());
+        final Map<Coordinate, ReverseCacheEntry> expectedCachedEntries = Map.of(
+                givenCachedNotSavedCityCoordinate, createCacheEntry("town", "Borisov", givenNotSavedCityGeometry),
+                givenNotCachedCoordinate, createCacheEntry("city", "Mogilev", givenNotCachedCityGeometry));
+        assertEquals(expectedCachedEntries, this.entriesArgumentCaptor.getValue());
+    }
+
+    private static Geometry createPolygon(double size) {
+        return new GeometryFactory().createPolygon(new org.locationtech.jts.geom.Coordinate[]{
+                new CoordinateXY(0, 0),
+                new CoordinateXY(size, 0),
+                new CoordinateXY(size, size),
+                new CoordinateXY(0, 0)
+        });
+    }
+
+    private static ReverseCacheEntry createCacheEntry(String place, String name, Geometry geometry) {
+        return ReverseCacheEntry.builder()
+                .place(place)
+                .name(name)
+                .geometryHash(geometry != null ? Arrays.hashCode(new WKBWriter().write(geometry)) : null)
+                .build();
+    }
+
+    private static NominatimReverseResponse createResponse(String place, String name) {
+        return NominatimReverseResponse.builder()
+                .name(name)
+                .extratags(ExtraTags.builder()
+                        .place(place)
+                        .build())
+                .build();
+    }
+
+    private static City createCity(String name, Geometry geometry) {
+        return City.builder()
+                .name(name)
+                .geometry(geometry)
+                .build();
+    }
+
     @SuppressWarnings("all")
     private static NominatimReverseResponse createResponseByExtraTags(ExtraTags extraTags) {
         return NominatimReverseResponse.builder()
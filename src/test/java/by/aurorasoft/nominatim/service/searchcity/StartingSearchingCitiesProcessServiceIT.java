@@ -8,6 +8,8 @@ import by.aurorasoft.nominatim.crud.model.entity.CityEntity.Type;
 import by.aurorasoft.nominatim.crud.model.entity.SearchingCitiesProcessEntity;
 import by.aurorasoft.nominatim.crud.service.SearchingCitiesProcessService;
 import by.aurorasoft.nominatim.service.exception.FindingCitiesException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 import org.locationtech.jts.geom.CoordinateXY;
 import org.locationtech.jts.geom.Geometry;
@@ -16,14 +18,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.test.context.jdbc.Sql;
-import org.springframework.web.client.RestTemplate;
 import org.wololo.jts2geojson.GeoJSONReader;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -34,14 +37,13 @@ import static by.aurorasoft.nominatim.crud.model.entity.SearchingCitiesProcessEn
 import static by.aurorasoft.nominatim.crud.model.entity.SearchingCitiesProcessEntity.Status.SUCCESS;
 import static by.aurorasoft.nominatim.util.StreamUtil.asStream;
 import static java.lang.Class.forName;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.IntStream.range;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
-import static org.springframework.http.HttpEntity.EMPTY;
-import static org.springframework.http.HttpMethod.GET;
-import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
 
 public final class StartingSearchingCitiesProcessServiceIT extends AbstractContextTest {
@@ -70,10 +72,6 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
     private static final int PARAM_VALUE_POLYGON_GEOJSON = 1;
     private static final int PARAM_VALUE_EXTRATAGS = 1;
 
-    private static final ParameterizedTypeReference<NominatimReverseResponse> PARAMETERIZED_TYPE_REFERENCE
-            = new ParameterizedTypeReference<>() {
-    };
-
     private static final String HQL_QUERY_TO_FIND_ALL_CITIES = "SELECT ce FROM CityEntity ce";
 
     @Autowired
@@ -88,11 +86,14 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
     @Autowired
     private GeometryFactory geometryFactory;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @MockBean
-    private RestTemplate mockedTestTemplate;
+    private HttpClient mockedHttpClient;
 
     @Captor
-    private ArgumentCaptor<String> stringArgumentCaptor;
+    private ArgumentCaptor<HttpRequest> requestArgumentCaptor;
 
     @Test
     public void areaShouldBeIteratedByAreaIteratorFirstCase()
@@ -268,10 +269,10 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
                 .geojson(givenGeoJson)
                 .build();
 
-        when(this.mockedTestTemplate.exchange(anyString(), same(GET), same(EMPTY), eq(PARAMETERIZED_TYPE_REFERENCE)))
-                .thenReturn(ok(firstGivenResponse))
-                .thenReturn(ok(secondGivenResponse))
-                .thenReturn(ok(thirdGivenResponse));
+        when(this.mockedHttpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(completedFuture(this.createHttpResponse(firstGivenResponse)))
+                .thenReturn(completedFuture(this.createHttpResponse(secondGivenResponse)))
+                .thenReturn(completedFuture(this.createHttpResponse(thirdGivenResponse)));
 
         final Collection<City> actual = callExecutingMethodSubtaskSearchingCities(givenSubtaskSearchingCities);
         final Collection<City> expected = List.of(
@@ -280,14 +281,12 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
         );
         assertEquals(expected, actual);
 
-        verify(this.mockedTestTemplate, times(3))
-                .exchange(this.stringArgumentCaptor.capture(), same(GET), same(EMPTY),
-                        eq(PARAMETERIZED_TYPE_REFERENCE));
+        verify(this.mockedHttpClient, times(3)).sendAsync(this.requestArgumentCaptor.capture(), any());
 
         final List<String> expectedCapturedUrls = givenCoordinates.stream()
                 .map(StartingSearchingCitiesProcessServiceIT::createUrlReverse)
                 .collect(toList());
-        assertEquals(expectedCapturedUrls, this.stringArgumentCaptor.getAllValues());
+        assertEquals(expectedCapturedUrls, findCapturedUris(this.requestArgumentCaptor));
 
         super.entityManager.flush();
         super.entityManager.clear();
@@ -312,8 +311,8 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
         final SearchingCitiesProcess givenProcess = this.searchingCitiesProcessService.getById(255L);
         final Object givenSubtaskSearchingCities = this.createSubtaskSearchingCities(givenCoordinates, givenProcess);
 
-        when(this.mockedTestTemplate.exchange(anyString(), same(GET), same(EMPTY), eq(PARAMETERIZED_TYPE_REFERENCE)))
-                .thenThrow(RuntimeException.class);
+        when(this.mockedHttpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(failedFuture(new RuntimeException()));
 
         try {
             callExecutingMethodSubtaskSearchingCities(givenSubtaskSearchingCities);
@@ -362,34 +361,29 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
                 .geojson(secondGivenGeoJson)
                 .build();
 
-        when(this.mockedTestTemplate.exchange(anyString(), same(GET), same(EMPTY), eq(PARAMETERIZED_TYPE_REFERENCE)))
-                .thenReturn(ok(firstGivenResponse))
-                .thenReturn(ok(secondGivenResponse))
-                .thenReturn(ok(thirdGivenResponse));
+        when(this.mockedHttpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(completedFuture(this.createHttpResponse(firstGivenResponse)))
+                .thenReturn(completedFuture(this.createHttpResponse(secondGivenResponse)))
+                .thenReturn(completedFuture(this.createHttpResponse(thirdGivenResponse)));
 
         callExecutingMethodTaskSearchingCities(givenTaskSearchingCities);
 
-        verify(this.mockedTestTemplate, times(9))
-                .exchange(this.stringArgumentCaptor.capture(), same(GET), same(EMPTY),
-                        eq(PARAMETERIZED_TYPE_REFERENCE));
+        verify(this.mockedHttpClient, times(5)).sendAsync(this.requestArgumentCaptor.capture(), any());
 
+        //coordinates inside first found city aren't requested, coordinates on its boundary are
         final List<Coordinate> expectedCoordinates = List.of(
                 new Coordinate(1., 1.),
                 new Coordinate(1.5, 1.),
                 new Coordinate(2., 1.),
 
                 new Coordinate(1., 1.5),
-                new Coordinate(1.5, 1.5),
-                new Coordinate(2., 1.5),
 
-                new Coordinate(1., 2.),
-                new Coordinate(1.5, 2.),
-                new Coordinate(2., 2.)
+                new Coordinate(1., 2.)
         );
         final List<String> expectedCapturedUrls = expectedCoordinates.stream()
                 .map(StartingSearchingCitiesProcessServiceIT::createUrlReverse)
                 .collect(toList());
-        assertEquals(expectedCapturedUrls, this.stringArgumentCaptor.getAllValues());
+        assertEquals(expectedCapturedUrls, findCapturedUris(this.requestArgumentCaptor));
 
         final List<CityEntity> actualFoundCities = this.findAllCities();
         final List<CityEntity> expectedFoundCities = List.of(
@@ -436,8 +430,8 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
         final Object givenTaskSearchingCities = this.createTaskSearchingCites(givenAreaCoordinate,
                 givenSearchStep, givenProcess);
 
-        when(this.mockedTestTemplate.exchange(anyString(), same(GET), same(EMPTY), eq(PARAMETERIZED_TYPE_REFERENCE)))
-                .thenThrow(RuntimeException.class);
+        when(this.mockedHttpClient.<byte[]>sendAsync(any(HttpRequest.class), any()))
+                .thenReturn(failedFuture(new RuntimeException()));
 
         callExecutingMethodTaskSearchingCities(givenTaskSearchingCities);
 
@@ -463,6 +457,38 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
         checkEquals(expectedProcessAfterTaskFinished, actualProcessAfterTaskFinished);
     }
 
+    @Test
+    @Sql(statements = "INSERT INTO searching_cities_process "
+            + "(id, bounds, search_step, total_points, handled_points, status) "
+            + "VALUES(255, ST_GeomFromText('POLYGON((1 1, 5 1, 5 5, 1 5, 1 1))', 4326), 0.5, 9, 0, 'HANDLING')")
+    @Sql(statements = "INSERT INTO city(id, name, geometry, type, bounding_box) VALUES(255, 'Minsk', "
+            + "ST_GeomFromText('POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))', 4326), "
+            + "'CAPITAL', "
+            + "ST_GeomFromText('POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))', 4326)"
+            + ")")
+    public void coordinatesInSavedCitiesShouldNotBeRequestedByTaskSearchingCities()
+            throws Exception {
+        final AreaCoordinate givenAreaCoordinate = new AreaCoordinate(
+                new Coordinate(1., 1.),
+                new Coordinate(2., 2.)
+        );
+        final double givenSearchStep = 0.5;
+        final SearchingCitiesProcess givenProcess = this.searchingCitiesProcessService.getById(255L);
+        final Object givenTaskSearchingCities = this.createTaskSearchingCites(givenAreaCoordinate,
+                givenSearchStep, givenProcess);
+
+        callExecutingMethodTaskSearchingCities(givenTaskSearchingCities);
+
+        verify(this.mockedHttpClient, never()).sendAsync(any(HttpRequest.class), any());
+
+        super.entityManager.flush();
+        super.entityManager.clear();
+        final SearchingCitiesProcessEntity actualProcessAfterTaskFinished = super.entityManager.find(
+                SearchingCitiesProcessEntity.class, 255L);
+        assertEquals(9, actualProcessAfterTaskFinished.getHandledPoints());
+        assertSame(SUCCESS, actualProcessAfterTaskFinished.getStatus());
+    }
+
     private static Iterator<Coordinate> createAreaIterator(AreaCoordinate areaCoordinate, double searchStep)
             throws Exception {
         return createObject(
@@ -490,9 +516,10 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
                 new Class<?>[]{
                         StartingSearchingCitiesProcessService.class,
                         List.class,
-                        SearchingCitiesProcess.class
+                        SearchingCitiesProcess.class,
+                        KnownCitiesIndex.class
                 },
-                new Object[]{this.service, coordinates, process}
+                new Object[]{this.service, coordinates, process, new KnownCitiesIndex(this.geometryFactory)}
         );
     }
 
@@ -552,6 +579,22 @@ public final class StartingSearchingCitiesProcessServiceIT extends AbstractConte
         return classTaskSearchingCities.getMethod(METHOD_NAME_OF_EXECUTING_TASK_SEARCHING_CITIES);
     }
 
+    @SuppressWarnings("unchecked")
+    private HttpResponse<byte[]> createHttpResponse(NominatimReverseResponse response)
+            throws JsonProcessingException {
+        final HttpResponse<byte[]> httpResponse = mock(HttpResponse.class);
+        when(httpResponse.statusCode()).thenReturn(200);
+        when(httpResponse.body()).thenReturn(this.objectMapper.writeValueAsBytes(response));
+        return httpResponse;
+    }
+
+    private static List<String> findCapturedUris(ArgumentCaptor<HttpRequest> requestArgumentCaptor) {
+        return requestArgumentCaptor.getAllValues()
+                .stream()
+                .map(request -> request.uri().toString())
+                .collect(toList());
+    }
+
     private City createCity(String name, String geoJson, Type type) {
         final Geometry geometry = this.geoJSONReader.read(geoJson);
         return City.builder()
@@ -0,0 +1,138 @@
+package by.aurorasoft.nominatim.service.searchcity;
+
+import by.aurorasoft.nominatim.crud.model.dto.AreaCoordinate;
+import by.aurorasoft.nominatim.crud.model.dto.Coordinate;
+import by.aurorasoft.nominatim.crud.model.dto.SearchingCitiesProcess;
+import by.aurorasoft.nominatim.crud.service.CityService;
+import by.aurorasoft.nominatim.service.exception.FindingCitiesException;
+import by.aurorasoft.nominatim.service.nominatim.exception.NominatimClientException;
+import by.aurorasoft.nominatim.service.searchcity.SearchCityService.PendingSearch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class StartingSearchingCitiesProcessServiceTest {
+    private static final int GIVEN_AMOUNT_HANDLED_POINTS_TO_SAVE_STATE = 2;
+    private static final int GIVEN_SUBTASKS_IN_FLIGHT = 3;
+
+    private static final AreaCoordinate GIVEN_AREA_COORDINATE = new AreaCoordinate(
+            new Coordinate(1., 1.),
+            new Coordinate(2., 2.)
+    );
+    private static final double GIVEN_SEARCH_STEP = 0.5;
+
+    @Mock
+    private SearchCityService mockedSearchCityService;
+
+    @Mock
+    private EventHandlingSearchCityProcessService mockedEventHandlingSearchCityProcessService;
+
+    @Mock
+    private CityService mockedCityService;
+
+    private ExecutorService executorService;
+    private StartingSearchingCitiesProcessService service;
+    private SearchingCitiesProcess givenProcess;
+
+    @Before
+    public void initializeService() {
+        this.executorService = newSingleThreadExecutor();
+        this.service = new StartingSearchingCitiesProcessService(
+                this.mockedSearchCityService,
+                this.mockedEventHandlingSearchCityProcessService,
+                this.mockedCityService,
+                new GeometryFactory(),
+                this.executorService,
+                GIVEN_AMOUNT_HANDLED_POINTS_TO_SAVE_STATE,
+                GIVEN_SUBTASKS_IN_FLIGHT
+        );
+        this.givenProcess = SearchingCitiesProcess.builder()
+                .id(255L)
+                .geometry(mock(Geometry.class))
+                .searchStep(GIVEN_SEARCH_STEP)
+                .totalPoints(9)
+                .build();
+        when(this.mockedEventHandlingSearchCityProcessService.onStartSearchCities(
+                GIVEN_AREA_COORDINATE, GIVEN_SEARCH_STEP)).thenReturn(this.givenProcess);
+        when(this.mockedCityService.findPreparedGeometriesWhoseBoundingBoxIntersectedByGeometry(
+                any(Geometry.class))).thenReturn(emptyMap());
+    }
+
+    @After
+    public void shutdownExecutorService() {
+        this.executorService.shutdownNow();
+    }
+
+    @Test
+    public void requestsOfSeveralSubtasksShouldBeInFlightBeforeCompletionOfEldestOne() {
+        final CountDownLatch givenResponsesLatch = new CountDownLatch(1);
+        when(this.mockedSearchCityService.startFindingByCoordinates(anyList()))
+                .thenAnswer(invocation -> createPendingSearchWaitingFor(givenResponsesLatch));
+
+        this.service.start(GIVEN_AREA_COORDINATE, GIVEN_SEARCH_STEP);
+
+        verify(this.mockedSearchCityService, after(200).times(GIVEN_SUBTASKS_IN_FLIGHT))
+                .startFindingByCoordinates(anyList());
+        verify(this.mockedEventHandlingSearchCityProcessService, never())
+                .onSuccessFindCitiesBySubtask(any(SearchingCitiesProcess.class), anyLong());
+
+        givenResponsesLatch.countDown();
+
+        verify(this.mockedEventHandlingSearchCityProcessService, timeout(1000))
+                .onSuccessFindAllCities(this.givenProcess, emptyList());
+        verify(this.mockedSearchCityService, times(5)).startFindingByCoordinates(anyList());
+        verify(this.mockedEventHandlingSearchCityProcessService, times(4))
+                .onSuccessFindCitiesBySubtask(this.givenProcess, GIVEN_AMOUNT_HANDLED_POINTS_TO_SAVE_STATE);
+        verify(this.mockedEventHandlingSearchCityProcessService)
+                .onSuccessFindCitiesBySubtask(this.givenProcess, 1);
+    }
+
+    @Test
+    public void startedSubtasksShouldBeCancelledByFailureOfEldestOne() {
+        final PendingSearch givenFailedSearch = mock(PendingSearch.class);
+        when(givenFailedSearch.join()).thenThrow(new CompletionException(new NominatimClientException()));
+        final PendingSearch givenSecondSearch = mock(PendingSearch.class);
+        final PendingSearch givenThirdSearch = mock(PendingSearch.class);
+        when(this.mockedSearchCityService.startFindingByCoordinates(anyList()))
+                .thenReturn(givenFailedSearch)
+                .thenReturn(givenSecondSearch)
+                .thenReturn(givenThirdSearch);
+
+        this.service.start(GIVEN_AREA_COORDINATE, GIVEN_SEARCH_STEP);
+
+        verify(this.mockedEventHandlingSearchCityProcessService, timeout(1000))
+                .onFailedFindAllCities(same(this.givenProcess), any(FindingCitiesException.class));
+        verify(this.mockedSearchCityService, times(GIVEN_SUBTASKS_IN_FLIGHT)).startFindingByCoordinates(anyList());
+        verify(givenSecondSearch).cancel();
+        verify(givenThirdSearch).cancel();
+        verify(givenSecondSearch, never()).join();
+        verify(this.mockedEventHandlingSearchCityProcessService, never())
+                .onSuccessFindCitiesBySubtask(any(SearchingCitiesProcess.class), anyLong());
+    }
+
+    private static PendingSearch createPendingSearchWaitingFor(CountDownLatch responsesLatch) {
+        final PendingSearch search = mock(PendingSearch.class);
+        when(search.join()).thenAnswer(invocation -> {
+            responsesLatch.await();
+            return emptyList();
+        });
+        return search;
+    }
+}